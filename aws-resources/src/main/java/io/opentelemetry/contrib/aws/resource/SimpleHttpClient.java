@@ -13,6 +13,8 @@ import java.security.cert.CertificateFactory;
 import java.time.Duration;
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.annotation.Nullable;
@@ -27,7 +29,15 @@ import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
 
-/** A simple HTTP client based on OkHttp. Not meant for high throughput. */
+/**
+ * A simple HTTP client based on OkHttp. Not meant for high throughput.
+ *
+ * <p>All instances share a single, lazily created {@link OkHttpClient}, so that the requests of the
+ * resource providers reuse its connection pool, and keep-alive connections to the metadata
+ * endpoints, instead of connecting and creating a new pool for every request. Requests with a
+ * trusted certificate use a client derived from the shared client, which is created once per
+ * certificate path.
+ */
 final class SimpleHttpClient {
 
   private static final Logger logger = Logger.getLogger(SimpleHttpClient.class.getName());
@@ -36,27 +46,18 @@ final class SimpleHttpClient {
 
   private static final RequestBody EMPTY_BODY = RequestBody.create(new byte[0]);
 
+  private static final ConcurrentMap<String, OkHttpClient> clientsByCertPath =
+      new ConcurrentHashMap<>();
+
   /** Fetch a string from a remote server. */
   public String fetchString(
       String httpMethod, String urlStr, Map<String, String> headers, @Nullable String certPath) {
 
-    OkHttpClient.Builder clientBuilder =
-        new OkHttpClient.Builder()
-            .callTimeout(TIMEOUT)
-            .connectTimeout(TIMEOUT)
-            .readTimeout(TIMEOUT);
-
+    OkHttpClient client = SharedHttpClientHolder.INSTANCE;
     if (urlStr.startsWith("https") && certPath != null) {
-      KeyStore keyStore = getKeystoreForTrustedCert(certPath);
-      X509TrustManager trustManager = buildTrustManager(keyStore);
-      SSLSocketFactory socketFactory = buildSslSocketFactory(trustManager);
-      if (socketFactory != null) {
-        clientBuilder.sslSocketFactory(socketFactory, trustManager);
-      }
+      client = getClientForTrustedCert(certPath);
     }
 
-    OkHttpClient client = clientBuilder.build();
-
     // AWS incorrectly uses PUT despite having no request body, OkHttp will only allow us to send
     // GET with null body or PUT with empty string body
     RequestBody requestBody = null;
@@ -90,6 +91,28 @@ final class SimpleHttpClient {
     return "";
   }
 
+  private static OkHttpClient getClientForTrustedCert(String certPath) {
+    OkHttpClient client = clientsByCertPath.get(certPath);
+    if (client != null) {
+      return client;
+    }
+    KeyStore keyStore = getKeystoreForTrustedCert(certPath);
+    X509TrustManager trustManager = buildTrustManager(keyStore);
+    SSLSocketFactory socketFactory = buildSslSocketFactory(trustManager);
+    if (socketFactory == null) {
+      // Not cached, the certificate may become readable later.
+      return SharedHttpClientHolder.INSTANCE;
+    }
+    // Derived clients share the connection pool and dispatcher of the shared client.
+    client =
+        SharedHttpClientHolder.INSTANCE
+            .newBuilder()
+            .sslSocketFactory(socketFactory, trustManager)
+            .build();
+    OkHttpClient existing = clientsByCertPath.putIfAbsent(certPath, client);
+    return existing != null ? existing : client;
+  }
+
   @Nullable
   private static X509TrustManager buildTrustManager(@Nullable KeyStore keyStore) {
     if (keyStore == null) {
@@ -142,4 +165,16 @@ final class SimpleHttpClient {
       return null;
     }
   }
+
+  private static final class SharedHttpClientHolder {
+
+    static final OkHttpClient INSTANCE =
+        new OkHttpClient.Builder()
+            .callTimeout(TIMEOUT)
+            .connectTimeout(TIMEOUT)
+            .readTimeout(TIMEOUT)
+            .build();
+
+    private SharedHttpClientHolder() {}
+  }
 }
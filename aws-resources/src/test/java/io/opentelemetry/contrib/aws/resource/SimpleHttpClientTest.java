@@ -14,6 +14,7 @@ import com.linecorp.armeria.server.ServerBuilder;
 import com.linecorp.armeria.testing.junit5.server.SelfSignedCertificateExtension;
 import com.linecorp.armeria.testing.junit5.server.ServerExtension;
 import com.linecorp.armeria.testing.junit5.server.mock.MockWebServerExtension;
+import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -45,6 +46,22 @@ class SimpleHttpClientTest {
     assertThat(request1.headers().get("key2")).isEqualTo("value2");
   }
 
+  @Test
+  void testFetchStringReusesConnection() {
+    server.enqueue(HttpResponse.of("first"));
+    server.enqueue(HttpResponse.of("second"));
+
+    String urlStr = String.format("http://localhost:%s%s", server.httpPort(), "/path");
+    assertThat(new SimpleHttpClient().fetchString("GET", urlStr, Collections.emptyMap(), null))
+        .isEqualTo("first");
+    assertThat(new SimpleHttpClient().fetchString("GET", urlStr, Collections.emptyMap(), null))
+        .isEqualTo("second");
+
+    InetSocketAddress firstAddress = server.takeRequest().context().remoteAddress();
+    InetSocketAddress secondAddress = server.takeRequest().context().remoteAddress();
+    assertThat(secondAddress).isEqualTo(firstAddress);
+  }
+
   @Test
   void testFailedFetchString() {
     ImmutableMap<String, String> requestPropertyMap =
@@ -0,0 +1,117 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.awsxray.propagator;
+
+import io.opentelemetry.api.baggage.Baggage;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.propagation.TextMapGetter;
+import io.opentelemetry.context.propagation.TextMapSetter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AwsXrayPropagatorBenchmark {
+
+  private static final String TRACE_HEADER =
+      "Root=1-8a3c60f7-d188f8fa79d48a391a778fa6;Parent=53995c3f42cd8ad8;Sampled=1";
+
+  private static final TextMapSetter<Map<String, String>> setter = Map::put;
+  private static final TextMapGetter<Map<String, String>> getter =
+      new TextMapGetter<Map<String, String>>() {
+        @Override
+        public Iterable<String> keys(Map<String, String> carrier) {
+          return carrier.keySet();
+        }
+
+        @Nullable
+        @Override
+        public String get(@Nullable Map<String, String> carrier, String key) {
+          return carrier == null ? null : carrier.get(key);
+        }
+      };
+
+  /** The fields following the trace ID, parent ID and sampled flag in the header. */
+  public enum AdditionalFields {
+    NONE(""),
+    LINEAGE(";Lineage=a87bd80c:1|68fd508a:5|c512fbe3:2"),
+    BAGGAGE(";Foo=Bar;Cat=Meow;Dog=Woof"),
+    OT_TRACE_STATE(";ot=p:8|r:62");
+
+    private final String header;
+
+    AdditionalFields(String header) {
+      this.header = header;
+    }
+  }
+
+  @Param public AdditionalFields additionalFields;
+
+  private final AwsXrayPropagator propagator =
+      AwsXrayPropagator.builder().setPropagateOtTraceState(true).build();
+
+  private Map<String, String> carrier;
+  private Context context;
+
+  @Setup
+  public void setup() {
+    carrier =
+        Collections.singletonMap(
+            AwsXrayPropagator.TRACE_HEADER_KEY, TRACE_HEADER + additionalFields.header);
+    context = propagator.extract(Context.root(), carrier, getter);
+    if (!Span.fromContext(context).getSpanContext().isValid()) {
+      throw new AssertionError("Invalid trace header: " + carrier);
+    }
+    if (additionalFields == AdditionalFields.NONE) {
+      context =
+          Context.root()
+              .with(
+                  Span.wrap(
+                      SpanContext.create(
+                          "8a3c60f7d188f8fa79d48a391a778fa6",
+                          "53995c3f42cd8ad8",
+                          TraceFlags.getSampled(),
+                          TraceState.getDefault())));
+      if (!Baggage.fromContext(context).isEmpty()) {
+        throw new AssertionError("Unexpected baggage");
+      }
+    }
+  }
+
+  @Benchmark
+  public Context extract() {
+    return propagator.extract(Context.root(), carrier, getter);
+  }
+
+  @Benchmark
+  public Map<String, String> inject() {
+    Map<String, String> result = new HashMap<>();
+    propagator.inject(context, result, setter);
+    return result;
+  }
+}
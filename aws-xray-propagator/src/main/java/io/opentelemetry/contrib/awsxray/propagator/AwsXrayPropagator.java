@@ -8,7 +8,7 @@ package io.opentelemetry.contrib.awsxray.propagator;
 import io.opentelemetry.api.baggage.Baggage;
 import io.opentelemetry.api.baggage.BaggageBuilder;
 import io.opentelemetry.api.baggage.BaggageEntry;
-import io.opentelemetry.api.internal.StringUtils;
+import io.opentelemetry.api.internal.OtelEncodingUtils;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.SpanContext;
 import io.opentelemetry.api.trace.SpanId;
@@ -19,6 +19,7 @@ import io.opentelemetry.context.Context;
 import io.opentelemetry.context.propagation.TextMapGetter;
 import io.opentelemetry.context.propagation.TextMapPropagator;
 import io.opentelemetry.context.propagation.TextMapSetter;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.function.BiConsumer;
@@ -41,6 +42,8 @@ import javax.annotation.Nullable;
  *             AWSXrayPropagator.getInstance())))
  *    .build();
  * }</pre>
+ *
+ * <p>Use {@link #builder()} to additionally propagate the {@code ot} entry of the trace state.
  */
 public final class AwsXrayPropagator implements TextMapPropagator {
 
@@ -54,11 +57,10 @@ public final class AwsXrayPropagator implements TextMapPropagator {
 
   private static final String TRACE_ID_KEY = "Root";
   private static final int TRACE_ID_LENGTH = 35;
-  private static final String TRACE_ID_VERSION = "1";
+  private static final char TRACE_ID_VERSION = '1';
   private static final char TRACE_ID_DELIMITER = '-';
-  private static final int TRACE_ID_DELIMITER_INDEX_1 = 1;
-  private static final int TRACE_ID_DELIMITER_INDEX_2 = 10;
   private static final int TRACE_ID_FIRST_PART_LENGTH = 8;
+  private static final int TRACE_ID_SECOND_PART_LENGTH = 24;
 
   private static final String PARENT_ID_KEY = "Parent";
   private static final int PARENT_ID_LENGTH = 16;
@@ -68,18 +70,39 @@ public final class AwsXrayPropagator implements TextMapPropagator {
   private static final char IS_SAMPLED = '1';
   private static final char NOT_SAMPLED = '0';
 
+  private static final int MAX_BAGGAGE_LENGTH = 256;
+
+  // The header without baggage, which only differs in the trace ID, parent ID and sampled flag.
+  private static final String TRACE_HEADER_TEMPLATE =
+      "Root=1-00000000-000000000000000000000000;Parent=0000000000000000;Sampled=0";
+  private static final char[] TRACE_HEADER_TEMPLATE_CHARS = TRACE_HEADER_TEMPLATE.toCharArray();
+  private static final int TRACE_ID_FIRST_PART_OFFSET =
+      TRACE_HEADER_TEMPLATE.indexOf(TRACE_ID_DELIMITER) + 1;
+  private static final int TRACE_ID_SECOND_PART_OFFSET =
+      TRACE_ID_FIRST_PART_OFFSET + TRACE_ID_FIRST_PART_LENGTH + 1;
+  private static final int PARENT_ID_OFFSET =
+      TRACE_HEADER_TEMPLATE.indexOf(PARENT_ID_KEY) + PARENT_ID_KEY.length() + 1;
+  private static final int SAMPLED_FLAG_OFFSET = TRACE_HEADER_TEMPLATE.length() - 1;
+
   private static final List<String> FIELDS = Collections.singletonList(TRACE_HEADER_KEY);
 
-  private static final AwsXrayPropagator INSTANCE = new AwsXrayPropagator();
+  private static final AwsXrayPropagator INSTANCE = new AwsXrayPropagator(false);
 
-  private AwsXrayPropagator() {
-    // singleton
+  private final boolean propagateOtTraceState;
+
+  AwsXrayPropagator(boolean propagateOtTraceState) {
+    this.propagateOtTraceState = propagateOtTraceState;
   }
 
   public static AwsXrayPropagator getInstance() {
     return INSTANCE;
   }
 
+  /** Returns a new {@link AwsXrayPropagatorBuilder}. */
+  public static AwsXrayPropagatorBuilder builder() {
+    return new AwsXrayPropagatorBuilder();
+  }
+
   @Override
   public List<String> fields() {
     return FIELDS;
@@ -101,32 +124,39 @@ public final class AwsXrayPropagator implements TextMapPropagator {
 
     SpanContext spanContext = span.getSpanContext();
 
+    String otTraceState =
+        propagateOtTraceState
+            ? spanContext.getTraceState().get(OtTraceStateEncoding.TRACE_STATE_KEY)
+            : null;
+    int otTraceStateLength =
+        otTraceState != null ? OtTraceStateEncoding.encodedLength(otTraceState) : -1;
+
+    // X-Ray trace id format is 1-{8 digit hex}-{24 digit hex}
+    char[] traceHeader;
+    if (otTraceStateLength < 0) {
+      traceHeader = TRACE_HEADER_TEMPLATE_CHARS.clone();
+    } else {
+      traceHeader =
+          Arrays.copyOf(
+              TRACE_HEADER_TEMPLATE_CHARS, TRACE_HEADER_TEMPLATE_CHARS.length + otTraceStateLength);
+      OtTraceStateEncoding.encode(otTraceState, traceHeader, TRACE_HEADER_TEMPLATE_CHARS.length);
+    }
     String otTraceId = spanContext.getTraceId();
-    String xrayTraceId =
-        TRACE_ID_VERSION
-            + TRACE_ID_DELIMITER
-            + otTraceId.substring(0, TRACE_ID_FIRST_PART_LENGTH)
-            + TRACE_ID_DELIMITER
-            + otTraceId.substring(TRACE_ID_FIRST_PART_LENGTH);
-    String parentId = spanContext.getSpanId();
-    char samplingFlag = spanContext.isSampled() ? IS_SAMPLED : NOT_SAMPLED;
-    // TODO: Add OT trace state to the X-Ray trace header
-
-    StringBuilder traceHeader = new StringBuilder();
-    traceHeader
-        .append(TRACE_ID_KEY)
-        .append(KV_DELIMITER)
-        .append(xrayTraceId)
-        .append(TRACE_HEADER_DELIMITER)
-        .append(PARENT_ID_KEY)
-        .append(KV_DELIMITER)
-        .append(parentId)
-        .append(TRACE_HEADER_DELIMITER)
-        .append(SAMPLED_FLAG_KEY)
-        .append(KV_DELIMITER)
-        .append(samplingFlag);
+    otTraceId.getChars(0, TRACE_ID_FIRST_PART_LENGTH, traceHeader, TRACE_ID_FIRST_PART_OFFSET);
+    otTraceId.getChars(
+        TRACE_ID_FIRST_PART_LENGTH, TraceId.getLength(), traceHeader, TRACE_ID_SECOND_PART_OFFSET);
+    spanContext.getSpanId().getChars(0, SpanId.getLength(), traceHeader, PARENT_ID_OFFSET);
+    traceHeader[SAMPLED_FLAG_OFFSET] = spanContext.isSampled() ? IS_SAMPLED : NOT_SAMPLED;
 
     Baggage baggage = Baggage.fromContext(context);
+    if (baggage.isEmpty()) {
+      setter.set(carrier, TRACE_HEADER_KEY, new String(traceHeader));
+      return;
+    }
+
+    // Sized for the baggage limit, only the delimiters of the entries can exceed it.
+    StringBuilder traceHeaderWithBaggage =
+        new StringBuilder(traceHeader.length + MAX_BAGGAGE_LENGTH).append(traceHeader);
     // Truncate baggage to 256 chars per X-Ray spec.
     baggage.forEach(
         new BiConsumer<String, BaggageEntry>() {
@@ -137,15 +167,16 @@ public final class AwsXrayPropagator implements TextMapPropagator {
           public void accept(String key, BaggageEntry entry) {
             if (key.equals(TRACE_ID_KEY)
                 || key.equals(PARENT_ID_KEY)
-                || key.equals(SAMPLED_FLAG_KEY)) {
+                || key.equals(SAMPLED_FLAG_KEY)
+                || (propagateOtTraceState && key.equals(OtTraceStateEncoding.TRACE_STATE_KEY))) {
               return;
             }
             // Size is key/value pair, excludes delimiter.
             int size = key.length() + entry.getValue().length() + 1;
-            if (baggageWrittenBytes + size > 256) {
+            if (baggageWrittenBytes + size > MAX_BAGGAGE_LENGTH) {
               return;
             }
-            traceHeader
+            traceHeaderWithBaggage
                 .append(TRACE_HEADER_DELIMITER)
                 .append(key)
                 .append(KV_DELIMITER)
@@ -154,7 +185,7 @@ public final class AwsXrayPropagator implements TextMapPropagator {
           }
         });
 
-    setter.set(carrier, TRACE_HEADER_KEY, traceHeader.toString());
+    setter.set(carrier, TRACE_HEADER_KEY, traceHeaderWithBaggage.toString());
   }
 
   @Override
@@ -169,16 +200,27 @@ public final class AwsXrayPropagator implements TextMapPropagator {
     return getContextFromHeader(context, carrier, getter);
   }
 
-  private static <C> Context getContextFromHeader(
+  /**
+   * Extracts the context from the trace header in a single pass. The trace ID, parent ID, sampled
+   * flag and {@code ot} trace state are only located while scanning the header, and are validated
+   * and copied once the whole header was scanned, so that no intermediate strings are created for
+   * them.
+   */
+  private <C> Context getContextFromHeader(
       Context context, @Nullable C carrier, TextMapGetter<C> getter) {
     String traceHeader = getter.get(carrier, TRACE_HEADER_KEY);
     if (traceHeader == null || traceHeader.isEmpty()) {
       return context;
     }
 
-    String traceId = TraceId.getInvalid();
-    String spanId = SpanId.getInvalid();
-    Boolean isSampled = false;
+    int traceIdStart = -1;
+    int traceIdEnd = -1;
+    int spanIdStart = -1;
+    int spanIdEnd = -1;
+    int sampledFlagStart = -1;
+    int sampledFlagEnd = -1;
+    int otTraceStateStart = -1;
+    int otTraceStateEnd = -1;
 
     BaggageBuilder baggage = null;
     int baggageReadBytes = 0;
@@ -186,60 +228,83 @@ public final class AwsXrayPropagator implements TextMapPropagator {
     int pos = 0;
     while (pos < traceHeader.length()) {
       int delimiterIndex = traceHeader.indexOf(TRACE_HEADER_DELIMITER, pos);
-      String part;
-      if (delimiterIndex >= 0) {
-        part = traceHeader.substring(pos, delimiterIndex);
-        pos = delimiterIndex + 1;
-      } else {
-        // Last part.
-        part = traceHeader.substring(pos);
-        pos = traceHeader.length();
+      int partEnd = delimiterIndex >= 0 ? delimiterIndex : traceHeader.length();
+      // Trim the part like String.trim().
+      int start = pos;
+      int end = partEnd;
+      while (start < end && traceHeader.charAt(start) <= ' ') {
+        start++;
+      }
+      while (end > start && traceHeader.charAt(end - 1) <= ' ') {
+        end--;
       }
-      String trimmedPart = part.trim();
-      int equalsIndex = trimmedPart.indexOf(KV_DELIMITER);
+      int equalsIndex = indexOf(traceHeader, KV_DELIMITER, start, end);
       if (equalsIndex < 0) {
-        logger.fine("Error parsing X-Ray trace header. Invalid key value pair: " + part);
+        logger.fine(
+            "Error parsing X-Ray trace header. Invalid key value pair: "
+                + traceHeader.substring(pos, partEnd));
         return context;
       }
-
-      String value = trimmedPart.substring(equalsIndex + 1);
-
-      if (trimmedPart.startsWith(TRACE_ID_KEY)) {
-        traceId = parseTraceId(value);
-      } else if (trimmedPart.startsWith(PARENT_ID_KEY)) {
-        spanId = parseSpanId(value);
-      } else if (trimmedPart.startsWith(SAMPLED_FLAG_KEY)) {
-        isSampled = parseTraceFlag(value);
-      } else if (baggageReadBytes + trimmedPart.length() <= 256) {
+      int valueStart = equalsIndex + 1;
+
+      // As the part contains the '=', a key cannot match beyond the end of the part.
+      if (traceHeader.startsWith(TRACE_ID_KEY, start)) {
+        traceIdStart = valueStart;
+        traceIdEnd = end;
+      } else if (traceHeader.startsWith(PARENT_ID_KEY, start)) {
+        spanIdStart = valueStart;
+        spanIdEnd = end;
+      } else if (traceHeader.startsWith(SAMPLED_FLAG_KEY, start)) {
+        sampledFlagStart = valueStart;
+        sampledFlagEnd = end;
+      } else if (propagateOtTraceState
+          && equalsIndex - start == OtTraceStateEncoding.TRACE_STATE_KEY.length()
+          && traceHeader.startsWith(OtTraceStateEncoding.TRACE_STATE_KEY, start)) {
+        otTraceStateStart = valueStart;
+        otTraceStateEnd = end;
+      } else if (baggageReadBytes + (end - start) <= MAX_BAGGAGE_LENGTH) {
         if (baggage == null) {
           baggage = Baggage.builder();
         }
-        baggage.put(trimmedPart.substring(0, equalsIndex), value);
-        baggageReadBytes += trimmedPart.length();
+        baggage.put(
+            traceHeader.substring(start, equalsIndex), traceHeader.substring(valueStart, end));
+        baggageReadBytes += end - start;
       }
-    }
-    if (isSampled == null) {
-      logger.fine(
-          "Invalid Sampling flag in X-Ray trace header: '"
-              + TRACE_HEADER_KEY
-              + "' with value "
-              + traceHeader
-              + "'.");
-      return context;
+      pos = partEnd + 1;
     }
 
-    if (spanId == null || traceId == null) {
-      logger.finest("Both traceId and spanId are required to extract a valid span context. ");
+    boolean isSampled = false;
+    if (sampledFlagStart >= 0) {
+      char flag =
+          sampledFlagEnd - sampledFlagStart == SAMPLED_FLAG_LENGTH
+              ? traceHeader.charAt(sampledFlagStart)
+              : 0;
+      if (flag != IS_SAMPLED && flag != NOT_SAMPLED) {
+        logger.fine(
+            "Invalid Sampling flag in X-Ray trace header: '"
+                + TRACE_HEADER_KEY
+                + "' with value "
+                + traceHeader
+                + "'.");
+        return context;
+      }
+      isSampled = flag == IS_SAMPLED;
     }
 
-    SpanContext spanContext =
-        SpanContext.createFromRemoteParent(
-            StringUtils.padLeft(traceId, TraceId.getLength()),
-            spanId,
-            isSampled ? TraceFlags.getSampled() : TraceFlags.getDefault(),
-            TraceState.getDefault());
-    if (spanContext.isValid()) {
-      context = context.with(Span.wrap(spanContext));
+    String traceId = traceIdStart >= 0 ? parseTraceId(traceHeader, traceIdStart, traceIdEnd) : null;
+    String spanId = spanIdStart >= 0 ? parseSpanId(traceHeader, spanIdStart, spanIdEnd) : null;
+    if (traceId != null && spanId != null) {
+      SpanContext spanContext =
+          SpanContext.createFromRemoteParent(
+              traceId,
+              spanId,
+              isSampled ? TraceFlags.getSampled() : TraceFlags.getDefault(),
+              otTraceStateStart >= 0
+                  ? OtTraceStateEncoding.decode(traceHeader, otTraceStateStart, otTraceStateEnd)
+                  : TraceState.getDefault());
+      if (spanContext.isValid()) {
+        context = context.with(Span.wrap(spanContext));
+      }
     }
     if (baggage != null) {
       context = context.with(baggage.build());
@@ -247,83 +312,69 @@ public final class AwsXrayPropagator implements TextMapPropagator {
     return context;
   }
 
-  private static String parseTraceId(String xrayTraceId) {
-    return (xrayTraceId.length() == TRACE_ID_LENGTH
-        ? parseSpecTraceId(xrayTraceId)
-        : parseShortTraceId(xrayTraceId));
-  }
-
-  private static String parseSpecTraceId(String xrayTraceId) {
-
-    // Check version trace id version
-    if (!xrayTraceId.startsWith(TRACE_ID_VERSION)) {
-      return TraceId.getInvalid();
-    }
-
-    // Check delimiters
-    if (xrayTraceId.charAt(TRACE_ID_DELIMITER_INDEX_1) != TRACE_ID_DELIMITER
-        || xrayTraceId.charAt(TRACE_ID_DELIMITER_INDEX_2) != TRACE_ID_DELIMITER) {
-      return TraceId.getInvalid();
+  private static int indexOf(String s, char c, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (s.charAt(i) == c) {
+        return i;
+      }
     }
-
-    String epochPart =
-        xrayTraceId.substring(TRACE_ID_DELIMITER_INDEX_1 + 1, TRACE_ID_DELIMITER_INDEX_2);
-    String uniquePart = xrayTraceId.substring(TRACE_ID_DELIMITER_INDEX_2 + 1, TRACE_ID_LENGTH);
-
-    // X-Ray trace id format is 1-{8 digit hex}-{24 digit hex}
-    return epochPart + uniquePart;
+    return -1;
   }
 
-  private static String parseShortTraceId(String xrayTraceId) {
-    if (xrayTraceId.length() > TRACE_ID_LENGTH) {
-      return TraceId.getInvalid();
+  /**
+   * Parses the X-Ray trace ID between the given offsets of the header, returns {@code null} if it
+   * is invalid.
+   */
+  @Nullable
+  private static String parseTraceId(String traceHeader, int start, int end) {
+    // X-Ray trace id format is 1-{at most 8 digit hex}-{24 digit hex}
+    // epoch part can have leading 0s truncated, but we don't allow it to be missing completely
+    if (end - start > TRACE_ID_LENGTH
+        || end - start < 2
+        || traceHeader.charAt(start) != TRACE_ID_VERSION
+        || traceHeader.charAt(start + 1) != TRACE_ID_DELIMITER) {
+      return null;
     }
-
-    // Check version trace id version
-    if (!xrayTraceId.startsWith(TRACE_ID_VERSION)) {
-      return TraceId.getInvalid();
+    int firstPartStart = start + 2;
+    int firstPartEnd =
+        indexOf(
+            traceHeader,
+            TRACE_ID_DELIMITER,
+            firstPartStart + 1,
+            Math.min(end, firstPartStart + TRACE_ID_FIRST_PART_LENGTH + 1));
+    if (firstPartEnd < 0 || end - firstPartEnd - 1 != TRACE_ID_SECOND_PART_LENGTH) {
+      return null;
     }
 
-    // Check delimiters
-    int firstDelimiter = xrayTraceId.indexOf(TRACE_ID_DELIMITER);
-    // we don't allow the epoch part to be missing completely
-    int secondDelimiter = xrayTraceId.indexOf(TRACE_ID_DELIMITER, firstDelimiter + 2);
-    if (firstDelimiter != TRACE_ID_DELIMITER_INDEX_1
-        || secondDelimiter == -1
-        || secondDelimiter > TRACE_ID_DELIMITER_INDEX_2) {
-      return TraceId.getInvalid();
+    char[] traceId = new char[TraceId.getLength()];
+    int firstPartPadding = TRACE_ID_FIRST_PART_LENGTH - (firstPartEnd - firstPartStart);
+    for (int i = 0; i < firstPartPadding; i++) {
+      traceId[i] = '0';
     }
-
-    String epochPart = xrayTraceId.substring(firstDelimiter + 1, secondDelimiter);
-    String uniquePart = xrayTraceId.substring(secondDelimiter + 1, secondDelimiter + 25);
-
-    // X-Ray trace id format is 1-{at most 8 digit hex}-{24 digit hex}
-    // epoch part can have leading 0s truncated
-    return epochPart + uniquePart;
-  }
-
-  private static String parseSpanId(String xrayParentId) {
-    if (xrayParentId.length() != PARENT_ID_LENGTH) {
-      return SpanId.getInvalid();
+    traceHeader.getChars(firstPartStart, firstPartEnd, traceId, firstPartPadding);
+    traceHeader.getChars(firstPartEnd + 1, end, traceId, TRACE_ID_FIRST_PART_LENGTH);
+    for (int i = firstPartPadding; i < traceId.length; i++) {
+      if (!OtelEncodingUtils.isValidBase16Character(traceId[i])) {
+        return null;
+      }
     }
-
-    return xrayParentId;
+    return new String(traceId);
   }
 
+  /**
+   * Parses the X-Ray parent ID between the given offsets of the header, returns {@code null} if it
+   * is invalid.
+   */
   @Nullable
-  private static Boolean parseTraceFlag(String xraySampledFlag) {
-    if (xraySampledFlag.length() != SAMPLED_FLAG_LENGTH) {
-      // Returning null as there is no invalid trace flag defined.
+  private static String parseSpanId(String traceHeader, int start, int end) {
+    if (end - start != PARENT_ID_LENGTH) {
       return null;
     }
-
-    char flag = xraySampledFlag.charAt(0);
-    if (flag == IS_SAMPLED) {
-      return true;
-    } else if (flag == NOT_SAMPLED) {
-      return false;
-    } else {
-      return null;
+    for (int i = start; i < end; i++) {
+      if (!OtelEncodingUtils.isValidBase16Character(traceHeader.charAt(i))) {
+        return null;
+      }
     }
+    return traceHeader.substring(start, end);
   }
 }
@@ -0,0 +1,34 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.awsxray.propagator;
+
+/** A builder for {@link AwsXrayPropagator}. */
+public final class AwsXrayPropagatorBuilder {
+
+  private boolean propagateOtTraceState;
+
+  AwsXrayPropagatorBuilder() {}
+
+  /**
+   * Sets whether the {@code ot} entry of the trace state, which carries the p- and r-values of
+   * consistent probability sampling, is propagated as an {@code ot} field of the X-Ray trace
+   * header. The entry is encoded with {@code |} instead of {@code ;} as separator, for example
+   * {@code ot=p:8|r:62}. Propagators receiving the header must enable this option too, otherwise
+   * they extract the field as baggage. Disabled by default.
+   */
+  public AwsXrayPropagatorBuilder setPropagateOtTraceState(boolean propagateOtTraceState) {
+    this.propagateOtTraceState = propagateOtTraceState;
+    return this;
+  }
+
+  /** Returns a {@link AwsXrayPropagator} with the configuration of this builder. */
+  public AwsXrayPropagator build() {
+    if (!propagateOtTraceState) {
+      return AwsXrayPropagator.getInstance();
+    }
+    return new AwsXrayPropagator(true);
+  }
+}
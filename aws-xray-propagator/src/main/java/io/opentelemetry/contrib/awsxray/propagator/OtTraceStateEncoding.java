@@ -0,0 +1,195 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.awsxray.propagator;
+
+import io.opentelemetry.api.trace.TraceState;
+import javax.annotation.Nullable;
+
+/**
+ * Encodes the {@code ot} entry of the trace state, which holds the p- and r-values of consistent
+ * probability sampling, as a field of the X-Ray trace header.
+ *
+ * <p>The entry is a list of key-value pairs separated by {@code ;}, which is the field delimiter of
+ * the X-Ray trace header. The pairs are therefore separated by {@code |} in the field, for example
+ * {@code ot=p:8|r:62}, which is otherwise not allowed in the entry. Only entries consisting of the
+ * characters allowed by the {@code ot} entry are encoded.
+ *
+ * <p>Decoding entries with only a p- and r-value, as written by consistent samplers, does not
+ * allocate, as the corresponding trace states are cached. Other entries are decoded as is, and are
+ * validated by the samplers parsing them.
+ */
+final class OtTraceStateEncoding {
+
+  static final String TRACE_STATE_KEY = "ot";
+
+  private static final String FIELD_PREFIX = ";" + TRACE_STATE_KEY + "=";
+  private static final char SEPARATOR = ';';
+  private static final char ENCODED_SEPARATOR = '|';
+  private static final int MAX_LENGTH = 256;
+
+  private static final int MAX_P = 63;
+  private static final int MAX_R = 62;
+
+  // trace states with only a p- and r-value, indexed by (p + 1) * (MAX_R + 2) + (r + 1), where an
+  // absent value is -1. Races when populating it are benign, as trace states are immutable.
+  private static final TraceState[] P_AND_R_TRACE_STATES =
+      new TraceState[(MAX_P + 2) * (MAX_R + 2)];
+
+  private OtTraceStateEncoding() {}
+
+  /**
+   * Returns the length of the field encoding the given entry, including the leading delimiter, or
+   * -1 if the entry cannot be encoded.
+   */
+  static int encodedLength(String value) {
+    if (value.isEmpty() || value.length() > MAX_LENGTH) {
+      return -1;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c != SEPARATOR && c != ':' && !isValueChar(c)) {
+        return -1;
+      }
+    }
+    return FIELD_PREFIX.length() + value.length();
+  }
+
+  /**
+   * Writes the field encoding the given entry, which must have a non-negative {@linkplain
+   * #encodedLength(String) encoded length}, to the given array.
+   */
+  static void encode(String value, char[] dst, int offset) {
+    FIELD_PREFIX.getChars(0, FIELD_PREFIX.length(), dst, offset);
+    offset += FIELD_PREFIX.length();
+    value.getChars(0, value.length(), dst, offset);
+    for (int i = offset; i < offset + value.length(); i++) {
+      if (dst[i] == SEPARATOR) {
+        dst[i] = ENCODED_SEPARATOR;
+      }
+    }
+  }
+
+  /**
+   * Decodes the value of the field between the given offsets of the trace header, returns the
+   * default trace state if it cannot be decoded.
+   */
+  static TraceState decode(String traceHeader, int start, int end) {
+    TraceState traceState = decodePAndR(traceHeader, start, end);
+    if (traceState != null) {
+      return traceState;
+    }
+    if (start == end || end - start > MAX_LENGTH) {
+      return TraceState.getDefault();
+    }
+    char[] value = new char[end - start];
+    traceHeader.getChars(start, end, value, 0);
+    for (int i = 0; i < value.length; i++) {
+      char c = value[i];
+      if (c == ENCODED_SEPARATOR) {
+        value[i] = SEPARATOR;
+      } else if (c != ':' && !isValueChar(c)) {
+        return TraceState.getDefault();
+      }
+    }
+    return TraceState.builder().put(TRACE_STATE_KEY, new String(value)).build();
+  }
+
+  /**
+   * Decodes entries of the form {@code p:<p>}, {@code r:<r>} or {@code p:<p>|r:<r>} with values
+   * without leading zeros, which are serialized exactly like the cached trace states. Returns
+   * {@code null} for all other entries.
+   */
+  @Nullable
+  private static TraceState decodePAndR(String traceHeader, int start, int end) {
+    int p = -1;
+    int r = -1;
+    int pos = start;
+    if (isSubkey(traceHeader, pos, end, 'p')) {
+      int valueEnd = valueEnd(traceHeader, pos + 2, end);
+      p = parseValue(traceHeader, pos + 2, valueEnd, MAX_P);
+      if (p < 0) {
+        return null;
+      }
+      pos = valueEnd;
+      if (pos == end) {
+        return getPAndRTraceState(p, r);
+      }
+      if (traceHeader.charAt(pos) != ENCODED_SEPARATOR) {
+        return null;
+      }
+      pos++;
+    }
+    if (!isSubkey(traceHeader, pos, end, 'r')) {
+      return null;
+    }
+    int valueEnd = valueEnd(traceHeader, pos + 2, end);
+    r = parseValue(traceHeader, pos + 2, valueEnd, MAX_R);
+    if (r < 0 || valueEnd != end) {
+      return null;
+    }
+    return getPAndRTraceState(p, r);
+  }
+
+  private static boolean isSubkey(String s, int pos, int end, char subkey) {
+    return pos + 2 <= end && s.charAt(pos) == subkey && s.charAt(pos + 1) == ':';
+  }
+
+  private static int valueEnd(String s, int pos, int end) {
+    while (pos < end && s.charAt(pos) != ENCODED_SEPARATOR) {
+      pos++;
+    }
+    return pos;
+  }
+
+  // Parses a one or two digit number without leading zeros, returns -1 if invalid.
+  private static int parseValue(String s, int start, int end, int max) {
+    if (end - start == 1) {
+      char c = s.charAt(start);
+      return isDigit(c) ? c - '0' : -1;
+    }
+    if (end - start == 2) {
+      char c1 = s.charAt(start);
+      char c2 = s.charAt(start + 1);
+      if (c1 != '0' && isDigit(c1) && isDigit(c2)) {
+        int value = (c1 - '0') * 10 + (c2 - '0');
+        return value <= max ? value : -1;
+      }
+    }
+    return -1;
+  }
+
+  private static TraceState getPAndRTraceState(int p, int r) {
+    int index = (p + 1) * (MAX_R + 2) + (r + 1);
+    TraceState traceState = P_AND_R_TRACE_STATES[index];
+    if (traceState == null) {
+      String value;
+      if (p < 0) {
+        value = "r:" + r;
+      } else if (r < 0) {
+        value = "p:" + p;
+      } else {
+        value = "p:" + p + SEPARATOR + "r:" + r;
+      }
+      traceState = TraceState.builder().put(TRACE_STATE_KEY, value).build();
+      P_AND_R_TRACE_STATES[index] = traceState;
+    }
+    return traceState;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  // characters allowed in the keys and values of the ot entry
+  private static boolean isValueChar(char c) {
+    return (c >= 'a' && c <= 'z')
+        || (c >= 'A' && c <= 'Z')
+        || isDigit(c)
+        || c == '.'
+        || c == '_'
+        || c == '-';
+  }
+}
@@ -7,6 +7,7 @@ package io.opentelemetry.contrib.awsxray.propagator;
 
 import static io.opentelemetry.contrib.awsxray.propagator.AwsXrayPropagator.TRACE_HEADER_KEY;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 
 import io.opentelemetry.api.baggage.Baggage;
 import io.opentelemetry.api.trace.Span;
@@ -24,6 +25,8 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.annotation.Nullable;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
 class AwsXrayPropagatorTest {
 
@@ -45,6 +48,8 @@ class AwsXrayPropagatorTest {
         }
       };
   private final AwsXrayPropagator xrayPropagator = AwsXrayPropagator.getInstance();
+  private final AwsXrayPropagator otXrayPropagator =
+      AwsXrayPropagator.builder().setPropagateOtTraceState(true).build();
 
   @Test
   void inject_SampledContext() {
@@ -467,6 +472,194 @@ class AwsXrayPropagatorTest {
         .isSameAs(SpanContext.getInvalid());
   }
 
+  @Test
+  void extract_InvalidTraceId_UniquePart_TooShort() {
+    Map<String, String> invalidHeaders = new LinkedHashMap<>();
+    invalidHeaders.put(
+        TRACE_HEADER_KEY, "Root=1-8a3c60f7-d188f8fa79d48a;Parent=53995c3f42cd8ad8;Sampled=0");
+
+    assertThat(getSpanContext(xrayPropagator.extract(Context.current(), invalidHeaders, getter)))
+        .isSameAs(SpanContext.getInvalid());
+  }
+
+  @Test
+  void extract_WhitespaceAroundParts() {
+    Map<String, String> carrier = new LinkedHashMap<>();
+    carrier.put(
+        TRACE_HEADER_KEY,
+        " Root=1-8a3c60f7-d188f8fa79d48a391a778fa6 ; Parent=53995c3f42cd8ad8;\tSampled=1 ;Foo=Bar"
+            + " ");
+
+    Context context = xrayPropagator.extract(Context.current(), carrier, getter);
+    assertThat(getSpanContext(context))
+        .isEqualTo(
+            SpanContext.createFromRemoteParent(
+                TRACE_ID, SPAN_ID, TraceFlags.getSampled(), TraceState.getDefault()));
+    assertThat(Baggage.fromContext(context).getEntryValue("Foo")).isEqualTo("Bar");
+  }
+
+  @Test
+  void extract_NoAdditionalFields_KeepsBaggage() {
+    Map<String, String> carrier = new LinkedHashMap<>();
+    carrier.put(
+        TRACE_HEADER_KEY,
+        "Root=1-8a3c60f7-d188f8fa79d48a391a778fa6;Parent=53995c3f42cd8ad8;Sampled=1");
+    Context context = Context.root().with(Baggage.builder().put("cat", "meow").build());
+
+    assertThat(Baggage.fromContext(xrayPropagator.extract(context, carrier, getter)))
+        .isSameAs(Baggage.fromContext(context));
+  }
+
+  @Test
+  void inject_OtTraceState() {
+    Map<String, String> carrier = new LinkedHashMap<>();
+    otXrayPropagator.inject(
+        withSpanContext(
+                SpanContext.create(
+                    TRACE_ID,
+                    SPAN_ID,
+                    TraceFlags.getSampled(),
+                    TraceState.builder().put("foo", "bar").put("ot", "p:8;r:62").build()),
+                Context.current())
+            .with(Baggage.builder().put("ot", "ignored").put("cat", "meow").build()),
+        carrier,
+        setter);
+
+    assertThat(carrier)
+        .containsEntry(
+            TRACE_HEADER_KEY,
+            "Root=1-8a3c60f7-d188f8fa79d48a391a778fa6;Parent=53995c3f42cd8ad8;Sampled=1;"
+                + "ot=p:8|r:62;cat=meow");
+  }
+
+  @Test
+  void inject_OtTraceState_Disabled() {
+    Map<String, String> carrier = new LinkedHashMap<>();
+    xrayPropagator.inject(
+        withSpanContext(
+            SpanContext.create(
+                TRACE_ID,
+                SPAN_ID,
+                TraceFlags.getSampled(),
+                TraceState.builder().put("ot", "p:8;r:62").build()),
+            Context.current()),
+        carrier,
+        setter);
+
+    assertThat(carrier)
+        .containsEntry(
+            TRACE_HEADER_KEY,
+            "Root=1-8a3c60f7-d188f8fa79d48a391a778fa6;Parent=53995c3f42cd8ad8;Sampled=1");
+  }
+
+  @Test
+  void inject_OtTraceState_InvalidCharacters() {
+    Map<String, String> carrier = new LinkedHashMap<>();
+    otXrayPropagator.inject(
+        withSpanContext(
+            SpanContext.create(
+                TRACE_ID,
+                SPAN_ID,
+                TraceFlags.getSampled(),
+                TraceState.builder().put("ot", "p:8 r:62").build()),
+            Context.current()),
+        carrier,
+        setter);
+
+    assertThat(carrier)
+        .containsEntry(
+            TRACE_HEADER_KEY,
+            "Root=1-8a3c60f7-d188f8fa79d48a391a778fa6;Parent=53995c3f42cd8ad8;Sampled=1");
+  }
+
+  // entries as serialized by consistent samplers, and entries that they parse or reject
+  @ParameterizedTest
+  @ValueSource(
+      strings = {
+        "p:0",
+        "p:63",
+        "r:0",
+        "r:62",
+        "p:8;r:62",
+        "p:63;r:0",
+        "r:5;p:7",
+        "p:08",
+        "p:64",
+        "r:63",
+        "p:5;",
+        "p:5;x:3",
+        "x:3;p:5;r:10",
+        "p5:3;p:6;r:10",
+        "p:",
+        "a:XXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXXX;p:5;x:3"
+      })
+  void extract_OtTraceState_RoundTrips(String otTraceState) {
+    Map<String, String> carrier = new LinkedHashMap<>();
+    otXrayPropagator.inject(
+        withSpanContext(
+            SpanContext.create(
+                TRACE_ID,
+                SPAN_ID,
+                TraceFlags.getSampled(),
+                TraceState.builder().put("ot", otTraceState).build()),
+            Context.current()),
+        carrier,
+        setter);
+
+    Context context = otXrayPropagator.extract(Context.root(), carrier, getter);
+    assertThat(getSpanContext(context))
+        .isEqualTo(
+            SpanContext.createFromRemoteParent(
+                TRACE_ID,
+                SPAN_ID,
+                TraceFlags.getSampled(),
+                TraceState.builder().put("ot", otTraceState).build()));
+    assertThat(Baggage.fromContext(context).isEmpty()).isTrue();
+  }
+
+  @Test
+  void extract_OtTraceState_PAndRValuesAreCached() {
+    Map<String, String> carrier = new LinkedHashMap<>();
+    carrier.put(
+        TRACE_HEADER_KEY,
+        "Root=1-8a3c60f7-d188f8fa79d48a391a778fa6;Parent=53995c3f42cd8ad8;Sampled=1;"
+            + "ot=p:8|r:62");
+
+    TraceState traceState =
+        getSpanContext(otXrayPropagator.extract(Context.root(), carrier, getter)).getTraceState();
+    assertThat(traceState.asMap()).containsExactly(entry("ot", "p:8;r:62"));
+    assertThat(getSpanContext(otXrayPropagator.extract(Context.root(), carrier, getter)))
+        .extracting(SpanContext::getTraceState)
+        .isSameAs(traceState);
+  }
+
+  @Test
+  void extract_OtTraceState_InvalidCharacters() {
+    Map<String, String> carrier = new LinkedHashMap<>();
+    carrier.put(
+        TRACE_HEADER_KEY,
+        "Root=1-8a3c60f7-d188f8fa79d48a391a778fa6;Parent=53995c3f42cd8ad8;Sampled=1;"
+            + "ot=p:8|r:62#");
+
+    assertThat(getSpanContext(otXrayPropagator.extract(Context.root(), carrier, getter)))
+        .isEqualTo(
+            SpanContext.createFromRemoteParent(
+                TRACE_ID, SPAN_ID, TraceFlags.getSampled(), TraceState.getDefault()));
+  }
+
+  @Test
+  void extract_OtTraceState_Disabled() {
+    Map<String, String> carrier = new LinkedHashMap<>();
+    carrier.put(
+        TRACE_HEADER_KEY,
+        "Root=1-8a3c60f7-d188f8fa79d48a391a778fa6;Parent=53995c3f42cd8ad8;Sampled=1;"
+            + "ot=p:8|r:62");
+
+    Context context = xrayPropagator.extract(Context.root(), carrier, getter);
+    assertThat(getSpanContext(context).getTraceState()).isSameAs(TraceState.getDefault());
+    assertThat(Baggage.fromContext(context).getEntryValue("ot")).isEqualTo("p:8|r:62");
+  }
+
   private static Context withSpanContext(SpanContext spanContext, Context context) {
     return context.with(Span.wrap(spanContext));
   }
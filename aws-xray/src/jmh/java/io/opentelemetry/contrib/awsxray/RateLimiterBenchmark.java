@@ -0,0 +1,72 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.awsxray;
+
+import io.opentelemetry.sdk.common.Clock;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link RateLimiter} and {@link ShardedRateLimiter} when many threads spend from a single
+ * limiter, as happens for the reservoir of a hot rule.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class RateLimiterBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class LimiterState {
+
+    @Param({"false", "true"})
+    public boolean sharded;
+
+    // high enough that most requests are admitted, as during a burst
+    @Param({"1000000"})
+    public int creditsPerSecond;
+
+    private CreditLimiter limiter;
+
+    @Setup
+    public void setup() {
+      limiter =
+          sharded
+              ? new ShardedRateLimiter(creditsPerSecond, creditsPerSecond, Clock.getDefault())
+              : new RateLimiter(creditsPerSecond, creditsPerSecond, Clock.getDefault());
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public boolean trySpend01Thread(LimiterState state) {
+    return state.limiter.trySpend(1);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public boolean trySpend08Threads(LimiterState state) {
+    return state.limiter.trySpend(1);
+  }
+
+  @Benchmark
+  @Threads(64)
+  public boolean trySpend64Threads(LimiterState state) {
+    return state.limiter.trySpend(1);
+  }
+}
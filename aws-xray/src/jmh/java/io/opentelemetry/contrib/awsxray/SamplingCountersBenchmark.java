@@ -0,0 +1,119 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.awsxray;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares recording sampling requests with {@link SamplingCounters} to the three {@link
+ * LongAdder}s previously used by {@link SamplingRuleApplier}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SamplingCountersBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class PackedState {
+    private final SamplingCounters counters = new SamplingCounters();
+  }
+
+  @State(Scope.Benchmark)
+  public static class LongAdderState {
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder sampled = new LongAdder();
+    private final LongAdder borrowed = new LongAdder();
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    private int requestIndex;
+
+    // every fourth request is sampled, every eighth borrowed
+    int next() {
+      return requestIndex++ & 7;
+    }
+  }
+
+  private static void recordPacked(PackedState state, ThreadState threadState) {
+    int i = threadState.next();
+    state.counters.record(/* sampled= */ (i & 3) == 0, /* borrowed= */ i == 0);
+  }
+
+  private static void recordLongAdders(LongAdderState state, ThreadState threadState) {
+    int i = threadState.next();
+    state.requests.increment();
+    if ((i & 3) == 0) {
+      if (i == 0) {
+        state.borrowed.increment();
+      }
+      state.sampled.increment();
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void packed01Thread(PackedState state, ThreadState threadState) {
+    recordPacked(state, threadState);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public void packed08Threads(PackedState state, ThreadState threadState) {
+    recordPacked(state, threadState);
+  }
+
+  @Benchmark
+  @Threads(64)
+  public void packed64Threads(PackedState state, ThreadState threadState) {
+    recordPacked(state, threadState);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void longAdders01Thread(LongAdderState state, ThreadState threadState) {
+    recordLongAdders(state, threadState);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public void longAdders08Threads(LongAdderState state, ThreadState threadState) {
+    recordLongAdders(state, threadState);
+  }
+
+  @Benchmark
+  @Threads(64)
+  public void longAdders64Threads(LongAdderState state, ThreadState threadState) {
+    recordLongAdders(state, threadState);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public SamplingCounters.Counts drainPacked(PackedState state) {
+    return state.counters.drain();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public long drainLongAdders(LongAdderState state) {
+    return state.requests.sumThenReset()
+        + state.sampled.sumThenReset()
+        + state.borrowed.sumThenReset();
+  }
+}
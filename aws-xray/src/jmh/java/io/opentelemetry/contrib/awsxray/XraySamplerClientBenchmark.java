@@ -0,0 +1,109 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.awsxray;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares deserializing responses from the body stream with deserializing them from a string, as
+ * was done before. Payloads are built from records as returned by X-Ray, repeated to the given
+ * number of rules.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class XraySamplerClientBenchmark {
+
+  private static final String SAMPLING_RULE_RECORD =
+      "{\"SamplingRule\":{"
+          + "\"RuleName\":\"rule-%d\","
+          + "\"RuleARN\":\"arn:aws:xray:us-east-1:595986152929:sampling-rule/rule-%d\","
+          + "\"ResourceARN\":\"*\","
+          + "\"Priority\":%d,"
+          + "\"FixedRate\":0.05,"
+          + "\"ReservoirSize\":1,"
+          + "\"ServiceName\":\"service-%d\","
+          + "\"ServiceType\":\"*\","
+          + "\"Host\":\"*\","
+          + "\"HTTPMethod\":\"GET\","
+          + "\"URLPath\":\"/api/v1/resource-%d/*\","
+          + "\"Version\":1,"
+          + "\"Attributes\":{\"animal\":\"cat\",\"speed\":\"10\"}},"
+          + "\"CreatedAt\":\"2021-06-18T17:28:15+09:00\","
+          + "\"ModifiedAt\":\"2021-06-18T17:28:15+09:00\"}";
+
+  private static final String SAMPLING_TARGET_DOCUMENT =
+      "{\"RuleName\":\"rule-%d\","
+          + "\"FixedRate\":0.1,"
+          + "\"ReservoirQuota\":2,"
+          + "\"ReservoirQuotaTTL\":1530923107.%03d,"
+          + "\"Interval\":10}";
+
+  @Param({"10", "500"})
+  public int numberOfRules;
+
+  private byte[] samplingRulesResponse;
+  private byte[] samplingTargetsResponse;
+
+  @Setup
+  public void setup() {
+    StringBuilder rules = new StringBuilder("{\"SamplingRuleRecords\":[");
+    StringBuilder targets = new StringBuilder("{\"SamplingTargetDocuments\":[");
+    for (int i = 0; i < numberOfRules; i++) {
+      if (i > 0) {
+        rules.append(',');
+        targets.append(',');
+      }
+      rules.append(String.format(SAMPLING_RULE_RECORD, i, i, i, i, i));
+      targets.append(String.format(SAMPLING_TARGET_DOCUMENT, i, i % 1000));
+    }
+    rules.append("]}");
+    targets.append("],\"LastRuleModification\":1530920505.0,\"UnprocessedStatistics\":[]}");
+    samplingRulesResponse = rules.toString().getBytes(StandardCharsets.UTF_8);
+    samplingTargetsResponse = targets.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public GetSamplingRulesResponse getSamplingRulesFromStream() throws IOException {
+    return XraySamplerClient.GET_SAMPLING_RULES_RESPONSE_READER.readValue(
+        new ByteArrayInputStream(samplingRulesResponse));
+  }
+
+  @Benchmark
+  public GetSamplingRulesResponse getSamplingRulesFromString() throws IOException {
+    return XraySamplerClient.GET_SAMPLING_RULES_RESPONSE_READER.readValue(
+        new String(samplingRulesResponse, StandardCharsets.UTF_8));
+  }
+
+  @Benchmark
+  public GetSamplingTargetsResponse getSamplingTargetsFromStream() throws IOException {
+    return XraySamplerClient.GET_SAMPLING_TARGETS_RESPONSE_READER.readValue(
+        new ByteArrayInputStream(samplingTargetsResponse));
+  }
+
+  @Benchmark
+  public GetSamplingTargetsResponse getSamplingTargetsFromString() throws IOException {
+    return XraySamplerClient.GET_SAMPLING_TARGETS_RESPONSE_READER.readValue(
+        new String(samplingTargetsResponse, StandardCharsets.UTF_8));
+  }
+}
@@ -7,7 +7,6 @@ package io.opentelemetry.contrib.awsxray;
 
 import io.opentelemetry.api.trace.TraceId;
 import io.opentelemetry.sdk.trace.IdGenerator;
-import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
@@ -38,17 +37,30 @@ public final class AwsXrayIdGenerator implements IdGenerator {
 
   @Override
   public String generateTraceId() {
-    // hi - 4 bytes timestamp, 4 bytes random
-    // low - 8 bytes random.
     // Since we include timestamp, impossible to be invalid.
+    return TraceId.fromLongs(generateTraceIdHigh(), generateTraceIdLow());
+  }
 
-    Random random = ThreadLocalRandom.current();
+  /**
+   * Returns the high 64 bits of a new trace id, which are 4 bytes of timestamp followed by 4 random
+   * bytes. Together with {@link #generateTraceIdLow()}, this allows callers that handle trace ids
+   * in binary form to generate them without creating a hex {@link String}.
+   *
+   * @see TraceId#fromLongs(long, long)
+   */
+  public long generateTraceIdHigh() {
     long timestampSecs = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
-    long hiRandom = random.nextInt() & 0xFFFFFFFFL;
-
-    long lowRandom = random.nextLong();
+    long hiRandom = ThreadLocalRandom.current().nextInt() & 0xFFFFFFFFL;
+    return timestampSecs << 32 | hiRandom;
+  }
 
-    return TraceId.fromLongs(timestampSecs << 32 | hiRandom, lowRandom);
+  /**
+   * Returns the low 64 bits of a new trace id, which are random.
+   *
+   * @see #generateTraceIdHigh()
+   */
+  public long generateTraceIdLow() {
+    return ThreadLocalRandom.current().nextLong();
   }
 
   private AwsXrayIdGenerator() {}
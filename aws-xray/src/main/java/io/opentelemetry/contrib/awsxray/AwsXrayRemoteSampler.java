@@ -52,6 +52,9 @@ public final class AwsXrayRemoteSampler implements Sampler, Closeable {
   private final String clientId;
   private final long pollingIntervalNanos;
   private final Iterator<Long> jitterNanos;
+  private final boolean asyncPolling;
+  private final boolean shardedRateLimiter;
+  private final int matchCacheSize;
 
   @Nullable private volatile ScheduledFuture<?> pollFuture;
   @Nullable private volatile ScheduledFuture<?> fetchTargetsFuture;
@@ -73,11 +76,21 @@ public final class AwsXrayRemoteSampler implements Sampler, Closeable {
       Clock clock,
       String endpoint,
       Sampler initialSampler,
-      long pollingIntervalNanos) {
+      long pollingIntervalNanos,
+      boolean asyncPolling,
+      boolean coalesceRulesRequests,
+      boolean shardedRateLimiter,
+      int matchCacheSize) {
     this.resource = resource;
     this.clock = clock;
     this.initialSampler = initialSampler;
-    client = new XraySamplerClient(endpoint);
+    this.asyncPolling = asyncPolling;
+    this.shardedRateLimiter = shardedRateLimiter;
+    this.matchCacheSize = matchCacheSize;
+    // Asynchronous requests only block threads of the shared dispatcher while being sent.
+    client =
+        new XraySamplerClient(
+            endpoint, XraySamplerClient.sharedHttpClient(), coalesceRulesRequests);
     executor =
         Executors.newSingleThreadScheduledExecutor(
             runnable -> {
@@ -100,7 +113,7 @@ public final class AwsXrayRemoteSampler implements Sampler, Closeable {
     jitterNanos = RANDOM.longs(0, pollingIntervalNanos / 100).iterator();
 
     // Execute first update right away on the executor thread.
-    executor.execute(this::getAndUpdateSampler);
+    executor.execute(this::pollRules);
   }
 
   @Override
@@ -119,39 +132,79 @@ public final class AwsXrayRemoteSampler implements Sampler, Closeable {
     return "AwsXrayRemoteSampler{" + sampler.getDescription() + "}";
   }
 
+  private void pollRules() {
+    if (asyncPolling) {
+      getAndUpdateSamplerAsync();
+    } else {
+      getAndUpdateSampler();
+    }
+  }
+
   private void getAndUpdateSampler() {
     try {
       // No pagination support yet, or possibly ever.
-      GetSamplingRulesResponse response =
-          client.getSamplingRules(GetSamplingRulesRequest.create(null));
-      if (!response.equals(previousRulesResponse)) {
-        sampler =
-            new XrayRulesSampler(
-                clientId,
-                resource,
-                clock,
-                initialSampler,
-                response.getSamplingRules().stream()
-                    .map(SamplingRuleRecord::getRule)
-                    .collect(Collectors.toList()));
-        previousRulesResponse = response;
-        ScheduledFuture<?> existingFetchTargetsFuture = fetchTargetsFuture;
-        if (existingFetchTargetsFuture != null) {
-          existingFetchTargetsFuture.cancel(false);
-        }
-        fetchTargetsFuture =
-            executor.schedule(
-                this::fetchTargets, DEFAULT_TARGET_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
-      }
+      updateSampler(client.getSamplingRules(GetSamplingRulesRequest.create(null)));
     } catch (Throwable t) {
       logger.log(Level.FINE, "Failed to update sampler", t);
     }
     scheduleSamplerUpdate();
   }
 
+  private void getAndUpdateSamplerAsync() {
+    // The executor thread is not blocked while waiting for the response, the response is handled
+    // on it again so that the sampler is only ever updated by the executor thread.
+    try {
+      client
+          .getSamplingRulesAsync(GetSamplingRulesRequest.create(null))
+          .whenCompleteAsync(
+              (response, throwable) -> {
+                try {
+                  if (throwable != null) {
+                    throw throwable;
+                  }
+                  updateSampler(response);
+                } catch (Throwable t) {
+                  logger.log(Level.FINE, "Failed to update sampler", t);
+                }
+                scheduleSamplerUpdate();
+              },
+              executor);
+    } catch (Throwable t) {
+      // The request could not even be started, keep polling anyway.
+      logger.log(Level.FINE, "Failed to update sampler", t);
+      scheduleSamplerUpdate();
+    }
+  }
+
+  private void updateSampler(GetSamplingRulesResponse response) {
+    if (response.equals(previousRulesResponse)) {
+      return;
+    }
+    List<GetSamplingRulesResponse.SamplingRule> rules =
+        response.getSamplingRules().stream()
+            .map(SamplingRuleRecord::getRule)
+            .collect(Collectors.toList());
+    Sampler currentSampler = sampler;
+    if (currentSampler instanceof XrayRulesSampler) {
+      // Unchanged rules keep their state. Targets are fetched as already scheduled, new rules
+      // are included as they are ready to report statistics right away.
+      sampler = ((XrayRulesSampler) currentSampler).withRules(rules);
+    } else {
+      sampler =
+          new XrayRulesSampler(
+              clientId, resource, clock, initialSampler, shardedRateLimiter, matchCacheSize, rules);
+      ScheduledFuture<?> existingFetchTargetsFuture = fetchTargetsFuture;
+      if (existingFetchTargetsFuture != null) {
+        existingFetchTargetsFuture.cancel(false);
+      }
+      scheduleFetchTargets(DEFAULT_TARGET_INTERVAL_NANOS);
+    }
+    previousRulesResponse = response;
+  }
+
   private void scheduleSamplerUpdate() {
     long delay = pollingIntervalNanos + jitterNanos.next();
-    pollFuture = executor.schedule(this::getAndUpdateSampler, delay, TimeUnit.NANOSECONDS);
+    pollFuture = executor.schedule(this::pollRules, delay, TimeUnit.NANOSECONDS);
   }
 
   /**
@@ -175,33 +228,62 @@ public final class AwsXrayRemoteSampler implements Sampler, Closeable {
     }
 
     XrayRulesSampler xrayRulesSampler = (XrayRulesSampler) sampler;
+    Date now = Date.from(Instant.ofEpochSecond(0, clock.now()));
+    GetSamplingTargetsResponse response;
+    Set<String> requestedTargetRuleNames;
     try {
-      Date now = Date.from(Instant.ofEpochSecond(0, clock.now()));
       List<SamplingStatisticsDocument> statistics = xrayRulesSampler.snapshot(now);
-      Set<String> requestedTargetRuleNames =
+      requestedTargetRuleNames =
           statistics.stream()
               .map(SamplingStatisticsDocument::getRuleName)
               .collect(Collectors.toSet());
 
-      GetSamplingTargetsResponse response =
-          client.getSamplingTargets(GetSamplingTargetsRequest.create(statistics));
+      GetSamplingTargetsRequest request = GetSamplingTargetsRequest.create(statistics);
+      if (asyncPolling) {
+        client
+            .getSamplingTargetsAsync(request)
+            .whenCompleteAsync(
+                (asyncResponse, throwable) -> {
+                  if (throwable != null) {
+                    scheduleFetchTargets(DEFAULT_TARGET_INTERVAL_NANOS);
+                  } else {
+                    updateTargets(asyncResponse, requestedTargetRuleNames, now);
+                  }
+                },
+                executor);
+        return;
+      }
+      response = client.getSamplingTargets(request);
+    } catch (Throwable t) {
+      // Might be a transient API failure, try again after a default interval.
+      scheduleFetchTargets(DEFAULT_TARGET_INTERVAL_NANOS);
+      return;
+    }
+
+    updateTargets(response, requestedTargetRuleNames, now);
+  }
+
+  private void updateTargets(
+      GetSamplingTargetsResponse response, Set<String> requestedTargetRuleNames, Date now) {
+    // Rules may have been updated while targets were fetched asynchronously, unchanged rules are
+    // shared with the current sampler.
+    XrayRulesSampler xrayRulesSampler = (XrayRulesSampler) sampler;
+    try {
       Map<String, SamplingTargetDocument> targets =
           response.getDocuments().stream()
               .collect(Collectors.toMap(SamplingTargetDocument::getRuleName, Function.identity()));
-      sampler =
-          xrayRulesSampler = xrayRulesSampler.withTargets(targets, requestedTargetRuleNames, now);
+      xrayRulesSampler.updateTargets(targets, requestedTargetRuleNames, now);
     } catch (Throwable t) {
-      // Might be a transient API failure, try again after a default interval.
-      fetchTargetsFuture =
-          executor.schedule(
-              this::fetchTargets, DEFAULT_TARGET_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+      // Might be a malformed response, try again after a default interval.
+      scheduleFetchTargets(DEFAULT_TARGET_INTERVAL_NANOS);
       return;
     }
 
-    long nextTargetFetchIntervalNanos =
-        xrayRulesSampler.nextTargetFetchTimeNanos() - clock.nanoTime();
-    fetchTargetsFuture =
-        executor.schedule(this::fetchTargets, nextTargetFetchIntervalNanos, TimeUnit.NANOSECONDS);
+    scheduleFetchTargets(xrayRulesSampler.nextTargetFetchTimeNanos() - clock.nanoTime());
+  }
+
+  private void scheduleFetchTargets(long delayNanos) {
+    fetchTargetsFuture = executor.schedule(this::fetchTargets, delayNanos, TimeUnit.NANOSECONDS);
   }
 
   @Override
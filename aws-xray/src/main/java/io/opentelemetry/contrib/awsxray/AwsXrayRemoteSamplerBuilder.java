@@ -27,6 +27,10 @@ public final class AwsXrayRemoteSamplerBuilder {
   private String endpoint = DEFAULT_ENDPOINT;
   @Nullable private Sampler initialSampler;
   private long pollingIntervalNanos = TimeUnit.SECONDS.toNanos(DEFAULT_POLLING_INTERVAL_SECS);
+  private boolean asyncPolling;
+  private boolean coalesceRulesRequests;
+  private boolean shardedRateLimiter;
+  private int matchCacheSize;
 
   AwsXrayRemoteSamplerBuilder(Resource resource) {
     this.resource = resource;
@@ -79,6 +83,57 @@ public final class AwsXrayRemoteSamplerBuilder {
     return this;
   }
 
+  /**
+   * Sets whether sampling rules and targets are polled with asynchronous requests. Asynchronous
+   * requests of all samplers in the JVM are executed by a shared HTTP client, and a slow response
+   * for rules does not delay fetching targets or vice versa. If unset, defaults to {@code false},
+   * which polls with blocking requests on a thread dedicated to this sampler.
+   */
+  @CanIgnoreReturnValue
+  public AwsXrayRemoteSamplerBuilder setAsyncPolling(boolean asyncPolling) {
+    this.asyncPolling = asyncPolling;
+    return this;
+  }
+
+  /**
+   * Sets whether requests for sampling rules are coalesced with requests of other samplers in the
+   * JVM that use the same endpoint, so that only one of them is in flight at a time and all
+   * samplers receive its response. Only applies if {@linkplain #setAsyncPolling(boolean)
+   * asynchronous polling} is enabled. If unset, defaults to {@code false}.
+   */
+  @CanIgnoreReturnValue
+  public AwsXrayRemoteSamplerBuilder setCoalesceRulesRequests(boolean coalesceRulesRequests) {
+    this.coalesceRulesRequests = coalesceRulesRequests;
+    return this;
+  }
+
+  /**
+   * Sets whether the reservoirs of sampling rules are rate limited with a limiter that is sharded
+   * by thread, which reduces contention when many threads sample spans for the same rule at once.
+   * If unset, defaults to {@code false}, which rate limits with a single shared balance.
+   */
+  @CanIgnoreReturnValue
+  public AwsXrayRemoteSamplerBuilder setShardedRateLimiter(boolean shardedRateLimiter) {
+    this.shardedRateLimiter = shardedRateLimiter;
+    return this;
+  }
+
+  /**
+   * Sets the number of span shapes for which the first matching sampling rule is cached, so that
+   * rules are only evaluated once for spans with the same URL path, HTTP method, host and function
+   * ARN. The sampling decision itself is still made for every span. The cache is cleared whenever
+   * the rules change, and is not used for rules matching custom span attributes. If unset, defaults
+   * to {@code 0}, which evaluates the rules for every span. Must be non-negative.
+   */
+  @CanIgnoreReturnValue
+  public AwsXrayRemoteSamplerBuilder setMatchCacheSize(int matchCacheSize) {
+    if (matchCacheSize < 0) {
+      throw new IllegalArgumentException("matchCacheSize must be non-negative");
+    }
+    this.matchCacheSize = matchCacheSize;
+    return this;
+  }
+
   /**
    * Sets the {@link Clock} used for time measurements for sampling, such as rate limiting or quota
    * expiry.
@@ -100,6 +155,14 @@ public final class AwsXrayRemoteSamplerBuilder {
                   new RateLimitingSampler(1, clock), Sampler.traceIdRatioBased(0.05)));
     }
     return new AwsXrayRemoteSampler(
-        resource, clock, endpoint, initialSampler, pollingIntervalNanos);
+        resource,
+        clock,
+        endpoint,
+        initialSampler,
+        pollingIntervalNanos,
+        asyncPolling,
+        coalesceRulesRequests,
+        shardedRateLimiter,
+        matchCacheSize);
   }
 }
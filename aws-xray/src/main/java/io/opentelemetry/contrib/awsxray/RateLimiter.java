@@ -17,7 +17,7 @@ import java.util.concurrent.atomic.AtomicLong;
  * <p>This class is internal and is hence not for public use. Its APIs are unstable and can change
  * at any time.
  */
-final class RateLimiter {
+final class RateLimiter implements CreditLimiter {
   private final Clock clock;
   private final double creditsPerNanosecond;
   private final long maxBalance; // max balance in nano ticks
@@ -42,6 +42,7 @@ final class RateLimiter {
    * Check to see if the provided cost can be spent within the current limits. Will deduct the cost
    * from the current balance if it can be spent.
    */
+  @Override
   public boolean trySpend(double itemCost) {
     long cost = (long) (itemCost / creditsPerNanosecond);
     long currentNanos;
@@ -17,11 +17,26 @@ import java.util.List;
 
 final class RateLimitingSampler implements Sampler {
 
-  private final RateLimiter limiter;
+  private final CreditLimiter limiter;
   private final int numPerSecond;
 
   RateLimitingSampler(int numPerSecond, Clock clock) {
-    limiter = new RateLimiter(numPerSecond, numPerSecond, clock);
+    this(numPerSecond, clock, /* sharded= */ false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param numPerSecond the number of spans to sample per second
+   * @param clock the clock to measure time with
+   * @param sharded whether to use a {@link ShardedRateLimiter}, which scales better if many threads
+   *     sample at once
+   */
+  RateLimitingSampler(int numPerSecond, Clock clock, boolean sharded) {
+    limiter =
+        sharded
+            ? new ShardedRateLimiter(numPerSecond, numPerSecond, clock)
+            : new RateLimiter(numPerSecond, numPerSecond, clock);
     this.numPerSecond = numPerSecond;
   }
 
@@ -0,0 +1,170 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.awsxray;
+
+import static io.opentelemetry.contrib.awsxray.Striping.PADDING_SHIFT;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.annotation.Nullable;
+
+/**
+ * Counts the sampling requests of a rule together with how many of them were sampled and borrowed,
+ * as reported to X-Ray.
+ *
+ * <p>The three counts are packed into a single {@code long} per stripe, so that a sampling request
+ * is recorded with one atomic write. Like {@link java.util.concurrent.atomic.LongAdder}, requests
+ * are recorded in a single base count until an update fails due to contention. Only then the padded
+ * stripes are allocated, and threads are spread over them. A thread whose update of its stripe
+ * fails moves on to another stripe, so that colliding threads do not keep retrying on the same one.
+ * Rules that are never contended therefore do not pay for the stripes. Counts are drained with an
+ * atomic swap, so the counts of a request always end up in the same {@linkplain #drain() drain},
+ * and drained counts never tear relative to each other as three separately reset counters would.
+ */
+final class SamplingCounters {
+
+  private static final int BITS_PER_COUNT = 21;
+  private static final long COUNT_MASK = (1L << BITS_PER_COUNT) - 1;
+  private static final int SAMPLED_SHIFT = BITS_PER_COUNT;
+  private static final int BORROWED_SHIFT = 2 * BITS_PER_COUNT;
+
+  private static final long REQUEST = 1L;
+  private static final long SAMPLED = 1L << SAMPLED_SHIFT;
+  private static final long BORROWED = 1L << BORROWED_SHIFT;
+
+  // A single count, updated the same way as the stripes.
+  private final AtomicLongArray base = new AtomicLongArray(1);
+  private final int stripeMask;
+  // Allocated on the first contended update of the base count.
+  @Nullable private volatile AtomicLongArray stripes;
+
+  // Counts of the base count or stripes that were close to overflowing, guarded by this.
+  private long spilledRequests;
+  private long spilledSampled;
+  private long spilledBorrowed;
+
+  SamplingCounters() {
+    this(Striping.DEFAULT_NUMBER_OF_STRIPES);
+  }
+
+  // Visible for testing
+  SamplingCounters(int numberOfStripes) {
+    if (Integer.bitCount(numberOfStripes) != 1) {
+      throw new IllegalArgumentException("number of stripes must be a power of two");
+    }
+    stripeMask = numberOfStripes - 1;
+  }
+
+  /**
+   * Records a sampling request.
+   *
+   * @param sampled whether the request was sampled
+   * @param borrowed whether the request was sampled by borrowing from the reservoir, implies {@code
+   *     sampled}
+   */
+  void record(boolean sampled, boolean borrowed) {
+    long increment = REQUEST;
+    if (sampled) {
+      increment += SAMPLED;
+      if (borrowed) {
+        increment += BORROWED;
+      }
+    }
+    AtomicLongArray stripes = this.stripes;
+    if (stripes == null) {
+      if (tryRecord(base, 0, increment)) {
+        return;
+      }
+      stripes = getOrCreateStripes();
+    }
+    int probe = Striping.getProbe();
+    while (!tryRecord(stripes, (probe & stripeMask) << PADDING_SHIFT, increment)) {
+      probe = Striping.advanceProbe(probe);
+    }
+  }
+
+  private boolean tryRecord(AtomicLongArray counts, int index, long increment) {
+    long current = counts.get(index);
+    // The sampled and borrowed counts never exceed the request count, so it is sufficient to
+    // check the request count for overflows.
+    if ((current & COUNT_MASK) == COUNT_MASK) {
+      if (counts.compareAndSet(index, current, increment)) {
+        spill(current);
+        return true;
+      }
+      return false;
+    }
+    return counts.compareAndSet(index, current, current + increment);
+  }
+
+  private synchronized AtomicLongArray getOrCreateStripes() {
+    AtomicLongArray stripes = this.stripes;
+    if (stripes == null) {
+      stripes = new AtomicLongArray((stripeMask + 1) << PADDING_SHIFT);
+      this.stripes = stripes;
+    }
+    return stripes;
+  }
+
+  // Visible for testing
+  boolean isStriped() {
+    return stripes != null;
+  }
+
+  private synchronized void spill(long counts) {
+    spilledRequests += counts & COUNT_MASK;
+    spilledSampled += (counts >>> SAMPLED_SHIFT) & COUNT_MASK;
+    spilledBorrowed += counts >>> BORROWED_SHIFT;
+  }
+
+  /** Returns the counts recorded since the last call and resets them. */
+  synchronized Counts drain() {
+    spill(base.getAndSet(0, 0));
+    long requests = spilledRequests;
+    long sampled = spilledSampled;
+    long borrowed = spilledBorrowed;
+    spilledRequests = 0;
+    spilledSampled = 0;
+    spilledBorrowed = 0;
+    AtomicLongArray stripes = this.stripes;
+    if (stripes != null) {
+      for (int i = 0; i <= stripeMask; i++) {
+        long counts = stripes.getAndSet(i << PADDING_SHIFT, 0);
+        if (counts != 0) {
+          requests += counts & COUNT_MASK;
+          sampled += (counts >>> SAMPLED_SHIFT) & COUNT_MASK;
+          borrowed += counts >>> BORROWED_SHIFT;
+        }
+      }
+    }
+    return new Counts(requests, sampled, borrowed);
+  }
+
+  /** Counts drained from {@link SamplingCounters}. */
+  static final class Counts {
+
+    private final long requests;
+    private final long sampled;
+    private final long borrowed;
+
+    private Counts(long requests, long sampled, long borrowed) {
+      this.requests = requests;
+      this.sampled = sampled;
+      this.borrowed = borrowed;
+    }
+
+    long getRequests() {
+      return requests;
+    }
+
+    long getSampled() {
+      return sampled;
+    }
+
+    long getBorrowed() {
+      return borrowed;
+    }
+  }
+}
@@ -26,13 +26,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 
 final class SamplingRuleApplier {
 
+  private static final int NO_RESERVOIR_QUOTA = -1;
+
   private static final Map<String, String> XRAY_CLOUD_PLATFORM;
 
   static {
@@ -49,12 +50,10 @@ final class SamplingRuleApplier {
   }
 
   private final String clientId;
+  private final GetSamplingRulesResponse.SamplingRule rule;
   private final String ruleName;
   private final Clock clock;
-  private final Sampler reservoirSampler;
-  private final long reservoirEndTimeNanos;
-  private final Sampler fixedRateSampler;
-  private final boolean borrowing;
+  private final boolean shardedRateLimiter;
 
   private final Map<String, Matcher> attributeMatchers;
   private final Matcher urlPathMatcher;
@@ -64,13 +63,26 @@ final class SamplingRuleApplier {
   private final Matcher serviceTypeMatcher;
   private final Matcher resourceArnMatcher;
 
-  private final Statistics statistics;
+  // We keep track of sampling requests and decisions to report to X-Ray to allow it to allocate
+  // quota from the central reservoir.
+  private final SamplingCounters statistics;
 
-  private final long nextSnapshotTimeNanos;
+  // Replaced as a whole when a target is received, written only by the thread fetching targets.
+  private volatile TargetState targetState;
 
   SamplingRuleApplier(String clientId, GetSamplingRulesResponse.SamplingRule rule, Clock clock) {
+    this(clientId, rule, clock, /* shardedRateLimiter= */ false);
+  }
+
+  SamplingRuleApplier(
+      String clientId,
+      GetSamplingRulesResponse.SamplingRule rule,
+      Clock clock,
+      boolean shardedRateLimiter) {
     this.clientId = clientId;
+    this.rule = rule;
     this.clock = clock;
+    this.shardedRateLimiter = shardedRateLimiter;
     String ruleName = rule.getRuleName();
     if (ruleName == null) {
       // The AWS API docs mark this as an optional field but in practice it seems to always be
@@ -83,22 +95,35 @@ final class SamplingRuleApplier {
     this.ruleName = ruleName;
 
     // We don't have a SamplingTarget so are ready to report a snapshot right away.
-    nextSnapshotTimeNanos = clock.nanoTime();
+    long nextSnapshotTimeNanos = clock.nanoTime();
 
     // We either have no reservoir sampling or borrow until we get a quota so have no end time.
-    reservoirEndTimeNanos = Long.MAX_VALUE;
+    long reservoirEndTimeNanos = Long.MAX_VALUE;
 
+    Sampler reservoirSampler;
+    int reservoirQuota;
+    boolean borrowing;
     if (rule.getReservoirSize() > 0) {
       // Until calling GetSamplingTargets, the default is to borrow 1/s if reservoir size is
       // positive.
-      reservoirSampler = createRateLimited(1);
+      reservoirQuota = 1;
+      reservoirSampler = createRateLimited(reservoirQuota);
       borrowing = true;
     } else {
       // No reservoir sampling, we will always use the fixed rate.
+      reservoirQuota = NO_RESERVOIR_QUOTA;
       reservoirSampler = Sampler.alwaysOff();
       borrowing = false;
     }
-    fixedRateSampler = createFixedRate(rule.getFixedRate());
+    targetState =
+        new TargetState(
+            reservoirSampler,
+            reservoirQuota,
+            reservoirEndTimeNanos,
+            createFixedRate(rule.getFixedRate()),
+            rule.getFixedRate(),
+            borrowing,
+            nextSnapshotTimeNanos);
 
     if (rule.getAttributes().isEmpty()) {
       attributeMatchers = Collections.emptyMap();
@@ -115,66 +140,41 @@ final class SamplingRuleApplier {
     serviceTypeMatcher = toMatcher(rule.getServiceType());
     resourceArnMatcher = toMatcher(rule.getResourceArn());
 
-    statistics = new Statistics();
+    statistics = new SamplingCounters();
   }
 
-  private SamplingRuleApplier(
-      String clientId,
-      String ruleName,
-      Clock clock,
-      Sampler reservoirSampler,
-      long reservoirEndTimeNanos,
-      Sampler fixedRateSampler,
-      boolean borrowing,
-      Map<String, Matcher> attributeMatchers,
-      Matcher urlPathMatcher,
-      Matcher serviceNameMatcher,
-      Matcher httpMethodMatcher,
-      Matcher hostMatcher,
-      Matcher serviceTypeMatcher,
-      Matcher resourceArnMatcher,
-      Statistics statistics,
-      long nextSnapshotTimeNanos) {
-    this.clientId = clientId;
-    this.ruleName = ruleName;
-    this.clock = clock;
-    this.reservoirSampler = reservoirSampler;
-    this.reservoirEndTimeNanos = reservoirEndTimeNanos;
-    this.fixedRateSampler = fixedRateSampler;
-    this.borrowing = borrowing;
-    this.attributeMatchers = attributeMatchers;
-    this.urlPathMatcher = urlPathMatcher;
-    this.serviceNameMatcher = serviceNameMatcher;
-    this.httpMethodMatcher = httpMethodMatcher;
-    this.hostMatcher = hostMatcher;
-    this.serviceTypeMatcher = serviceTypeMatcher;
-    this.resourceArnMatcher = resourceArnMatcher;
-    this.statistics = statistics;
-    this.nextSnapshotTimeNanos = nextSnapshotTimeNanos;
-  }
-
-  @SuppressWarnings("deprecation") // TODO
   boolean matches(Attributes attributes, Resource resource) {
-    int matchedAttributes = 0;
-    String httpTarget = null;
-    String httpUrl = null;
-    String httpMethod = null;
-    String host = null;
+    return matches(
+        attributes,
+        resource,
+        getUrlPath(attributes),
+        attributes.get(SemanticAttributes.HTTP_METHOD),
+        getHost(attributes));
+  }
 
-    for (Map.Entry<AttributeKey<?>, Object> entry : attributes.asMap().entrySet()) {
-      if (entry.getKey().equals(SemanticAttributes.HTTP_TARGET)) {
-        httpTarget = (String) entry.getValue();
-      } else if (entry.getKey().equals(SemanticAttributes.HTTP_URL)) {
-        httpUrl = (String) entry.getValue();
-      } else if (entry.getKey().equals(SemanticAttributes.HTTP_METHOD)) {
-        httpMethod = (String) entry.getValue();
-      } else if (entry.getKey().equals(SemanticAttributes.NET_HOST_NAME)) {
-        host = (String) entry.getValue();
-      } else if (entry.getKey().equals(SemanticAttributes.HTTP_HOST)) {
-        // TODO (trask) remove support for deprecated http.host attribute
-        host = (String) entry.getValue();
-      }
+  /**
+   * Returns whether this rule matches the span, given the well-known HTTP attributes of the span as
+   * extracted by {@link #getUrlPath(Attributes)} and {@link #getHost(Attributes)}, so that they are
+   * only extracted once for all rules.
+   */
+  boolean matches(
+      Attributes attributes,
+      Resource resource,
+      @Nullable CharSequence urlPath,
+      @Nullable String httpMethod,
+      @Nullable String host) {
+    return urlPathMatcher.matches(urlPath)
+        && httpMethodMatcher.matches(httpMethod)
+        && hostMatcher.matches(host)
+        && (attributeMatchers.isEmpty() || matchesAttributes(attributes))
+        && serviceNameMatcher.matches(resource.getAttribute(ResourceAttributes.SERVICE_NAME))
+        && serviceTypeMatcher.matches(getServiceType(resource))
+        && resourceArnMatcher.matches(getArn(attributes, resource));
+  }
 
+  private boolean matchesAttributes(Attributes attributes) {
+    int matchedAttributes = 0;
+    for (Map.Entry<AttributeKey<?>, Object> entry : attributes.asMap().entrySet()) {
       Matcher matcher = attributeMatchers.get(entry.getKey().getKey());
       if (matcher == null) {
         continue;
@@ -186,32 +186,62 @@ final class SamplingRuleApplier {
       }
     }
     // All attributes in the matched attributes must have been present in the span to be a match.
-    if (matchedAttributes != attributeMatchers.size()) {
+    return matchedAttributes == attributeMatchers.size();
+  }
+
+  /**
+   * Returns {@code false} if this rule cannot match any span of the given resource. This only
+   * evaluates the matchers that do not depend on the span.
+   */
+  boolean mayMatch(Resource resource) {
+    if (!serviceNameMatcher.matches(resource.getAttribute(ResourceAttributes.SERVICE_NAME))
+        || !serviceTypeMatcher.matches(getServiceType(resource))) {
       return false;
     }
-
-    // URL Path may be in either http.target or http.url
-    if (httpTarget == null && httpUrl != null) {
-      int schemeEndIndex = httpUrl.indexOf("://");
-      // Per spec, http.url is always populated with scheme://host/target. If scheme doesn't
-      // match, assume it's bad instrumentation and ignore.
-      if (schemeEndIndex > 0) {
-        int pathIndex = httpUrl.indexOf('/', schemeEndIndex + "://".length());
-        if (pathIndex < 0) {
-          // No path, equivalent to root path.
-          httpTarget = "/";
-        } else {
-          httpTarget = httpUrl.substring(pathIndex);
-        }
-      }
+    if (isArnDeterminedByResource(resource)) {
+      return resourceArnMatcher.matches(getArn(Attributes.empty(), resource));
     }
+    return true;
+  }
 
-    return urlPathMatcher.matches(httpTarget)
-        && serviceNameMatcher.matches(resource.getAttribute(ResourceAttributes.SERVICE_NAME))
-        && httpMethodMatcher.matches(httpMethod)
-        && hostMatcher.matches(host)
-        && serviceTypeMatcher.matches(getServiceType(resource))
-        && resourceArnMatcher.matches(getArn(attributes, resource));
+  /** Returns whether this rule matches span attributes other than the well-known HTTP ones. */
+  boolean hasAttributeMatchers() {
+    return !attributeMatchers.isEmpty();
+  }
+
+  /**
+   * Returns the HTTP method this rule requires, compared ignoring case, or {@code null} if the rule
+   * does not require a literal HTTP method.
+   */
+  @Nullable
+  String getHttpMethodLiteral() {
+    return httpMethodMatcher.getLiteral();
+  }
+
+  /**
+   * Returns the host this rule requires, compared ignoring case, or {@code null} if the rule does
+   * not require a literal host.
+   */
+  @Nullable
+  String getHostLiteral() {
+    return hostMatcher.getLiteral();
+  }
+
+  /**
+   * Returns the URL path this rule requires, compared ignoring case, or {@code null} if the rule
+   * does not require a literal URL path.
+   */
+  @Nullable
+  String getUrlPathLiteral() {
+    return urlPathMatcher.getLiteral();
+  }
+
+  /**
+   * Returns a prefix, compared case-sensitively, that every URL path matched by this rule starts
+   * with. The prefix is empty if the rule does not restrict the beginning of the URL path.
+   */
+  String getUrlPathLiteralPrefix() {
+    return urlPathMatcher.getLiteralPrefix();
   }
 
   SamplingResult shouldSample(
@@ -221,59 +251,66 @@ final class SamplingRuleApplier {
       SpanKind spanKind,
       Attributes attributes,
       List<LinkData> parentLinks) {
-    // Incrementing requests first ensures sample / borrow rate are positive.
-    statistics.requests.increment();
-    boolean reservoirExpired = clock.nanoTime() >= reservoirEndTimeNanos;
+    TargetState targetState = this.targetState;
+    boolean reservoirExpired = clock.nanoTime() >= targetState.reservoirEndTimeNanos;
     SamplingResult result =
         !reservoirExpired
-            ? reservoirSampler.shouldSample(
+            ? targetState.reservoirSampler.shouldSample(
                 parentContext, traceId, name, spanKind, attributes, parentLinks)
             : SamplingResult.create(SamplingDecision.DROP);
     if (result.getDecision() != SamplingDecision.DROP) {
       // We use the result from the reservoir sampler if it worked.
-      if (borrowing) {
-        statistics.borrowed.increment();
-      }
-      statistics.sampled.increment();
+      statistics.record(/* sampled= */ true, targetState.borrowing);
       return result;
     }
     result =
-        fixedRateSampler.shouldSample(
+        targetState.fixedRateSampler.shouldSample(
             parentContext, traceId, name, spanKind, attributes, parentLinks);
-    if (result.getDecision() != SamplingDecision.DROP) {
-      statistics.sampled.increment();
-    }
+    statistics.record(result.getDecision() != SamplingDecision.DROP, /* borrowed= */ false);
     return result;
   }
 
   @Nullable
   SamplingStatisticsDocument snapshot(Date now) {
-    if (clock.nanoTime() < nextSnapshotTimeNanos) {
+    if (clock.nanoTime() < targetState.nextSnapshotTimeNanos) {
       return null;
     }
+    // Each request is recorded with its decision at once, so the counts are consistent.
+    SamplingCounters.Counts counts = statistics.drain();
     return SamplingStatisticsDocument.newBuilder()
         .setClientId(clientId)
         .setRuleName(ruleName)
         .setTimestamp(now)
-        // Resetting requests first ensures that sample / borrow rate are positive after the reset.
-        // Snapshotting is not concurrent so this ensures they are always positive.
-        .setRequestCount(statistics.requests.sumThenReset())
-        .setSampledCount(statistics.sampled.sumThenReset())
-        .setBorrowCount(statistics.borrowed.sumThenReset())
+        .setRequestCount(counts.getRequests())
+        .setSampledCount(counts.getSampled())
+        .setBorrowCount(counts.getBorrowed())
         .build();
   }
 
   long getNextSnapshotTimeNanos() {
-    return nextSnapshotTimeNanos;
+    return targetState.nextSnapshotTimeNanos;
   }
 
-  SamplingRuleApplier withTarget(SamplingTargetDocument target, Date now) {
-    Sampler newFixedRateSampler = createFixedRate(target.getFixedRate());
+  /**
+   * Applies the given target. The rate limiter of the reservoir and the fixed rate sampler are kept
+   * if the target does not change them.
+   */
+  void updateTarget(SamplingTargetDocument target, Date now) {
+    TargetState currentState = targetState;
+    Sampler newFixedRateSampler =
+        target.getFixedRate() == currentState.fixedRate
+            ? currentState.fixedRateSampler
+            : createFixedRate(target.getFixedRate());
     Sampler newReservoirSampler = Sampler.alwaysOff();
+    int newReservoirQuota = NO_RESERVOIR_QUOTA;
     long newReservoirEndTimeNanos = clock.nanoTime();
     // Not well documented but a quota should always come with a TTL
     if (target.getReservoirQuota() != null && target.getReservoirQuotaTtl() != null) {
-      newReservoirSampler = createRateLimited(target.getReservoirQuota());
+      newReservoirQuota = target.getReservoirQuota();
+      newReservoirSampler =
+          !currentState.borrowing && newReservoirQuota == currentState.reservoirQuota
+              ? currentState.reservoirSampler
+              : createRateLimited(newReservoirQuota);
       newReservoirEndTimeNanos =
           clock.nanoTime()
               + Duration.between(now.toInstant(), target.getReservoirQuotaTtl().toInstant())
@@ -285,49 +322,91 @@ final class SamplingRuleApplier {
             : AwsXrayRemoteSampler.DEFAULT_TARGET_INTERVAL_NANOS;
     long newNextSnapshotTimeNanos = clock.nanoTime() + intervalNanos;
 
-    return new SamplingRuleApplier(
-        clientId,
-        ruleName,
-        clock,
-        newReservoirSampler,
-        newReservoirEndTimeNanos,
-        newFixedRateSampler,
-        /* borrowing= */ false,
-        attributeMatchers,
-        urlPathMatcher,
-        serviceNameMatcher,
-        httpMethodMatcher,
-        hostMatcher,
-        serviceTypeMatcher,
-        resourceArnMatcher,
-        statistics,
-        newNextSnapshotTimeNanos);
-  }
-
-  SamplingRuleApplier withNextSnapshotTimeNanos(long newNextSnapshotTimeNanos) {
-    return new SamplingRuleApplier(
-        clientId,
-        ruleName,
-        clock,
-        reservoirSampler,
-        reservoirEndTimeNanos,
-        fixedRateSampler,
-        borrowing,
-        attributeMatchers,
-        urlPathMatcher,
-        serviceNameMatcher,
-        httpMethodMatcher,
-        hostMatcher,
-        serviceTypeMatcher,
-        resourceArnMatcher,
-        statistics,
-        newNextSnapshotTimeNanos);
+    targetState =
+        new TargetState(
+            newReservoirSampler,
+            newReservoirQuota,
+            newReservoirEndTimeNanos,
+            newFixedRateSampler,
+            target.getFixedRate(),
+            /* borrowing= */ false,
+            newNextSnapshotTimeNanos);
+  }
+
+  void updateNextSnapshotTimeNanos(long newNextSnapshotTimeNanos) {
+    TargetState currentState = targetState;
+    targetState =
+        new TargetState(
+            currentState.reservoirSampler,
+            currentState.reservoirQuota,
+            currentState.reservoirEndTimeNanos,
+            currentState.fixedRateSampler,
+            currentState.fixedRate,
+            currentState.borrowing,
+            newNextSnapshotTimeNanos);
   }
 
   String getRuleName() {
     return ruleName;
   }
 
+  GetSamplingRulesResponse.SamplingRule getRule() {
+    return rule;
+  }
+
+  /**
+   * Returns the URL path of a span, which may be given by either http.target or http.url, or {@code
+   * null} if neither is available. A path given by http.url is returned as a {@link StringSlice} of
+   * it.
+   */
+  @Nullable
+  @SuppressWarnings("deprecation") // uses deprecated semantic attributes
+  static CharSequence getUrlPath(Attributes attributes) {
+    String httpTarget = attributes.get(SemanticAttributes.HTTP_TARGET);
+    if (httpTarget != null) {
+      return httpTarget;
+    }
+    String httpUrl = attributes.get(SemanticAttributes.HTTP_URL);
+    if (httpUrl == null) {
+      return null;
+    }
+    int schemeEndIndex = httpUrl.indexOf("://");
+    // Per spec, http.url is always populated with scheme://host/target. If scheme doesn't
+    // match, assume it's bad instrumentation and ignore.
+    if (schemeEndIndex <= 0) {
+      return null;
+    }
+    int pathIndex = httpUrl.indexOf('/', schemeEndIndex + "://".length());
+    if (pathIndex < 0) {
+      // No path, equivalent to root path.
+      return "/";
+    }
+    return new StringSlice(httpUrl, pathIndex, httpUrl.length());
+  }
+
+  /**
+   * Returns the host of a span, or {@code null} if it is not available. The net.host.name attribute
+   * takes precedence over the deprecated http.host attribute, which is the order in which the SDK
+   * iterates them.
+   */
+  @Nullable
+  @SuppressWarnings("deprecation") // uses deprecated semantic attributes
+  static String getHost(Attributes attributes) {
+    String host = attributes.get(SemanticAttributes.NET_HOST_NAME);
+    if (host != null) {
+      return host;
+    }
+    // TODO (trask) remove support for deprecated http.host attribute
+    return attributes.get(SemanticAttributes.HTTP_HOST);
+  }
+
+  private static boolean isArnDeterminedByResource(Resource resource) {
+    return resource.getAttributes().get(ResourceAttributes.AWS_ECS_CONTAINER_ARN) != null
+        || !ResourceAttributes.CloudPlatformValues.AWS_LAMBDA.equals(
+            resource.getAttributes().get(ResourceAttributes.CLOUD_PLATFORM))
+        || resource.getAttributes().get(ResourceAttributes.FAAS_ID) != null;
+  }
+
   @Nullable
   private static String getArn(Attributes attributes, Resource resource) {
     String arn = resource.getAttributes().get(ResourceAttributes.AWS_ECS_CONTAINER_ARN);
@@ -367,7 +446,7 @@ final class SamplingRuleApplier {
     for (int i = 0; i < globPattern.length(); i++) {
       char c = globPattern.charAt(i);
       if (c == '*' || c == '?') {
-        return new PatternMatcher(toRegexPattern(globPattern));
+        return new PatternMatcher(toRegexPattern(globPattern), globPattern.substring(0, i));
       }
     }
 
@@ -403,14 +482,25 @@ final class SamplingRuleApplier {
   }
 
   private interface Matcher {
-    boolean matches(@Nullable String s);
+    boolean matches(@Nullable CharSequence s);
+
+    /** Returns the string matched ignoring case, if this matcher matches a single string only. */
+    @Nullable
+    default String getLiteral() {
+      return null;
+    }
+
+    /** Returns a case-sensitive prefix of all matched strings. */
+    default String getLiteralPrefix() {
+      return "";
+    }
   }
 
   private enum TrueMatcher implements Matcher {
     INSTANCE;
 
     @Override
-    public boolean matches(@Nullable String s) {
+    public boolean matches(@Nullable CharSequence s) {
       return true;
     }
 
@@ -429,11 +519,19 @@ final class SamplingRuleApplier {
     }
 
     @Override
-    public boolean matches(@Nullable String s) {
-      if (s == null) {
-        return false;
+    public boolean matches(@Nullable CharSequence s) {
+      if (s instanceof String) {
+        return target.equalsIgnoreCase((String) s);
       }
-      return target.equalsIgnoreCase(s);
+      if (s instanceof StringSlice) {
+        return ((StringSlice) s).equalsIgnoreCase(target);
+      }
+      return s != null && target.equalsIgnoreCase(s.toString());
+    }
+
+    @Override
+    public String getLiteral() {
+      return target;
     }
 
     @Override
@@ -444,19 +542,26 @@ final class SamplingRuleApplier {
 
   private static class PatternMatcher implements Matcher {
     private final Pattern pattern;
+    private final String literalPrefix;
 
-    PatternMatcher(Pattern pattern) {
+    PatternMatcher(Pattern pattern, String literalPrefix) {
       this.pattern = pattern;
+      this.literalPrefix = literalPrefix;
     }
 
     @Override
-    public boolean matches(@Nullable String s) {
+    public boolean matches(@Nullable CharSequence s) {
       if (s == null) {
         return false;
       }
       return pattern.matcher(s).matches();
     }
 
+    @Override
+    public String getLiteralPrefix() {
+      return literalPrefix;
+    }
+
     @Override
     public String toString() {
       return pattern.toString();
@@ -464,20 +569,39 @@ final class SamplingRuleApplier {
   }
 
   private Sampler createRateLimited(int numPerSecond) {
-    return Sampler.parentBased(new RateLimitingSampler(numPerSecond, clock));
+    return Sampler.parentBased(new RateLimitingSampler(numPerSecond, clock, shardedRateLimiter));
   }
 
   private static Sampler createFixedRate(double rate) {
     return Sampler.parentBased(Sampler.traceIdRatioBased(rate));
   }
 
-  // We keep track of sampling requests and decisions to report to X-Ray to allow it to allocate
-  // quota from the central reservoir. We do not lock around updates because sampling is called on
-  // the hot, highly-contended path and locking would have significant overhead. The actual possible
-  // error should not be off to significantly affect quotas in practice.
-  private static class Statistics {
-    final LongAdder requests = new LongAdder();
-    final LongAdder sampled = new LongAdder();
-    final LongAdder borrowed = new LongAdder();
+  // The state derived from the latest sampling target, which changes far less often than spans are
+  // sampled.
+  private static final class TargetState {
+    final Sampler reservoirSampler;
+    final int reservoirQuota;
+    final long reservoirEndTimeNanos;
+    final Sampler fixedRateSampler;
+    final double fixedRate;
+    final boolean borrowing;
+    final long nextSnapshotTimeNanos;
+
+    TargetState(
+        Sampler reservoirSampler,
+        int reservoirQuota,
+        long reservoirEndTimeNanos,
+        Sampler fixedRateSampler,
+        double fixedRate,
+        boolean borrowing,
+        long nextSnapshotTimeNanos) {
+      this.reservoirSampler = reservoirSampler;
+      this.reservoirQuota = reservoirQuota;
+      this.reservoirEndTimeNanos = reservoirEndTimeNanos;
+      this.fixedRateSampler = fixedRateSampler;
+      this.fixedRate = fixedRate;
+      this.borrowing = borrowing;
+      this.nextSnapshotTimeNanos = nextSnapshotTimeNanos;
+    }
   }
 }
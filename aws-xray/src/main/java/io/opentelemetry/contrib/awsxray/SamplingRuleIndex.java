@@ -0,0 +1,331 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.awsxray;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.semconv.trace.attributes.SemanticAttributes;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+
+/**
+ * An index over the {@link SamplingRuleApplier}s of a {@link XrayRulesSampler}, which narrows down
+ * the rules that can match a span before the rules are evaluated.
+ *
+ * <p>Rules that cannot match any span of the resource, for example because they require another
+ * service name or service type, are excluded when the index is built. Each remaining rule is
+ * indexed by its most selective literal, which is tried in the following order: the URL path, the
+ * literal prefix of a URL path glob, the host, and the HTTP method. Rules without any of them are
+ * candidates for every span. The candidates are represented as bit sets over the rule positions,
+ * and are evaluated in ascending order, which is the priority order. As every rule that can match a
+ * span is a candidate, the first matching candidate is always the first matching rule.
+ */
+final class SamplingRuleIndex {
+
+  private final Resource resource;
+  private final int numberOfWords;
+  private final long[] unindexedRules;
+  private final CaseInsensitiveIndex urlPathIndex;
+  private final PrefixTrie urlPathPrefixIndex;
+  private final CaseInsensitiveIndex hostIndex;
+  private final CaseInsensitiveIndex httpMethodIndex;
+
+  SamplingRuleIndex(SamplingRuleApplier[] ruleAppliers, Resource resource) {
+    this.resource = resource;
+    this.numberOfWords = (ruleAppliers.length + 63) >>> 6;
+    this.unindexedRules = new long[numberOfWords];
+    Map<String, long[]> urlPaths = new LinkedHashMap<>();
+    PrefixTrie.Builder urlPathPrefixes = new PrefixTrie.Builder(numberOfWords);
+    Map<String, long[]> hosts = new LinkedHashMap<>();
+    Map<String, long[]> httpMethods = new LinkedHashMap<>();
+
+    for (int i = 0; i < ruleAppliers.length; ++i) {
+      SamplingRuleApplier applier = ruleAppliers[i];
+      if (!applier.mayMatch(resource)) {
+        continue;
+      }
+      String urlPath = applier.getUrlPathLiteral();
+      String host = applier.getHostLiteral();
+      String httpMethod = applier.getHttpMethodLiteral();
+      if (urlPath != null && CaseInsensitiveIndex.isIndexable(urlPath)) {
+        addRule(urlPaths, urlPath, i);
+      } else if (!applier.getUrlPathLiteralPrefix().isEmpty()) {
+        urlPathPrefixes.add(applier.getUrlPathLiteralPrefix(), i);
+      } else if (host != null && CaseInsensitiveIndex.isIndexable(host)) {
+        addRule(hosts, host, i);
+      } else if (httpMethod != null && CaseInsensitiveIndex.isIndexable(httpMethod)) {
+        addRule(httpMethods, httpMethod, i);
+      } else {
+        setBit(unindexedRules, i);
+      }
+    }
+
+    this.urlPathIndex = new CaseInsensitiveIndex(urlPaths);
+    this.urlPathPrefixIndex = urlPathPrefixes.build();
+    this.hostIndex = new CaseInsensitiveIndex(hosts);
+    this.httpMethodIndex = new CaseInsensitiveIndex(httpMethods);
+  }
+
+  private void addRule(Map<String, long[]> literals, String literal, int ruleIndex) {
+    setBit(
+        literals.computeIfAbsent(
+            CaseInsensitiveIndex.fold(literal), unused -> new long[numberOfWords]),
+        ruleIndex);
+  }
+
+  private static void setBit(long[] bitSet, int index) {
+    bitSet[index >>> 6] |= 1L << index;
+  }
+
+  private static void or(long[] target, @Nullable long[] bitSet) {
+    if (bitSet != null) {
+      for (int i = 0; i < target.length; ++i) {
+        target[i] |= bitSet[i];
+      }
+    }
+  }
+
+  /**
+   * Returns the first of the given rules that matches the span, or {@code null} if there is none.
+   *
+   * @param ruleAppliers the rules this index was built for, possibly with updated targets
+   * @param attributes the span attributes
+   */
+  @Nullable
+  SamplingRuleApplier findFirstMatch(SamplingRuleApplier[] ruleAppliers, Attributes attributes) {
+    int index = findFirstMatchIndex(ruleAppliers, attributes);
+    return index >= 0 ? ruleAppliers[index] : null;
+  }
+
+  /**
+   * Returns the position of the first of the given rules that matches the span, or -1 if there is
+   * none.
+   *
+   * @param ruleAppliers the rules this index was built for, possibly with updated targets
+   * @param attributes the span attributes
+   */
+  int findFirstMatchIndex(SamplingRuleApplier[] ruleAppliers, Attributes attributes) {
+    return findFirstMatchIndex(
+        ruleAppliers,
+        attributes,
+        SamplingRuleApplier.getUrlPath(attributes),
+        attributes.get(SemanticAttributes.HTTP_METHOD),
+        SamplingRuleApplier.getHost(attributes));
+  }
+
+  /**
+   * Returns the position of the first of the given rules that matches the span, or -1 if there is
+   * none, given the well-known HTTP attributes of the span as extracted by {@link
+   * SamplingRuleApplier#getUrlPath(Attributes)} and {@link
+   * SamplingRuleApplier#getHost(Attributes)}.
+   */
+  int findFirstMatchIndex(
+      SamplingRuleApplier[] ruleAppliers,
+      Attributes attributes,
+      @Nullable CharSequence urlPath,
+      @Nullable String httpMethod,
+      @Nullable String host) {
+    long[] candidates = unindexedRules.clone();
+
+    if (urlPath != null) {
+      or(candidates, urlPathIndex.get(urlPath));
+      urlPathPrefixIndex.collect(urlPath, candidates);
+    }
+    if (host != null) {
+      or(candidates, hostIndex.get(host));
+    }
+    if (httpMethod != null) {
+      or(candidates, httpMethodIndex.get(httpMethod));
+    }
+
+    for (int word = 0; word < numberOfWords; ++word) {
+      long bits = candidates[word];
+      while (bits != 0) {
+        int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+        if (ruleAppliers[index].matches(attributes, resource, urlPath, httpMethod, host)) {
+          return index;
+        }
+        bits &= bits - 1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * An immutable open-addressing hash table whose keys are compared like {@link
+   * String#equalsIgnoreCase(String)}, which allows lookups without allocating a normalized key.
+   */
+  private static final class CaseInsensitiveIndex {
+
+    private final String[] keys;
+    private final long[][] values;
+    private final int mask;
+
+    /**
+     * Constructor.
+     *
+     * @param entries the entries, with keys normalized by {@link #fold(String)}
+     */
+    CaseInsensitiveIndex(Map<String, long[]> entries) {
+      int capacity = Integer.highestOneBit(Math.max(1, entries.size() * 2 - 1)) << 1;
+      this.keys = new String[capacity];
+      this.values = new long[capacity][];
+      this.mask = capacity - 1;
+      for (Map.Entry<String, long[]> entry : entries.entrySet()) {
+        int i = hash(entry.getKey()) & mask;
+        while (keys[i] != null) {
+          i = (i + 1) & mask;
+        }
+        keys[i] = entry.getKey();
+        values[i] = entry.getValue();
+      }
+    }
+
+    // case-insensitive comparison of characters as performed by String.equalsIgnoreCase
+    private static char fold(char c) {
+      if (c < 0x80) {
+        return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+      }
+      return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    static String fold(String s) {
+      char[] chars = new char[s.length()];
+      for (int i = 0; i < chars.length; ++i) {
+        chars[i] = fold(s.charAt(i));
+      }
+      return new String(chars);
+    }
+
+    /**
+     * Returns whether the given literal can be indexed. Literals containing surrogates are
+     * excluded, as {@link String#equalsIgnoreCase(String)} compares them by code point on newer
+     * JDKs.
+     */
+    static boolean isIndexable(String literal) {
+      for (int i = 0; i < literal.length(); ++i) {
+        if (Character.isSurrogate(literal.charAt(i))) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private static int hash(CharSequence s) {
+      int h = 0;
+      for (int i = 0; i < s.length(); ++i) {
+        h = 31 * h + fold(s.charAt(i));
+      }
+      return h ^ (h >>> 16);
+    }
+
+    private static boolean equalsFolded(String foldedKey, CharSequence s) {
+      if (foldedKey.length() != s.length()) {
+        return false;
+      }
+      for (int i = 0; i < s.length(); ++i) {
+        if (foldedKey.charAt(i) != fold(s.charAt(i))) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Nullable
+    long[] get(CharSequence s) {
+      for (int i = hash(s) & mask; keys[i] != null; i = (i + 1) & mask) {
+        if (equalsFolded(keys[i], s)) {
+          return values[i];
+        }
+      }
+      return null;
+    }
+  }
+
+  /** An immutable trie of case-sensitive prefixes. */
+  private static final class PrefixTrie {
+
+    private final char[] labels;
+    private final PrefixTrie[] children;
+    @Nullable private final long[] rules;
+
+    private PrefixTrie(char[] labels, PrefixTrie[] children, @Nullable long[] rules) {
+      this.labels = labels;
+      this.children = children;
+      this.rules = rules;
+    }
+
+    /** Adds the rules of all prefixes of the given string to the given bit set. */
+    void collect(CharSequence s, long[] target) {
+      PrefixTrie node = this;
+      int i = 0;
+      while (true) {
+        or(target, node.rules);
+        if (i == s.length()) {
+          return;
+        }
+        int childIndex = binarySearch(node.labels, s.charAt(i++));
+        if (childIndex < 0) {
+          return;
+        }
+        node = node.children[childIndex];
+      }
+    }
+
+    private static int binarySearch(char[] labels, char c) {
+      int low = 0;
+      int high = labels.length - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        if (labels[mid] < c) {
+          low = mid + 1;
+        } else if (labels[mid] > c) {
+          high = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -1;
+    }
+
+    static final class Builder {
+
+      private final int numberOfWords;
+      private final TreeMap<Character, Builder> children = new TreeMap<>();
+      @Nullable private long[] rules;
+
+      Builder(int numberOfWords) {
+        this.numberOfWords = numberOfWords;
+      }
+
+      void add(String prefix, int ruleIndex) {
+        Builder node = this;
+        for (int i = 0; i < prefix.length(); ++i) {
+          node = node.children.computeIfAbsent(prefix.charAt(i), c -> new Builder(numberOfWords));
+        }
+        if (node.rules == null) {
+          node.rules = new long[numberOfWords];
+        }
+        setBit(node.rules, ruleIndex);
+      }
+
+      PrefixTrie build() {
+        char[] labels = new char[children.size()];
+        List<PrefixTrie> builtChildren = new ArrayList<>(children.size());
+        int i = 0;
+        for (Map.Entry<Character, Builder> entry : children.entrySet()) {
+          labels[i++] = entry.getKey();
+          builtChildren.add(entry.getValue().build());
+        }
+        return new PrefixTrie(labels, builtChildren.toArray(new PrefixTrie[0]), rules);
+      }
+    }
+  }
+}
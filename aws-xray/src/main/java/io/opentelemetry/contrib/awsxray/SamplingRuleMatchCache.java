@@ -0,0 +1,146 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.awsxray;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.semconv.resource.attributes.ResourceAttributes;
+import io.opentelemetry.semconv.trace.attributes.SemanticAttributes;
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/**
+ * A bounded cache of the first matching rule of a {@link XrayRulesSampler} by the shape of a span,
+ * so that the rules are only evaluated once for spans of the same shape.
+ *
+ * <p>Besides the resource, which is the same for all spans, rules only match the URL path, the HTTP
+ * method, the host, the function ARN, and custom attributes of a span. The shape of a span consists
+ * of the former, so the cache can only be used for rules without custom attributes. The cache is
+ * bound to the rules it was created for, and is replaced together with them.
+ *
+ * <p>The cache is a direct-mapped table, so a shape replaces any other shape with the same slot.
+ * Entries are immutable, so they can be published to other threads without synchronization.
+ */
+final class SamplingRuleMatchCache {
+
+  private static final int MAX_SIZE = 1 << 16;
+
+  private final SamplingRuleIndex ruleIndex;
+  private final Entry[] entries;
+  private final int mask;
+
+  /**
+   * Returns a cache with at least the given number of entries for the given rules, or {@code null}
+   * if the size is not positive or the rules cannot be cached because they match custom attributes.
+   */
+  @Nullable
+  static SamplingRuleMatchCache create(
+      SamplingRuleApplier[] ruleAppliers,
+      SamplingRuleIndex ruleIndex,
+      Resource resource,
+      int size) {
+    if (size <= 0) {
+      return null;
+    }
+    for (SamplingRuleApplier applier : ruleAppliers) {
+      if (applier.hasAttributeMatchers() && applier.mayMatch(resource)) {
+        return null;
+      }
+    }
+    return new SamplingRuleMatchCache(ruleIndex, size);
+  }
+
+  private SamplingRuleMatchCache(SamplingRuleIndex ruleIndex, int size) {
+    this.ruleIndex = ruleIndex;
+    int capacity = Integer.highestOneBit(Math.min(MAX_SIZE, size) * 2 - 1);
+    this.entries = new Entry[capacity];
+    this.mask = capacity - 1;
+  }
+
+  /**
+   * Returns the first of the given rules that matches the span, or {@code null} if there is none.
+   *
+   * @param ruleAppliers the rules this cache was created for, possibly with updated targets
+   * @param attributes the span attributes
+   */
+  @Nullable
+  SamplingRuleApplier findFirstMatch(SamplingRuleApplier[] ruleAppliers, Attributes attributes) {
+    CharSequence urlPath = SamplingRuleApplier.getUrlPath(attributes);
+    String httpMethod = attributes.get(SemanticAttributes.HTTP_METHOD);
+    String host = SamplingRuleApplier.getHost(attributes);
+    String faasId = attributes.get(ResourceAttributes.FAAS_ID);
+
+    int hash = hash(hash(hash(hash(0, urlPath), httpMethod), host), faasId);
+    int slot = (hash ^ (hash >>> 16)) & mask;
+    Entry entry = entries[slot];
+    int index;
+    if (entry != null && entry.isShapeOf(hash, urlPath, httpMethod, host, faasId)) {
+      index = entry.ruleIndex;
+    } else {
+      index = ruleIndex.findFirstMatchIndex(ruleAppliers, attributes, urlPath, httpMethod, host);
+      entries[slot] =
+          new Entry(
+              hash, urlPath != null ? urlPath.toString() : null, httpMethod, host, faasId, index);
+    }
+    return index >= 0 ? ruleAppliers[index] : null;
+  }
+
+  // combines hash codes like String.hashCode, whether the value is a String or a StringSlice
+  private static int hash(int hash, @Nullable CharSequence value) {
+    if (value == null) {
+      return 31 * hash;
+    }
+    if (value instanceof String) {
+      return 31 * hash + value.hashCode();
+    }
+    int h = 0;
+    for (int i = 0; i < value.length(); ++i) {
+      h = 31 * h + value.charAt(i);
+    }
+    return 31 * hash + h;
+  }
+
+  private static final class Entry {
+
+    private final int hash;
+    @Nullable private final String urlPath;
+    @Nullable private final String httpMethod;
+    @Nullable private final String host;
+    @Nullable private final String faasId;
+    // position of the first matching rule, or -1 if there is none
+    private final int ruleIndex;
+
+    Entry(
+        int hash,
+        @Nullable String urlPath,
+        @Nullable String httpMethod,
+        @Nullable String host,
+        @Nullable String faasId,
+        int ruleIndex) {
+      this.hash = hash;
+      this.urlPath = urlPath;
+      this.httpMethod = httpMethod;
+      this.host = host;
+      this.faasId = faasId;
+      this.ruleIndex = ruleIndex;
+    }
+
+    boolean isShapeOf(
+        int hash,
+        @Nullable CharSequence urlPath,
+        @Nullable String httpMethod,
+        @Nullable String host,
+        @Nullable String faasId) {
+      return this.hash == hash
+          && (this.urlPath != null
+              ? urlPath != null && this.urlPath.contentEquals(urlPath)
+              : urlPath == null)
+          && Objects.equals(this.httpMethod, httpMethod)
+          && Objects.equals(this.host, host)
+          && Objects.equals(this.faasId, faasId);
+    }
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.awsxray;
+
+import static io.opentelemetry.contrib.awsxray.Striping.PADDING_SHIFT;
+
+import io.opentelemetry.sdk.common.Clock;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@link RateLimiter} for rules sampled by many threads at once. Like {@link RateLimiter}, it
+ * keeps a balance of credits in a single {@link AtomicLong}, but threads do not spend from it
+ * directly. Instead, each thread is assigned one of several shards, and a shard takes a grant of
+ * credits from the shared balance that the threads of the shard spend from until it is used up. As
+ * a result, threads contend on the shared balance only once per grant.
+ *
+ * <p>Grants are sized so that all shards together hold at most {@value #MAX_GRANT_MILLIS}ms of
+ * credits, and at most half of the maximum balance. Credits of grants older than that are returned
+ * to the shared balance, and a shard that cannot get a grant reclaims the credits of all other
+ * shards before it rejects a request. Hence, credits are never lost in shards, and a burst can only
+ * exceed the maximum balance by the credits of recent grants.
+ */
+final class ShardedRateLimiter implements CreditLimiter {
+
+  private static final long MAX_GRANT_MILLIS = 100;
+
+  // Each shard holds the balance of its grant followed by the time of the grant.
+  private static final int GRANT_TIME_OFFSET = 1;
+
+  private final Clock clock;
+  private final double creditsPerNanosecond;
+  private final long maxBalance; // max balance in nano ticks
+  private final AtomicLong currentBalance; // last op nano time less remaining balance
+  private final AtomicLongArray shards;
+  private final int shardMask;
+  private final long grantNanos;
+  private final long grantTimeoutNanos;
+
+  ShardedRateLimiter(double creditsPerSecond, double maxBalance, Clock clock) {
+    this(creditsPerSecond, maxBalance, clock, Striping.DEFAULT_NUMBER_OF_STRIPES);
+  }
+
+  // Visible for testing
+  ShardedRateLimiter(double creditsPerSecond, double maxBalance, Clock clock, int numberOfShards) {
+    if (Integer.bitCount(numberOfShards) != 1) {
+      throw new IllegalArgumentException("number of shards must be a power of two");
+    }
+    this.clock = clock;
+    this.creditsPerNanosecond = creditsPerSecond / 1.0e9;
+    this.maxBalance = (long) (maxBalance / creditsPerNanosecond);
+    this.currentBalance = new AtomicLong(clock.nanoTime() - this.maxBalance);
+    this.shards = new AtomicLongArray(numberOfShards << PADDING_SHIFT);
+    this.shardMask = numberOfShards - 1;
+    this.grantTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(MAX_GRANT_MILLIS);
+    this.grantNanos = Math.min(grantTimeoutNanos, this.maxBalance / 2) / numberOfShards;
+  }
+
+  @Override
+  public boolean trySpend(double itemCost) {
+    long cost = (long) (itemCost / creditsPerNanosecond);
+    int probe = Striping.getProbe();
+    int shard = (probe & shardMask) << PADDING_SHIFT;
+    long currentNanos = clock.nanoTime();
+    if (currentNanos - shards.get(shard + GRANT_TIME_OFFSET) > grantTimeoutNanos) {
+      refund(shards.getAndSet(shard, 0));
+    } else {
+      while (true) {
+        long shardBalance = shards.get(shard);
+        if (shardBalance < cost) {
+          break;
+        }
+        if (shards.compareAndSet(shard, shardBalance, shardBalance - cost)) {
+          return true;
+        }
+        // Another thread spends from this shard, use another one for the next request.
+        probe = Striping.advanceProbe(probe);
+      }
+      // The rest of the grant is too small, return it so that it is not lost.
+      refund(shards.getAndSet(shard, 0));
+    }
+
+    long granted = grant(cost, cost + grantNanos);
+    if (granted == 0) {
+      granted = reclaim();
+      if (granted < cost) {
+        refund(granted);
+        return false;
+      }
+    }
+    shards.set(shard + GRANT_TIME_OFFSET, currentNanos);
+    if (granted > cost) {
+      shards.addAndGet(shard, granted - cost);
+    }
+    return true;
+  }
+
+  /**
+   * Takes at least {@code minNanos} and at most {@code maxNanos} from the shared balance, returns
+   * the amount taken, or 0 if the balance is less than {@code minNanos}.
+   */
+  private long grant(long minNanos, long maxNanos) {
+    long currentNanos;
+    long currentBalanceNanos;
+    long granted;
+    long availableBalanceAfterWithdrawal;
+    do {
+      currentBalanceNanos = currentBalance.get();
+      currentNanos = clock.nanoTime();
+      long currentAvailableBalance = currentNanos - currentBalanceNanos;
+      if (currentAvailableBalance > maxBalance) {
+        currentAvailableBalance = maxBalance;
+      }
+      if (currentAvailableBalance < minNanos) {
+        return 0;
+      }
+      granted = Math.min(currentAvailableBalance, maxNanos);
+      availableBalanceAfterWithdrawal = currentAvailableBalance - granted;
+    } while (!currentBalance.compareAndSet(
+        currentBalanceNanos, currentNanos - availableBalanceAfterWithdrawal));
+    return granted;
+  }
+
+  /** Returns unspent credits to the shared balance, which is still capped at the maximum. */
+  private void refund(long nanos) {
+    if (nanos > 0) {
+      currentBalance.addAndGet(-nanos);
+    }
+  }
+
+  /** Takes the credits of all shards. */
+  private long reclaim() {
+    long reclaimed = 0;
+    for (int i = 0; i <= shardMask; i++) {
+      reclaimed += shards.getAndSet(i << PADDING_SHIFT, 0);
+    }
+    return reclaimed;
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.awsxray;
+
+/**
+ * A view of a range of a {@link String}, which allows matching part of a span attribute without
+ * copying it into a new string.
+ */
+final class StringSlice implements CharSequence {
+
+  private final String source;
+  private final int start;
+  private final int end;
+
+  StringSlice(String source, int start, int end) {
+    if (start < 0 || end > source.length() || start > end) {
+      throw new IndexOutOfBoundsException(
+          "start " + start + ", end " + end + ", length " + source.length());
+    }
+    this.source = source;
+    this.start = start;
+    this.end = end;
+  }
+
+  @Override
+  public int length() {
+    return end - start;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index < 0 || index >= length()) {
+      throw new IndexOutOfBoundsException("index " + index + ", length " + length());
+    }
+    return source.charAt(start + index);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    if (start < 0 || end > length() || start > end) {
+      throw new IndexOutOfBoundsException(
+          "start " + start + ", end " + end + ", length " + length());
+    }
+    return new StringSlice(source, this.start + start, this.start + end);
+  }
+
+  /** Compares this slice to the given string like {@link String#equalsIgnoreCase(String)}. */
+  boolean equalsIgnoreCase(String other) {
+    return other.length() == length() && source.regionMatches(true, start, other, 0, length());
+  }
+
+  @Override
+  public String toString() {
+    return source.substring(start, end);
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.awsxray;
+
+/**
+ * Sizing, padding and selection of the stripes of contended state, shared by {@link
+ * SamplingCounters} and {@link ShardedRateLimiter}.
+ *
+ * <p>Like in {@link java.util.concurrent.atomic.LongAdder}, every thread has a probe that selects
+ * its stripe. A thread whose update of its stripe fails due to contention advances its probe, so
+ * that two threads that collide on a stripe move apart instead of retrying on the same stripe.
+ */
+final class Striping {
+
+  // Stripes in an AtomicLongArray are spaced by a cache line to avoid false sharing.
+  static final int PADDING_SHIFT = 3;
+
+  private static final int MAX_NUMBER_OF_STRIPES = 64;
+
+  static final int DEFAULT_NUMBER_OF_STRIPES =
+      Math.min(
+          MAX_NUMBER_OF_STRIPES,
+          Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)));
+
+  private static final ThreadLocal<int[]> PROBE =
+      ThreadLocal.withInitial(() -> new int[] {initialProbe()});
+
+  private static int initialProbe() {
+    // Consecutive thread IDs are spread over the stripes.
+    long id = Thread.currentThread().getId();
+    int probe = (int) ((id * 0x9E3779B97F4A7C15L) >>> 32);
+    return probe != 0 ? probe : 1;
+  }
+
+  /** Returns the probe of the current thread, which is never zero. */
+  static int getProbe() {
+    return PROBE.get()[0];
+  }
+
+  /** Moves the current thread to another stripe after contention and returns its new probe. */
+  static int advanceProbe(int probe) {
+    // xorshift, as in java.util.concurrent.ThreadLocalRandom
+    probe ^= probe << 13;
+    probe ^= probe >>> 17;
+    probe ^= probe << 5;
+    PROBE.get()[0] = probe;
+    return probe;
+  }
+
+  private Striping() {}
+}
@@ -17,6 +17,7 @@ import io.opentelemetry.sdk.trace.samplers.SamplingResult;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -24,6 +25,7 @@ import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 
 final class XrayRulesSampler implements Sampler {
 
@@ -33,7 +35,11 @@ final class XrayRulesSampler implements Sampler {
   private final Resource resource;
   private final Clock clock;
   private final Sampler fallbackSampler;
+  private final boolean shardedRateLimiter;
+  private final int matchCacheSize;
   private final SamplingRuleApplier[] ruleAppliers;
+  private final SamplingRuleIndex ruleIndex;
+  @Nullable private final SamplingRuleMatchCache matchCache;
 
   XrayRulesSampler(
       String clientId,
@@ -46,10 +52,37 @@ final class XrayRulesSampler implements Sampler {
         resource,
         clock,
         fallbackSampler,
+        /* shardedRateLimiter= */ false,
+        /* matchCacheSize= */ 0,
+        rules);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param shardedRateLimiter whether the reservoirs of the rules use a {@link ShardedRateLimiter}
+   * @param matchCacheSize the number of span shapes whose first matching rule is cached, or 0 to
+   *     evaluate the rules for every span
+   */
+  XrayRulesSampler(
+      String clientId,
+      Resource resource,
+      Clock clock,
+      Sampler fallbackSampler,
+      boolean shardedRateLimiter,
+      int matchCacheSize,
+      List<GetSamplingRulesResponse.SamplingRule> rules) {
+    this(
+        clientId,
+        resource,
+        clock,
+        fallbackSampler,
+        shardedRateLimiter,
+        matchCacheSize,
         rules.stream()
             // Lower priority value takes precedence so normal ascending sort.
             .sorted(Comparator.comparingInt(GetSamplingRulesResponse.SamplingRule::getPriority))
-            .map(rule -> new SamplingRuleApplier(clientId, rule, clock))
+            .map(rule -> new SamplingRuleApplier(clientId, rule, clock, shardedRateLimiter))
             .toArray(SamplingRuleApplier[]::new));
   }
 
@@ -58,12 +91,20 @@ final class XrayRulesSampler implements Sampler {
       Resource resource,
       Clock clock,
       Sampler fallbackSampler,
+      boolean shardedRateLimiter,
+      int matchCacheSize,
       SamplingRuleApplier[] ruleAppliers) {
     this.clientId = clientId;
     this.resource = resource;
     this.clock = clock;
     this.fallbackSampler = fallbackSampler;
+    this.shardedRateLimiter = shardedRateLimiter;
+    this.matchCacheSize = matchCacheSize;
     this.ruleAppliers = ruleAppliers;
+    this.ruleIndex = new SamplingRuleIndex(ruleAppliers, resource);
+    // The cache is bound to the rules, so it is replaced together with them.
+    this.matchCache =
+        SamplingRuleMatchCache.create(ruleAppliers, ruleIndex, resource, matchCacheSize);
   }
 
   @Override
@@ -74,11 +115,13 @@ final class XrayRulesSampler implements Sampler {
       SpanKind spanKind,
       Attributes attributes,
       List<LinkData> parentLinks) {
-    for (SamplingRuleApplier applier : ruleAppliers) {
-      if (applier.matches(attributes, resource)) {
-        return applier.shouldSample(
-            parentContext, traceId, name, spanKind, attributes, parentLinks);
-      }
+    SamplingRuleMatchCache matchCache = this.matchCache;
+    SamplingRuleApplier applier =
+        matchCache != null
+            ? matchCache.findFirstMatch(ruleAppliers, attributes)
+            : ruleIndex.findFirstMatch(ruleAppliers, attributes);
+    if (applier != null) {
+      return applier.shouldSample(parentContext, traceId, name, spanKind, attributes, parentLinks);
     }
 
     // In practice, X-Ray always returns a Default rule that matches all requests so it is a bug in
@@ -111,30 +154,60 @@ final class XrayRulesSampler implements Sampler {
         .orElseGet(() -> clock.nanoTime() + AwsXrayRemoteSampler.DEFAULT_TARGET_INTERVAL_NANOS);
   }
 
-  XrayRulesSampler withTargets(
-      Map<String, SamplingTargetDocument> ruleTargets,
-      Set<String> requestedTargetRuleNames,
-      Date now) {
-    long defaultNextSnapshotTimeNanos =
-        clock.nanoTime() + AwsXrayRemoteSampler.DEFAULT_TARGET_INTERVAL_NANOS;
+  /**
+   * Returns a sampler for the given rules. Appliers of rules that have not changed are kept
+   * together with their statistics, targets, and snapshot times, only new or modified rules get new
+   * appliers.
+   */
+  XrayRulesSampler withRules(List<GetSamplingRulesResponse.SamplingRule> rules) {
+    Map<GetSamplingRulesResponse.SamplingRule, SamplingRuleApplier> currentAppliers =
+        new HashMap<>();
+    for (SamplingRuleApplier applier : ruleAppliers) {
+      currentAppliers.put(applier.getRule(), applier);
+    }
     SamplingRuleApplier[] newAppliers =
-        Arrays.stream(ruleAppliers)
+        rules.stream()
+            // Lower priority value takes precedence so normal ascending sort.
+            .sorted(Comparator.comparingInt(GetSamplingRulesResponse.SamplingRule::getPriority))
             .map(
                 rule -> {
-                  SamplingTargetDocument target = ruleTargets.get(rule.getRuleName());
-                  if (target != null) {
-                    return rule.withTarget(target, now);
-                  }
-                  if (requestedTargetRuleNames.contains(rule.getRuleName())) {
-                    // In practice X-Ray should return a target for any rule we requested but
-                    // do a defensive check here in case. If we requested a target but got nothing
-                    // back assume the default interval.
-                    return rule.withNextSnapshotTimeNanos(defaultNextSnapshotTimeNanos);
-                  }
-                  // Target not requested, will be updated in a future target fetch.
-                  return rule;
+                  SamplingRuleApplier applier = currentAppliers.get(rule);
+                  return applier != null
+                      ? applier
+                      : new SamplingRuleApplier(clientId, rule, clock, shardedRateLimiter);
                 })
             .toArray(SamplingRuleApplier[]::new);
-    return new XrayRulesSampler(clientId, resource, clock, fallbackSampler, newAppliers);
+    return new XrayRulesSampler(
+        clientId,
+        resource,
+        clock,
+        fallbackSampler,
+        shardedRateLimiter,
+        matchCacheSize,
+        newAppliers);
+  }
+
+  /**
+   * Applies the given targets to the rule appliers in place. Targets only change the sampling state
+   * of the appliers, not how rules are matched, so neither the appliers nor the index are rebuilt.
+   */
+  void updateTargets(
+      Map<String, SamplingTargetDocument> ruleTargets,
+      Set<String> requestedTargetRuleNames,
+      Date now) {
+    long defaultNextSnapshotTimeNanos =
+        clock.nanoTime() + AwsXrayRemoteSampler.DEFAULT_TARGET_INTERVAL_NANOS;
+    for (SamplingRuleApplier rule : ruleAppliers) {
+      SamplingTargetDocument target = ruleTargets.get(rule.getRuleName());
+      if (target != null) {
+        rule.updateTarget(target, now);
+      } else if (requestedTargetRuleNames.contains(rule.getRuleName())) {
+        // In practice X-Ray should return a target for any rule we requested but
+        // do a defensive check here in case. If we requested a target but got nothing
+        // back assume the default interval.
+        rule.updateNextSnapshotTimeNanos(defaultNextSnapshotTimeNanos);
+      }
+      // Otherwise the target was not requested, will be updated in a future target fetch.
+    }
   }
 }
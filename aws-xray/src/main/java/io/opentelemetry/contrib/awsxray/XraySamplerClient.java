@@ -31,15 +31,25 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -58,60 +68,182 @@ final class XraySamplerClient {
           // In case API is extended with new fields.
           .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, /* state= */ false);
 
+  // Readers are immutable and cache the deserializer of their type, so they are created only once.
+  // Visible for benchmarks
+  static final ObjectReader GET_SAMPLING_RULES_RESPONSE_READER =
+      OBJECT_MAPPER.readerFor(GetSamplingRulesResponse.class);
+  static final ObjectReader GET_SAMPLING_TARGETS_RESPONSE_READER =
+      OBJECT_MAPPER.readerFor(GetSamplingTargetsResponse.class);
+
   private static final MediaType JSON_CONTENT_TYPE = MediaType.get("application/json");
 
   private static final Logger logger = Logger.getLogger(XraySamplerClient.class.getName());
 
+  // In-flight asynchronous GetSamplingRules requests by endpoint, shared by all clients that
+  // coalesce requests.
+  private static final ConcurrentMap<String, CompletableFuture<GetSamplingRulesResponse>>
+      inFlightRulesRequests = new ConcurrentHashMap<>();
+
   private final String getSamplingRulesEndpoint;
   private final String getSamplingTargetsEndpoint;
   private final OkHttpClient httpClient;
+  private final boolean coalesceRulesRequests;
 
   XraySamplerClient(String host) {
+    this(host, sharedHttpClient(), /* coalesceRulesRequests= */ false);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param host the address of the X-Ray proxy
+   * @param httpClient the client to execute requests with
+   * @param coalesceRulesRequests whether asynchronous GetSamplingRules requests for the same
+   *     endpoint share a response with a request already in flight, from this or any other client
+   */
+  XraySamplerClient(String host, OkHttpClient httpClient, boolean coalesceRulesRequests) {
     this.getSamplingRulesEndpoint = host + "/GetSamplingRules";
     // Lack of Get may look wrong but is correct.
     this.getSamplingTargetsEndpoint = host + "/SamplingTargets";
-    httpClient = new OkHttpClient();
+    this.httpClient = httpClient;
+    this.coalesceRulesRequests = coalesceRulesRequests;
+  }
+
+  /**
+   * Returns the {@link OkHttpClient} shared by all samplers of this JVM, which is created on first
+   * use. Its connection pool keeps connections to the X-Ray proxy alive between polls, and
+   * asynchronous requests are executed by a single {@link Dispatcher} with daemon threads.
+   */
+  static OkHttpClient sharedHttpClient() {
+    return SharedHttpClientHolder.INSTANCE;
   }
 
   GetSamplingRulesResponse getSamplingRules(GetSamplingRulesRequest request) {
-    return executeJsonRequest(getSamplingRulesEndpoint, request, GetSamplingRulesResponse.class);
+    return executeJsonRequest(
+        getSamplingRulesEndpoint, request, GET_SAMPLING_RULES_RESPONSE_READER);
   }
 
   GetSamplingTargetsResponse getSamplingTargets(GetSamplingTargetsRequest request) {
     return executeJsonRequest(
-        getSamplingTargetsEndpoint, request, GetSamplingTargetsResponse.class);
+        getSamplingTargetsEndpoint, request, GET_SAMPLING_TARGETS_RESPONSE_READER);
   }
 
-  private <T> T executeJsonRequest(String endpoint, Object request, Class<T> responseType) {
-    byte[] requestBody;
+  /**
+   * Asynchronous variant of {@link #getSamplingRules(GetSamplingRulesRequest)}, which does not
+   * block the calling thread. If requests are coalesced, the first page of rules is requested at
+   * most once at a time per endpoint.
+   */
+  CompletableFuture<GetSamplingRulesResponse> getSamplingRulesAsync(
+      GetSamplingRulesRequest request) {
+    if (!coalesceRulesRequests || request.getNextToken() != null) {
+      return executeJsonRequestAsync(
+          getSamplingRulesEndpoint, request, GET_SAMPLING_RULES_RESPONSE_READER);
+    }
+    CompletableFuture<GetSamplingRulesResponse> newRequest = new CompletableFuture<>();
+    CompletableFuture<GetSamplingRulesResponse> inFlightRequest =
+        inFlightRulesRequests.putIfAbsent(getSamplingRulesEndpoint, newRequest);
+    if (inFlightRequest != null) {
+      return inFlightRequest;
+    }
+    CompletableFuture<GetSamplingRulesResponse> response;
     try {
-      requestBody = OBJECT_MAPPER.writeValueAsBytes(request);
-    } catch (JsonProcessingException e) {
-      throw new UncheckedIOException("Failed to serialize request.", e);
+      response =
+          executeJsonRequestAsync(
+              getSamplingRulesEndpoint, request, GET_SAMPLING_RULES_RESPONSE_READER);
+    } catch (RuntimeException e) {
+      inFlightRulesRequests.remove(getSamplingRulesEndpoint, newRequest);
+      newRequest.completeExceptionally(e);
+      return newRequest;
     }
+    response.whenComplete(
+        (rulesResponse, throwable) -> {
+          // Remove before completing, so that requests triggered by the response are sent.
+          inFlightRulesRequests.remove(getSamplingRulesEndpoint, newRequest);
+          if (throwable != null) {
+            newRequest.completeExceptionally(throwable);
+          } else {
+            newRequest.complete(rulesResponse);
+          }
+        });
+    return newRequest;
+  }
 
-    Call call =
-        httpClient.newCall(
-            new Request.Builder()
-                .url(endpoint)
-                .post(RequestBody.create(requestBody, JSON_CONTENT_TYPE))
-                .build());
+  /**
+   * Asynchronous variant of {@link #getSamplingTargets(GetSamplingTargetsRequest)}, which does not
+   * block the calling thread. Requests for targets are never coalesced as they carry the statistics
+   * of a single sampler.
+   */
+  CompletableFuture<GetSamplingTargetsResponse> getSamplingTargetsAsync(
+      GetSamplingTargetsRequest request) {
+    return executeJsonRequestAsync(
+        getSamplingTargetsEndpoint, request, GET_SAMPLING_TARGETS_RESPONSE_READER);
+  }
 
-    String response;
+  private <T> T executeJsonRequest(String endpoint, Object request, ObjectReader responseReader) {
+    Call call = newCall(endpoint, request);
     try (Response httpResponse = call.execute()) {
-      response = readResponse(httpResponse, endpoint);
+      return readResponse(httpResponse, endpoint, responseReader);
     } catch (IOException e) {
-      throw new UncheckedIOException("Failed to execute sampling request.", e);
+      throw toUncheckedIoException(e);
     }
+  }
 
+  private <T> CompletableFuture<T> executeJsonRequestAsync(
+      String endpoint, Object request, ObjectReader responseReader) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    Call call;
+    try {
+      call = newCall(endpoint, request);
+    } catch (RuntimeException e) {
+      // e.g. a malformed endpoint, reported through the future like any other failure
+      result.completeExceptionally(e);
+      return result;
+    }
+    call.enqueue(
+        new Callback() {
+          @Override
+          public void onFailure(Call call, IOException e) {
+            result.completeExceptionally(toUncheckedIoException(e));
+          }
+
+          @Override
+          public void onResponse(Call call, Response response) {
+            try (Response httpResponse = response) {
+              result.complete(readResponse(httpResponse, endpoint, responseReader));
+            } catch (IOException e) {
+              result.completeExceptionally(toUncheckedIoException(e));
+            } catch (RuntimeException e) {
+              result.completeExceptionally(e);
+            }
+          }
+        });
+    return result;
+  }
+
+  private Call newCall(String endpoint, Object request) {
+    byte[] requestBody;
     try {
-      return OBJECT_MAPPER.readValue(response, responseType);
+      requestBody = OBJECT_MAPPER.writeValueAsBytes(request);
     } catch (JsonProcessingException e) {
-      throw new UncheckedIOException("Failed to deserialize response.", e);
+      throw new UncheckedIOException("Failed to serialize request.", e);
+    }
+
+    return httpClient.newCall(
+        new Request.Builder()
+            .url(endpoint)
+            .post(RequestBody.create(requestBody, JSON_CONTENT_TYPE))
+            .build());
+  }
+
+  private static UncheckedIOException toUncheckedIoException(IOException e) {
+    if (e instanceof JsonProcessingException) {
+      return new UncheckedIOException("Failed to deserialize response.", e);
     }
+    return new UncheckedIOException("Failed to execute sampling request.", e);
   }
 
-  private static String readResponse(Response response, String endpoint) throws IOException {
+  private static <T> T readResponse(Response response, String endpoint, ObjectReader reader)
+      throws IOException {
     if (!response.isSuccessful()) {
       logger.log(
           Level.FINE,
@@ -121,14 +253,16 @@ final class XraySamplerClient {
               + response.code()
               + ") text "
               + response.message());
-      return "";
+      throw new IOException("Error response from " + endpoint + " code (" + response.code() + ")");
     }
 
     ResponseBody body = response.body();
-    if (body != null) {
-      return body.string();
+    if (body == null) {
+      throw new IOException("Empty response from " + endpoint);
     }
-    return "";
+    // Deserialize straight from the body stream so that large responses are never buffered as a
+    // whole.
+    return reader.readValue(body.byteStream());
   }
 
   // Visible for testing
@@ -136,26 +270,111 @@ final class XraySamplerClient {
     return getSamplingRulesEndpoint;
   }
 
+  private static final class SharedHttpClientHolder {
+
+    static final OkHttpClient INSTANCE =
+        new OkHttpClient.Builder()
+            .dispatcher(
+                new Dispatcher(
+                    new ThreadPoolExecutor(
+                        0,
+                        Integer.MAX_VALUE,
+                        60,
+                        TimeUnit.SECONDS,
+                        new SynchronousQueue<>(),
+                        runnable -> {
+                          Thread t = Executors.defaultThreadFactory().newThread(runnable);
+                          try {
+                            t.setDaemon(true);
+                            t.setName("xray-sampler-http");
+                          } catch (SecurityException e) {
+                            // Well, we tried.
+                          }
+                          return t;
+                        })))
+            .build();
+
+    private SharedHttpClientHolder() {}
+  }
+
   @SuppressWarnings("JavaUtilDate")
-  private static class FloatDateDeserializer extends StdDeserializer<Date> {
+  static class FloatDateDeserializer extends StdDeserializer<Date> {
 
     private static final long serialVersionUID = 4446058377205025341L;
 
     private static final int AWS_DATE_MILLI_SECOND_PRECISION = 3;
 
+    // Larger values could overflow when scaled to milliseconds.
+    private static final int MAX_INTEGER_DIGITS = 15;
+
+    static final long INVALID_EPOCH_MILLIS = Long.MIN_VALUE;
+
     private FloatDateDeserializer() {
       super(Date.class);
     }
 
     @Override
     public Date deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+      long epochMillis =
+          parseEpochMillis(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+      if (epochMillis != INVALID_EPOCH_MILLIS) {
+        return new Date(epochMillis);
+      }
       return parseServiceSpecificDate(p.getText());
     }
 
+    /**
+     * Parses plain decimal epoch seconds like {@code 1624000095.123} into milliseconds without
+     * allocating, truncating digits beyond millisecond precision like {@link
+     * #parseServiceSpecificDate(String)}. Returns {@link #INVALID_EPOCH_MILLIS} for anything else,
+     * such as exponents or too many integer digits, which is left to the slow path.
+     */
+    static long parseEpochMillis(char[] chars, int offset, int length) {
+      int end = offset + length;
+      int i = offset;
+      boolean negative = i < end && chars[i] == '-';
+      if (negative) {
+        i++;
+      }
+      int integerStart = i;
+      long seconds = 0;
+      while (i < end && chars[i] >= '0' && chars[i] <= '9') {
+        seconds = seconds * 10 + (chars[i++] - '0');
+      }
+      int integerDigits = i - integerStart;
+      if (integerDigits == 0 || integerDigits > MAX_INTEGER_DIGITS) {
+        return INVALID_EPOCH_MILLIS;
+      }
+      long millis = 0;
+      int fractionDigits = 0;
+      if (i < end && chars[i] == '.') {
+        i++;
+        int fractionStart = i;
+        while (i < end && chars[i] >= '0' && chars[i] <= '9') {
+          if (fractionDigits < AWS_DATE_MILLI_SECOND_PRECISION) {
+            millis = millis * 10 + (chars[i] - '0');
+            fractionDigits++;
+          }
+          i++;
+        }
+        if (i == fractionStart) {
+          return INVALID_EPOCH_MILLIS;
+        }
+      }
+      if (i != end) {
+        return INVALID_EPOCH_MILLIS;
+      }
+      for (; fractionDigits < AWS_DATE_MILLI_SECOND_PRECISION; fractionDigits++) {
+        millis *= 10;
+      }
+      millis += seconds * 1000;
+      return negative ? -millis : millis;
+    }
+
     // Copied from AWS SDK
     // https://github.com/aws/aws-sdk-java/blob/7b1e5b87b0bf03456df9e77716b14731adf9a7a7/aws-java-sdk-core/src/main/java/com/amazonaws/util/DateUtils.java#L239
     /** Parses the given date string returned by the AWS service into a Date object. */
-    private static Date parseServiceSpecificDate(String dateString) {
+    static Date parseServiceSpecificDate(String dateString) {
       try {
         BigDecimal dateValue = new BigDecimal(dateString);
         return new Date(dateValue.scaleByPowerOfTen(AWS_DATE_MILLI_SECOND_PRECISION).longValue());
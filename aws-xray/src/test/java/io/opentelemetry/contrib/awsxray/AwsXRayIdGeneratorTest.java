@@ -46,6 +46,18 @@ class AwsXRayIdGeneratorTest {
     }
   }
 
+  @Test
+  void shouldGenerateTraceIdsInBinaryForm() {
+    AwsXrayIdGenerator generator = AwsXrayIdGenerator.getInstance();
+    for (int i = 0; i < 1000; i++) {
+      long currentSecs = System.currentTimeMillis() / 1000;
+      long high = generator.generateTraceIdHigh();
+      long low = generator.generateTraceIdLow();
+      assertThat(TraceId.isValid(TraceId.fromLongs(high, low))).isTrue();
+      assertThat(high >>> 32).isBetween(currentSecs, currentSecs + 1);
+    }
+  }
+
   @Test
   void shouldGenerateUniqueIdsInMultithreadedEnvironment()
       throws BrokenBarrierException, InterruptedException {
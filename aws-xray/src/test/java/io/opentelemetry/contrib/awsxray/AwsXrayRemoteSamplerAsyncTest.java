@@ -0,0 +1,175 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.awsxray;
+
+import static java.util.Objects.requireNonNull;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import com.google.common.io.ByteStreams;
+import com.linecorp.armeria.common.HttpResponse;
+import com.linecorp.armeria.common.HttpStatus;
+import com.linecorp.armeria.common.MediaType;
+import com.linecorp.armeria.server.ServerBuilder;
+import com.linecorp.armeria.testing.junit5.server.ServerExtension;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.TraceId;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+class AwsXrayRemoteSamplerAsyncTest {
+
+  private static final byte[] RULE_RESPONSE_1;
+  private static final byte[] TARGETS_RESPONSE;
+
+  static {
+    try {
+      RULE_RESPONSE_1 =
+          ByteStreams.toByteArray(
+              requireNonNull(
+                  AwsXrayRemoteSamplerAsyncTest.class.getResourceAsStream(
+                      "/test-sampling-rules-response-1.json")));
+      TARGETS_RESPONSE =
+          ByteStreams.toByteArray(
+              requireNonNull(
+                  AwsXrayRemoteSamplerAsyncTest.class.getResourceAsStream(
+                      "/test-sampling-targets-response.json")));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static final AtomicReference<Duration> rulesLatency =
+      new AtomicReference<>(Duration.ZERO);
+  private static final AtomicInteger rulesRequestsInFlight = new AtomicInteger();
+  private static final AtomicInteger maxRulesRequestsInFlight = new AtomicInteger();
+  private static final AtomicBoolean targetsFetchedWhileRulesInFlight = new AtomicBoolean();
+
+  private static final String TRACE_ID = TraceId.fromLongs(1, 2);
+
+  @RegisterExtension
+  public static final ServerExtension server =
+      new ServerExtension() {
+        @Override
+        protected void configure(ServerBuilder sb) {
+          sb.service(
+              "/GetSamplingRules",
+              (ctx, req) -> {
+                maxRulesRequestsInFlight.accumulateAndGet(
+                    rulesRequestsInFlight.incrementAndGet(), Math::max);
+                return HttpResponse.delayed(
+                    () -> {
+                      rulesRequestsInFlight.decrementAndGet();
+                      return HttpResponse.of(HttpStatus.OK, MediaType.JSON_UTF_8, RULE_RESPONSE_1);
+                    },
+                    rulesLatency.get());
+              });
+          sb.service(
+              "/SamplingTargets",
+              (ctx, req) -> {
+                if (rulesRequestsInFlight.get() > 0) {
+                  targetsFetchedWhileRulesInFlight.set(true);
+                }
+                return HttpResponse.of(HttpStatus.OK, MediaType.JSON_UTF_8, TARGETS_RESPONSE);
+              });
+        }
+      };
+
+  @AfterEach
+  void tearDown() {
+    rulesLatency.set(Duration.ZERO);
+    maxRulesRequestsInFlight.set(0);
+    targetsFetchedWhileRulesInFlight.set(false);
+  }
+
+  private static AwsXrayRemoteSampler createSampler(boolean coalesceRulesRequests) {
+    return AwsXrayRemoteSampler.newBuilder(Resource.empty())
+        .setInitialSampler(Sampler.alwaysOn())
+        .setEndpoint(server.httpUri().toString())
+        .setPollingInterval(Duration.ofMillis(10))
+        .setAsyncPolling(true)
+        .setCoalesceRulesRequests(coalesceRulesRequests)
+        .build();
+  }
+
+  @Test
+  void slowRulesRequestDoesNotDelayTargets() {
+    try (AwsXrayRemoteSampler sampler = createSampler(/* coalesceRulesRequests= */ false)) {
+      // Default rule has a fixed rate of 0.
+      await()
+          .untilAsserted(
+              () -> assertThat(doSample(sampler, "dog-service")).isEqualTo(SamplingDecision.DROP));
+
+      // From now on, every rules request is in flight for most of the time.
+      rulesLatency.set(Duration.ofSeconds(5));
+
+      // Targets are first fetched after 10s and set the fixed rate of the Test rule to 1.0.
+      await()
+          .atMost(Duration.ofSeconds(20))
+          .untilAsserted(() -> assertThat(targetsFetchedWhileRulesInFlight).isTrue());
+      assertThat(doSample(sampler, "cat-service")).isEqualTo(SamplingDecision.RECORD_AND_SAMPLE);
+    }
+  }
+
+  @Test
+  void coalescesRulesRequests() {
+    rulesLatency.set(Duration.ofMillis(200));
+    try (AwsXrayRemoteSampler sampler1 = createSampler(/* coalesceRulesRequests= */ true);
+        AwsXrayRemoteSampler sampler2 = createSampler(/* coalesceRulesRequests= */ true)) {
+      await()
+          .untilAsserted(
+              () -> {
+                assertThat(doSample(sampler1, "dog-service")).isEqualTo(SamplingDecision.DROP);
+                assertThat(doSample(sampler2, "dog-service")).isEqualTo(SamplingDecision.DROP);
+              });
+      assertThat(maxRulesRequestsInFlight).hasValue(1);
+    }
+  }
+
+  @Test
+  void malformedEndpointKeepsPolling() {
+    try (AwsXrayRemoteSampler sampler =
+        AwsXrayRemoteSampler.newBuilder(Resource.empty())
+            .setInitialSampler(Sampler.alwaysOn())
+            .setEndpoint("not a url")
+            .setPollingInterval(Duration.ofMinutes(5))
+            .setAsyncPolling(true)
+            .build()) {
+      await()
+          .untilAsserted(
+              () ->
+                  assertThat(sampler.getNextSamplerUpdateScheduledDuration())
+                      .isCloseTo(Duration.ofMinutes(5), Duration.ofSeconds(10)));
+      assertThat(doSample(sampler, "cat-service")).isEqualTo(SamplingDecision.RECORD_AND_SAMPLE);
+    }
+  }
+
+  private static SamplingDecision doSample(Sampler sampler, String name) {
+    return sampler
+        .shouldSample(
+            Context.root(),
+            TRACE_ID,
+            "span",
+            SpanKind.SERVER,
+            Attributes.of(AttributeKey.stringKey("test"), name),
+            Collections.emptyList())
+        .getDecision();
+  }
+}
@@ -7,6 +7,7 @@ package io.opentelemetry.contrib.awsxray;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import io.opentelemetry.sdk.common.Clock;
 import io.opentelemetry.sdk.testing.time.TestClock;
 import java.time.Duration;
 import java.util.ArrayList;
@@ -17,7 +18,8 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 
 /**
  * This class was taken from Jaeger java client.
@@ -25,10 +27,28 @@ import org.junit.jupiter.api.Test;
  */
 class RateLimiterTest {
 
-  @Test
-  void testRateLimiterWholeNumber() {
+  enum LimiterType {
+    SINGLE {
+      @Override
+      CreditLimiter create(double creditsPerSecond, double maxBalance, Clock clock) {
+        return new RateLimiter(creditsPerSecond, maxBalance, clock);
+      }
+    },
+    SHARDED {
+      @Override
+      CreditLimiter create(double creditsPerSecond, double maxBalance, Clock clock) {
+        return new ShardedRateLimiter(creditsPerSecond, maxBalance, clock, 8);
+      }
+    };
+
+    abstract CreditLimiter create(double creditsPerSecond, double maxBalance, Clock clock);
+  }
+
+  @ParameterizedTest
+  @EnumSource(LimiterType.class)
+  void testRateLimiterWholeNumber(LimiterType type) {
     TestClock clock = TestClock.create();
-    RateLimiter limiter = new RateLimiter(2.0, 2.0, clock);
+    CreditLimiter limiter = type.create(2.0, 2.0, clock);
 
     assertThat(limiter.trySpend(1.0)).isTrue();
     assertThat(limiter.trySpend(1.0)).isTrue();
@@ -54,27 +74,30 @@ class RateLimiterTest {
     assertThat(limiter.trySpend(1.0)).isFalse();
   }
 
-  @Test
-  void testRateLimiterSteadyRate() {
+  @ParameterizedTest
+  @EnumSource(LimiterType.class)
+  void testRateLimiterSteadyRate(LimiterType type) {
     TestClock clock = TestClock.create();
-    RateLimiter limiter = new RateLimiter(5.0 / 60.0, 5.0, clock);
+    CreditLimiter limiter = type.create(5.0 / 60.0, 5.0, clock);
     for (int i = 0; i < 100; i++) {
       assertThat(limiter.trySpend(1.0)).isTrue();
       clock.advance(Duration.ofSeconds(20));
     }
   }
 
-  @Test
-  void cantWithdrawMoreThanMax() {
+  @ParameterizedTest
+  @EnumSource(LimiterType.class)
+  void cantWithdrawMoreThanMax(LimiterType type) {
     TestClock clock = TestClock.create();
-    RateLimiter limiter = new RateLimiter(1, 1.0, clock);
+    CreditLimiter limiter = type.create(1, 1.0, clock);
     assertThat(limiter.trySpend(2)).isFalse();
   }
 
-  @Test
-  void testRateLimiterLessThanOne() {
+  @ParameterizedTest
+  @EnumSource(LimiterType.class)
+  void testRateLimiterLessThanOne(LimiterType type) {
     TestClock clock = TestClock.create();
-    RateLimiter limiter = new RateLimiter(0.5, 0.5, clock);
+    CreditLimiter limiter = type.create(0.5, 0.5, clock);
 
     assertThat(limiter.trySpend(0.25)).isTrue();
     assertThat(limiter.trySpend(0.25)).isTrue();
@@ -100,10 +123,11 @@ class RateLimiterTest {
     assertThat(limiter.trySpend(0.25)).isFalse();
   }
 
-  @Test
-  void testRateLimiterMaxBalance() {
+  @ParameterizedTest
+  @EnumSource(LimiterType.class)
+  void testRateLimiterMaxBalance(LimiterType type) {
     TestClock clock = TestClock.create();
-    RateLimiter limiter = new RateLimiter(0.1, 1.0, clock);
+    CreditLimiter limiter = type.create(0.1, 1.0, clock);
 
     clock.advance(Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(100)));
     assertThat(limiter.trySpend(1.0)).isTrue();
@@ -121,10 +145,11 @@ class RateLimiterTest {
    * Validates rate limiter behavior with {@link System#nanoTime()}-like (non-zero) initial nano
    * ticks.
    */
-  @Test
-  void testRateLimiterInitial() {
+  @ParameterizedTest
+  @EnumSource(LimiterType.class)
+  void testRateLimiterInitial(LimiterType type) {
     TestClock clock = TestClock.create();
-    RateLimiter limiter = new RateLimiter(1000, 100, clock);
+    CreditLimiter limiter = type.create(1000, 100, clock);
 
     assertThat(limiter.trySpend(100)).isTrue(); // consume initial (max) balance
     assertThat(limiter.trySpend(1)).isFalse();
@@ -146,13 +171,15 @@ class RateLimiterTest {
   }
 
   /** Validates concurrent credit check correctness. */
-  @Test
-  void testRateLimiterConcurrency() throws InterruptedException, ExecutionException {
+  @ParameterizedTest
+  @EnumSource(LimiterType.class)
+  void testRateLimiterConcurrency(LimiterType type)
+      throws InterruptedException, ExecutionException {
     int numWorkers = 8;
     ExecutorService executorService = Executors.newFixedThreadPool(numWorkers);
     int creditsPerWorker = 1000;
     TestClock clock = TestClock.create();
-    RateLimiter limiter = new RateLimiter(1, numWorkers * creditsPerWorker, clock);
+    CreditLimiter limiter = type.create(1, numWorkers * creditsPerWorker, clock);
     AtomicInteger count = new AtomicInteger();
     List<Future<?>> futures = new ArrayList<>(numWorkers);
     for (int w = 0; w < numWorkers; ++w) {
@@ -16,15 +16,17 @@ import io.opentelemetry.sdk.trace.samplers.Sampler;
 import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
 import java.time.Duration;
 import java.util.Collections;
-import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 
 class RateLimitingSamplerTest {
 
   // RateLimiter is well tested, just do some sanity check.
-  @Test
-  void limitsRate() {
+  @ParameterizedTest
+  @ValueSource(booleans = {false, true})
+  void limitsRate(boolean sharded) {
     TestClock clock = TestClock.create();
-    Sampler sampler = new RateLimitingSampler(1, clock);
+    Sampler sampler = new RateLimitingSampler(1, clock, sharded);
     assertThat(sampler.getDescription()).isEqualTo("RateLimitingSampler{1}");
 
     assertThat(
@@ -0,0 +1,136 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.awsxray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.Test;
+
+class SamplingCountersTest {
+
+  @Test
+  void drain() {
+    SamplingCounters counters = new SamplingCounters();
+    counters.record(/* sampled= */ false, /* borrowed= */ false);
+    counters.record(/* sampled= */ true, /* borrowed= */ false);
+    counters.record(/* sampled= */ true, /* borrowed= */ true);
+    counters.record(/* sampled= */ true, /* borrowed= */ false);
+
+    SamplingCounters.Counts counts = counters.drain();
+    assertThat(counts.getRequests()).isEqualTo(4);
+    assertThat(counts.getSampled()).isEqualTo(3);
+    assertThat(counts.getBorrowed()).isEqualTo(1);
+
+    counts = counters.drain();
+    assertThat(counts.getRequests()).isZero();
+    assertThat(counts.getSampled()).isZero();
+    assertThat(counts.getBorrowed()).isZero();
+  }
+
+  @Test
+  void stripesAreNotAllocatedWithoutContention() {
+    SamplingCounters counters = new SamplingCounters(64);
+    for (int i = 0; i < 1000; i++) {
+      counters.record(/* sampled= */ true, /* borrowed= */ false);
+    }
+
+    assertThat(counters.isStriped()).isFalse();
+    assertThat(counters.drain().getRequests()).isEqualTo(1000);
+  }
+
+  @Test
+  void notSampledIsNeverBorrowed() {
+    SamplingCounters counters = new SamplingCounters();
+    counters.record(/* sampled= */ false, /* borrowed= */ true);
+
+    SamplingCounters.Counts counts = counters.drain();
+    assertThat(counts.getRequests()).isEqualTo(1);
+    assertThat(counts.getSampled()).isZero();
+    assertThat(counts.getBorrowed()).isZero();
+  }
+
+  @Test
+  void countsBeyondCapacityOfStripe() {
+    SamplingCounters counters = new SamplingCounters(1);
+    int numberOfRequests = 5_000_000;
+    for (int i = 0; i < numberOfRequests; i++) {
+      counters.record(/* sampled= */ true, /* borrowed= */ i % 2 == 0);
+    }
+
+    SamplingCounters.Counts counts = counters.drain();
+    assertThat(counts.getRequests()).isEqualTo(numberOfRequests);
+    assertThat(counts.getSampled()).isEqualTo(numberOfRequests);
+    assertThat(counts.getBorrowed()).isEqualTo(numberOfRequests / 2);
+  }
+
+  @Test
+  void concurrentRecordsAndDrains() throws InterruptedException {
+    SamplingCounters counters = new SamplingCounters(4);
+    int numberOfThreads = 8;
+    int requestsPerThread = 100_000;
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < numberOfThreads; t++) {
+      Thread thread =
+          new Thread(
+              () -> {
+                try {
+                  start.await();
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                  return;
+                }
+                for (int i = 0; i < requestsPerThread; i++) {
+                  // every fourth request is sampled, every eighth borrowed
+                  counters.record(i % 4 == 0, i % 8 == 0);
+                }
+              });
+      thread.start();
+      threads.add(thread);
+    }
+
+    boolean consistent = true;
+    long requests = 0;
+    long sampled = 0;
+    long borrowed = 0;
+    start.countDown();
+    boolean running = true;
+    while (running) {
+      running = threads.stream().anyMatch(Thread::isAlive);
+      SamplingCounters.Counts counts = counters.drain();
+      if (counts.getBorrowed() > counts.getSampled()
+          || counts.getSampled() > counts.getRequests()) {
+        consistent = false;
+      }
+      requests += counts.getRequests();
+      sampled += counts.getSampled();
+      borrowed += counts.getBorrowed();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    SamplingCounters.Counts counts = counters.drain();
+    requests += counts.getRequests();
+    sampled += counts.getSampled();
+    borrowed += counts.getBorrowed();
+
+    assertThat(consistent).isTrue();
+    assertThat(requests).isEqualTo((long) numberOfThreads * requestsPerThread);
+    assertThat(sampled).isEqualTo((long) numberOfThreads * requestsPerThread / 4);
+    assertThat(borrowed).isEqualTo((long) numberOfThreads * requestsPerThread / 8);
+  }
+
+  @Test
+  void invalidNumberOfStripes() {
+    assertThatThrownBy(() -> new SamplingCounters(3))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("number of stripes must be a power of two");
+  }
+}
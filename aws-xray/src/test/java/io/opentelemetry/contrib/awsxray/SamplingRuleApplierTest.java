@@ -394,6 +394,37 @@ class SamplingRuleApplierTest {
       assertThat(applier.matches(attributes, resource)).isTrue();
     }
 
+    @Test
+    void pathMatchesUrl() {
+      Attributes attributes =
+          removeAttribute(this.attributes, SemanticAttributes.HTTP_TARGET).toBuilder()
+              .put(
+                  SemanticAttributes.HTTP_URL,
+                  "https://opentelemetry.io/instrument-me?foo=bar&cat=meow")
+              .build();
+      assertThat(applier.matches(attributes, resource)).isTrue();
+      attributes =
+          removeAttribute(this.attributes, SemanticAttributes.HTTP_TARGET).toBuilder()
+              .put(
+                  SemanticAttributes.HTTP_URL,
+                  "https://opentelemetry.io/instrument-you?foo=bar&cat=meow")
+              .build();
+      assertThat(applier.matches(attributes, resource)).isFalse();
+    }
+
+    @Test
+    @SuppressWarnings("deprecation") // uses deprecated semantic attributes
+    void hostPrefersNetHostName() {
+      Attributes attributes =
+          this.attributes.toBuilder().put(SemanticAttributes.HTTP_HOST, "example.com").build();
+      assertThat(applier.matches(attributes, resource)).isTrue();
+      attributes =
+          removeAttribute(this.attributes, SemanticAttributes.NET_HOST_NAME).toBuilder()
+              .put(SemanticAttributes.HTTP_HOST, "opentelemetry.io")
+              .build();
+      assertThat(applier.matches(attributes, resource)).isTrue();
+    }
+
     @Test
     void pathNotMatch() {
       Attributes attributes =
@@ -619,7 +650,7 @@ class SamplingRuleApplierTest {
     // Got a target!
     SamplingTargetDocument target =
         SamplingTargetDocument.create(0.0, 5, 2, Date.from(now.plusSeconds(10)), "test");
-    applier = applier.withTarget(target, Date.from(now));
+    applier.updateTarget(target, Date.from(now));
     // Statistics not expired yet
     assertThat(applier.snapshot(Date.from(now))).isNull();
 
@@ -677,7 +708,7 @@ class SamplingRuleApplierTest {
 
     // Got a target!
     SamplingTargetDocument target = SamplingTargetDocument.create(0.0, 5, null, null, "test");
-    applier = applier.withTarget(target, Date.from(now));
+    applier.updateTarget(target, Date.from(now));
     // No reservoir, always use fixed rate (drop)
     assertThat(doSample(applier)).isEqualTo(SamplingResult.create(SamplingDecision.DROP));
     assertThat(doSample(applier)).isEqualTo(SamplingResult.create(SamplingDecision.DROP));
@@ -688,7 +719,34 @@ class SamplingRuleApplierTest {
   }
 
   @Test
-  void withNextSnapshotTime() {
+  void updateTargetWithSameQuotaKeepsReservoir() {
+    TestClock clock = TestClock.create();
+    SamplingRuleApplier applier =
+        new SamplingRuleApplier(
+            CLIENT_ID, readSamplingRule("/sampling-rule-reservoir.json"), clock);
+    Instant now = Instant.ofEpochSecond(0, clock.now());
+    SamplingTargetDocument target =
+        SamplingTargetDocument.create(0.0, 5, 2, Date.from(now.plusSeconds(10)), "test");
+    applier.updateTarget(target, Date.from(now));
+    assertThat(doSample(applier))
+        .isEqualTo(SamplingResult.create(SamplingDecision.RECORD_AND_SAMPLE));
+    assertThat(doSample(applier))
+        .isEqualTo(SamplingResult.create(SamplingDecision.RECORD_AND_SAMPLE));
+    assertThat(doSample(applier)).isEqualTo(SamplingResult.create(SamplingDecision.DROP));
+
+    // Same quota, the spent reservoir is not replenished.
+    applier.updateTarget(target, Date.from(now));
+    assertThat(doSample(applier)).isEqualTo(SamplingResult.create(SamplingDecision.DROP));
+
+    // New quota, new reservoir.
+    target = SamplingTargetDocument.create(0.0, 5, 3, Date.from(now.plusSeconds(10)), "test");
+    applier.updateTarget(target, Date.from(now));
+    assertThat(doSample(applier))
+        .isEqualTo(SamplingResult.create(SamplingDecision.RECORD_AND_SAMPLE));
+  }
+
+  @Test
+  void updateNextSnapshotTime() {
     TestClock clock = TestClock.create();
     SamplingRuleApplier applier =
         new SamplingRuleApplier(
@@ -700,7 +758,7 @@ class SamplingRuleApplierTest {
         .isEqualTo(SamplingResult.create(SamplingDecision.RECORD_AND_SAMPLE));
     assertThat(doSample(applier)).isEqualTo(SamplingResult.create(SamplingDecision.DROP));
 
-    applier = applier.withNextSnapshotTimeNanos(clock.now() + TimeUnit.SECONDS.toNanos(10));
+    applier.updateNextSnapshotTimeNanos(clock.now() + TimeUnit.SECONDS.toNanos(10));
     assertThat(applier.snapshot(Date.from(now))).isNull();
     assertThat(doSample(applier)).isEqualTo(SamplingResult.create(SamplingDecision.DROP));
     clock.advance(Duration.ofSeconds(10));
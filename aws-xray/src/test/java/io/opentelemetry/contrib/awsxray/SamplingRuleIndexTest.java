@@ -0,0 +1,265 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.awsxray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.common.AttributesBuilder;
+import io.opentelemetry.sdk.common.Clock;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.testing.time.TestClock;
+import io.opentelemetry.semconv.resource.attributes.ResourceAttributes;
+import io.opentelemetry.semconv.trace.attributes.SemanticAttributes;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import javax.annotation.Nullable;
+import org.junit.jupiter.api.Test;
+
+class SamplingRuleIndexTest {
+
+  private static final Clock CLOCK = TestClock.create();
+
+  private static final String[] URL_PATHS = {
+    "*", "/", "/api", "/API", "/api/*", "/api/v?/*", "/api/users", "/static/*", "*/health", ""
+  };
+  private static final String[] HOSTS = {
+    "*", "example.com", "EXAMPLE.com", "*.example.com", "\u212Aelvin.org", "kelvin.org"
+  };
+  private static final String[] HTTP_METHODS = {"*", "GET", "get", "POST", "P*"};
+  private static final String[] SERVICE_NAMES = {"*", "my-service", "other-service", "my-*"};
+  private static final String[] SERVICE_TYPES = {
+    "*", "AWS::EC2::Instance", "AWS::Lambda::Function"
+  };
+  private static final String[] RESOURCE_ARNS = {"*", "arn:aws:lambda:function", "arn:*"};
+
+  private static final String[] SPAN_URL_PATHS = {
+    "/", "/api", "/Api", "/api/users", "/API/USERS", "/api/v1/x", "/static/a.js", "/x/health", ""
+  };
+  private static final String[] SPAN_HOSTS = {
+    "example.com", "Example.COM", "a.example.com", "kelvin.org", "\u212Aelvin.org", "other.org"
+  };
+  private static final String[] SPAN_HTTP_METHODS = {"GET", "get", "POST", "PUT", "PATCH"};
+
+  private static <T> T pick(SplittableRandom random, T[] values) {
+    return values[random.nextInt(values.length)];
+  }
+
+  private static GetSamplingRulesResponse.SamplingRule createRule(
+      SplittableRandom random, int priority, boolean withAttributes) {
+    Map<String, String> attributes =
+        withAttributes && random.nextInt(4) == 0
+            ? Collections.singletonMap("animal", random.nextBoolean() ? "cat" : "c*")
+            : Collections.emptyMap();
+    return GetSamplingRulesResponse.SamplingRule.create(
+        attributes,
+        1.0,
+        random.nextInt(2) == 0 ? "*" : pick(random, HOSTS),
+        random.nextInt(2) == 0 ? "*" : pick(random, HTTP_METHODS),
+        priority,
+        0,
+        random.nextInt(4) == 0 ? pick(random, RESOURCE_ARNS) : "*",
+        null,
+        "rule-" + priority,
+        random.nextInt(2) == 0 ? "*" : pick(random, SERVICE_NAMES),
+        random.nextInt(3) == 0 ? pick(random, SERVICE_TYPES) : "*",
+        pick(random, URL_PATHS),
+        1);
+  }
+
+  private static Resource createResource(SplittableRandom random) {
+    Map<String, String> attributes = new HashMap<>();
+    attributes.put(ResourceAttributes.SERVICE_NAME.getKey(), pick(random, SERVICE_NAMES));
+    switch (random.nextInt(3)) {
+      case 0:
+        attributes.put(
+            ResourceAttributes.CLOUD_PLATFORM.getKey(),
+            ResourceAttributes.CloudPlatformValues.AWS_EC2);
+        break;
+      case 1:
+        attributes.put(
+            ResourceAttributes.CLOUD_PLATFORM.getKey(),
+            ResourceAttributes.CloudPlatformValues.AWS_LAMBDA);
+        break;
+      default:
+        break;
+    }
+    AttributesBuilder builder = Attributes.builder();
+    attributes.forEach(builder::put);
+    return Resource.create(builder.build());
+  }
+
+  @SuppressWarnings("deprecation") // uses deprecated semantic attributes
+  private static Attributes createSpanAttributes(SplittableRandom random) {
+    AttributesBuilder builder = Attributes.builder();
+    switch (random.nextInt(3)) {
+      case 0:
+        builder.put(SemanticAttributes.HTTP_TARGET, pick(random, SPAN_URL_PATHS));
+        break;
+      case 1:
+        builder.put(
+            SemanticAttributes.HTTP_URL, "https://example.com" + pick(random, SPAN_URL_PATHS));
+        break;
+      default:
+        break;
+    }
+    if (random.nextBoolean()) {
+      builder.put(SemanticAttributes.NET_HOST_NAME, pick(random, SPAN_HOSTS));
+    }
+    if (random.nextBoolean()) {
+      builder.put(SemanticAttributes.HTTP_HOST, pick(random, SPAN_HOSTS));
+    }
+    if (random.nextInt(4) != 0) {
+      builder.put(SemanticAttributes.HTTP_METHOD, pick(random, SPAN_HTTP_METHODS));
+    }
+    if (random.nextBoolean()) {
+      builder.put("animal", random.nextBoolean() ? "cat" : "dog");
+    }
+    if (random.nextInt(4) == 0) {
+      builder.put(ResourceAttributes.FAAS_ID, "arn:aws:lambda:function");
+    }
+    return builder.build();
+  }
+
+  @Nullable
+  private static SamplingRuleApplier findFirstMatchLinearly(
+      SamplingRuleApplier[] ruleAppliers, Attributes attributes, Resource resource) {
+    for (SamplingRuleApplier applier : ruleAppliers) {
+      if (applier.matches(attributes, resource)) {
+        return applier;
+      }
+    }
+    return null;
+  }
+
+  @Test
+  void sameResultAsLinearScan() {
+    SplittableRandom random = new SplittableRandom(0x3f9a1c2e5b7d4086L);
+    for (int k = 0; k < 200; ++k) {
+      int numberOfRules = random.nextInt(150) + 1;
+      SamplingRuleApplier[] ruleAppliers = new SamplingRuleApplier[numberOfRules];
+      for (int i = 0; i < numberOfRules; ++i) {
+        ruleAppliers[i] =
+            new SamplingRuleApplier(
+                "client", createRule(random, i, /* withAttributes= */ true), CLOCK);
+      }
+      Resource resource = createResource(random);
+      SamplingRuleIndex index = new SamplingRuleIndex(ruleAppliers, resource);
+      for (int j = 0; j < 100; ++j) {
+        Attributes attributes = createSpanAttributes(random);
+        assertThat(index.findFirstMatch(ruleAppliers, attributes))
+            .isSameAs(findFirstMatchLinearly(ruleAppliers, attributes, resource));
+      }
+    }
+  }
+
+  @Test
+  void matchCacheSameResultAsLinearScan() {
+    SplittableRandom random = new SplittableRandom(0x5d1c0b7e9a3f2468L);
+    for (int k = 0; k < 200; ++k) {
+      int numberOfRules = random.nextInt(150) + 1;
+      SamplingRuleApplier[] ruleAppliers = new SamplingRuleApplier[numberOfRules];
+      for (int i = 0; i < numberOfRules; ++i) {
+        ruleAppliers[i] =
+            new SamplingRuleApplier(
+                "client", createRule(random, i, /* withAttributes= */ false), CLOCK);
+      }
+      Resource resource = createResource(random);
+      // small enough for shapes to replace each other
+      SamplingRuleMatchCache cache =
+          SamplingRuleMatchCache.create(
+              ruleAppliers, new SamplingRuleIndex(ruleAppliers, resource), resource, 16);
+      assertThat(cache).isNotNull();
+      for (int j = 0; j < 300; ++j) {
+        Attributes attributes = createSpanAttributes(random);
+        assertThat(cache.findFirstMatch(ruleAppliers, attributes))
+            .isSameAs(findFirstMatchLinearly(ruleAppliers, attributes, resource));
+      }
+    }
+  }
+
+  @Test
+  void matchCacheNotCreatedForAttributeRules() {
+    SamplingRuleApplier[] ruleAppliers = {
+      new SamplingRuleApplier(
+          "client",
+          GetSamplingRulesResponse.SamplingRule.create(
+              Collections.singletonMap("animal", "cat"),
+              1.0,
+              "*",
+              "*",
+              1,
+              0,
+              "*",
+              null,
+              "cat",
+              "*",
+              "*",
+              "*",
+              1),
+          CLOCK),
+      new SamplingRuleApplier(
+          "client",
+          GetSamplingRulesResponse.SamplingRule.create(
+              Collections.emptyMap(), 1.0, "*", "*", 2, 0, "*", null, "default", "*", "*", "*", 1),
+          CLOCK)
+    };
+    Resource resource = Resource.getDefault();
+    SamplingRuleIndex index = new SamplingRuleIndex(ruleAppliers, resource);
+
+    assertThat(SamplingRuleMatchCache.create(ruleAppliers, index, resource, 16)).isNull();
+    assertThat(
+            SamplingRuleMatchCache.create(
+                Arrays.copyOfRange(ruleAppliers, 1, 2), index, resource, 16))
+        .isNotNull();
+    assertThat(SamplingRuleMatchCache.create(ruleAppliers, index, resource, 0)).isNull();
+  }
+
+  @Test
+  void keepsPriorityOrder() {
+    SamplingRuleApplier[] ruleAppliers = {
+      new SamplingRuleApplier(
+          "client",
+          GetSamplingRulesResponse.SamplingRule.create(
+              Collections.emptyMap(), 1.0, "*", "GET", 1, 0, "*", null, "get", "*", "*", "*", 1),
+          CLOCK),
+      new SamplingRuleApplier(
+          "client",
+          GetSamplingRulesResponse.SamplingRule.create(
+              Collections.emptyMap(), 1.0, "*", "*", 2, 0, "*", null, "api", "*", "*", "/api/*", 1),
+          CLOCK),
+      new SamplingRuleApplier(
+          "client",
+          GetSamplingRulesResponse.SamplingRule.create(
+              Collections.emptyMap(), 1.0, "*", "*", 3, 0, "*", null, "default", "*", "*", "*", 1),
+          CLOCK)
+    };
+    SamplingRuleIndex index = new SamplingRuleIndex(ruleAppliers, Resource.getDefault());
+
+    assertThat(
+            index.findFirstMatch(
+                ruleAppliers,
+                Attributes.of(
+                    SemanticAttributes.HTTP_METHOD,
+                    "get",
+                    SemanticAttributes.HTTP_TARGET,
+                    "/api/x")))
+        .isSameAs(ruleAppliers[0]);
+    assertThat(
+            index.findFirstMatch(
+                ruleAppliers,
+                Attributes.of(
+                    SemanticAttributes.HTTP_METHOD,
+                    "POST",
+                    SemanticAttributes.HTTP_TARGET,
+                    "/api/x")))
+        .isSameAs(ruleAppliers[1]);
+    assertThat(index.findFirstMatch(ruleAppliers, Attributes.empty())).isSameAs(ruleAppliers[2]);
+  }
+}
@@ -13,12 +13,14 @@ import io.opentelemetry.api.trace.SpanKind;
 import io.opentelemetry.api.trace.TraceId;
 import io.opentelemetry.context.Context;
 import io.opentelemetry.contrib.awsxray.GetSamplingRulesResponse.SamplingRule;
+import io.opentelemetry.contrib.awsxray.GetSamplingTargetsRequest.SamplingStatisticsDocument;
 import io.opentelemetry.contrib.awsxray.GetSamplingTargetsResponse.SamplingTargetDocument;
 import io.opentelemetry.sdk.resources.Resource;
 import io.opentelemetry.sdk.testing.time.TestClock;
 import io.opentelemetry.sdk.trace.samplers.Sampler;
 import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
 import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+import io.opentelemetry.semconv.trace.attributes.SemanticAttributes;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.Arrays;
@@ -33,6 +35,52 @@ import org.junit.jupiter.api.Test;
 
 class XrayRulesSamplerTest {
 
+  private static SamplingRule createRule(
+      String name, int priority, String urlPath, double fixedRate) {
+    return SamplingRule.create(
+        Collections.emptyMap(),
+        fixedRate,
+        "*",
+        "*",
+        priority,
+        1,
+        "*",
+        null,
+        name,
+        "*",
+        "*",
+        urlPath,
+        1);
+  }
+
+  private static void sample(XrayRulesSampler sampler, String urlPath) {
+    sampler.shouldSample(
+        Context.root(),
+        TraceId.fromLongs(1, 2),
+        "span",
+        SpanKind.SERVER,
+        Attributes.of(SemanticAttributes.HTTP_TARGET, urlPath),
+        Collections.emptyList());
+  }
+
+  private static Map<String, Long> getRequestCounts(XrayRulesSampler sampler) {
+    return sampler.snapshot(new Date()).stream()
+        .collect(
+            Collectors.toMap(
+                SamplingStatisticsDocument::getRuleName,
+                SamplingStatisticsDocument::getRequestCount));
+  }
+
+  private static SamplingResult doSample(Sampler sampler, String name) {
+    return sampler.shouldSample(
+        Context.current(),
+        TraceId.fromLongs(1, 2),
+        name,
+        SpanKind.CLIENT,
+        Attributes.of(AttributeKey.stringKey("test"), name),
+        Collections.emptyList());
+  }
+
   @Test
   void updateTargets() {
     SamplingRule rule1 =
@@ -138,12 +186,10 @@ class XrayRulesSamplerTest {
     Map<String, SamplingTargetDocument> targets = new HashMap<>();
     targets.put("cat-rule", catTarget);
     targets.put("bat-rule", batTarget);
-    sampler =
-        sampler.withTargets(
-            targets,
-            Stream.of("cat-rule", "bat-rule", "dog-rule", "default-rule")
-                .collect(Collectors.toSet()),
-            Date.from(now));
+    sampler.updateTargets(
+        targets,
+        Stream.of("cat-rule", "bat-rule", "dog-rule", "default-rule").collect(Collectors.toSet()),
+        Date.from(now));
     assertThat(doSample(sampler, "dog-service"))
         .isEqualTo(SamplingResult.create(SamplingDecision.RECORD_AND_SAMPLE));
     assertThat(doSample(sampler, "dog-service"))
@@ -169,13 +215,97 @@ class XrayRulesSamplerTest {
     assertThat(sampler.snapshot(Date.from(now))).hasSize(4);
   }
 
-  private static SamplingResult doSample(Sampler sampler, String name) {
-    return sampler.shouldSample(
-        Context.current(),
-        TraceId.fromLongs(1, 2),
-        name,
-        SpanKind.CLIENT,
-        Attributes.of(AttributeKey.stringKey("test"), name),
-        Collections.emptyList());
+  @Test
+  void withRulesKeepsStateOfUnchangedRules() {
+    TestClock clock = TestClock.create();
+    XrayRulesSampler sampler =
+        new XrayRulesSampler(
+            "client",
+            Resource.getDefault(),
+            clock,
+            Sampler.alwaysOn(),
+            Arrays.asList(
+                createRule("api", 1, "/api", 0.5),
+                createRule("static", 2, "/static", 0.5),
+                createRule("default", 3, "*", 0.05)));
+    sample(sampler, "/api");
+    sample(sampler, "/static");
+    sample(sampler, "/static");
+    sample(sampler, "/other");
+
+    XrayRulesSampler updatedSampler =
+        sampler.withRules(
+            Arrays.asList(
+                createRule("new", 0, "/new", 0.5),
+                createRule("api", 1, "/api", 0.5),
+                createRule("static", 2, "/static", 0.1),
+                createRule("default", 3, "*", 0.05)));
+    sample(updatedSampler, "/api");
+    sample(updatedSampler, "/new");
+
+    Map<String, Long> requestCounts = getRequestCounts(updatedSampler);
+    // unchanged rules keep their statistics, modified and new rules start from scratch
+    assertThat(requestCounts)
+        .containsEntry("api", 2L)
+        .containsEntry("default", 1L)
+        .containsEntry("static", 0L)
+        .containsEntry("new", 1L);
+  }
+
+  @Test
+  void withRulesReplacesMatchCache() {
+    TestClock clock = TestClock.create();
+    XrayRulesSampler sampler =
+        new XrayRulesSampler(
+            "client",
+            Resource.getDefault(),
+            clock,
+            Sampler.alwaysOn(),
+            /* shardedRateLimiter= */ false,
+            /* matchCacheSize= */ 16,
+            Arrays.asList(createRule("api", 2, "/api", 0.5), createRule("default", 3, "*", 0.05)));
+    sample(sampler, "/api");
+    sample(sampler, "/api");
+    sample(sampler, "/other");
+    assertThat(getRequestCounts(sampler)).containsEntry("api", 2L).containsEntry("default", 1L);
+
+    XrayRulesSampler updatedSampler =
+        sampler.withRules(
+            Arrays.asList(
+                createRule("api", 2, "/api", 0.5),
+                createRule("default", 3, "*", 0.05),
+                createRule("all", 1, "*", 0.5)));
+    sample(updatedSampler, "/api");
+    sample(updatedSampler, "/other");
+
+    assertThat(getRequestCounts(updatedSampler))
+        .containsEntry("all", 2L)
+        .containsEntry("api", 0L)
+        .containsEntry("default", 0L);
+  }
+
+  @Test
+  void withRulesKeepsPriorityOrder() {
+    TestClock clock = TestClock.create();
+    XrayRulesSampler sampler =
+        new XrayRulesSampler(
+            "client",
+            Resource.getDefault(),
+            clock,
+            Sampler.alwaysOn(),
+            Arrays.asList(createRule("api", 2, "/api", 0.5), createRule("default", 3, "*", 0.05)));
+
+    XrayRulesSampler updatedSampler =
+        sampler.withRules(
+            Arrays.asList(
+                createRule("default", 3, "*", 0.05),
+                createRule("api", 2, "/api", 0.5),
+                createRule("all", 1, "*", 0.5)));
+    sample(updatedSampler, "/api");
+
+    assertThat(getRequestCounts(updatedSampler))
+        .containsEntry("all", 1L)
+        .containsEntry("api", 0L)
+        .containsEntry("default", 0L);
   }
 }
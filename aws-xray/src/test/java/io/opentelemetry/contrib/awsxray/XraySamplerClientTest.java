@@ -18,14 +18,21 @@ import com.linecorp.armeria.common.HttpStatus;
 import com.linecorp.armeria.common.MediaType;
 import com.linecorp.armeria.testing.junit5.server.mock.MockWebServerExtension;
 import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.skyscreamer.jsonassert.JSONAssert;
 
 class XraySamplerClientTest {
@@ -92,6 +99,20 @@ class XraySamplerClientTest {
             });
   }
 
+  @Test
+  void clientsShareConnections() throws Exception {
+    enqueueResource("/get-sampling-rules-response.json");
+    enqueueResource("/get-sampling-rules-response.json");
+
+    client.getSamplingRules(GetSamplingRulesRequest.create(null));
+    new XraySamplerClient(server.httpUri().toString())
+        .getSamplingRules(GetSamplingRulesRequest.create(null));
+
+    InetSocketAddress firstAddress = server.takeRequest().context().remoteAddress();
+    InetSocketAddress secondAddress = server.takeRequest().context().remoteAddress();
+    assertThat(secondAddress).isEqualTo(firstAddress);
+  }
+
   @Test
   void getSamplingRules_malformed() {
     server.enqueue(HttpResponse.of(HttpStatus.OK, MediaType.JSON, "notjson"));
@@ -178,6 +199,125 @@ class XraySamplerClientTest {
         .hasMessage("Failed to deserialize response.");
   }
 
+  @Test
+  void getSamplingRulesAsync() throws Exception {
+    enqueueResource("/get-sampling-rules-response.json");
+    GetSamplingRulesResponse response =
+        client.getSamplingRulesAsync(GetSamplingRulesRequest.create("token")).get();
+
+    assertThat(server.takeRequest().request().contentUtf8()).isEqualTo("{\"NextToken\":\"token\"}");
+    assertThat(response.getSamplingRules())
+        .extracting(rule -> rule.getRule().getRuleName())
+        .containsExactly("Test", "Default");
+  }
+
+  @Test
+  void getSamplingRulesAsync_coalesced() throws Exception {
+    server.enqueue(
+        HttpResponse.delayed(
+            HttpResponse.of(
+                HttpStatus.OK,
+                MediaType.JSON_UTF_8,
+                ByteStreams.toByteArray(
+                    requireNonNull(
+                        XraySamplerClientTest.class.getResourceAsStream(
+                            "/get-sampling-rules-response.json")))),
+            Duration.ofMillis(500)));
+    XraySamplerClient client1 =
+        new XraySamplerClient(
+            server.httpUri().toString(),
+            XraySamplerClient.sharedHttpClient(),
+            /* coalesceRulesRequests= */ true);
+    XraySamplerClient client2 =
+        new XraySamplerClient(
+            server.httpUri().toString(),
+            XraySamplerClient.sharedHttpClient(),
+            /* coalesceRulesRequests= */ true);
+
+    CompletableFuture<GetSamplingRulesResponse> response1 =
+        client1.getSamplingRulesAsync(GetSamplingRulesRequest.create(null));
+    CompletableFuture<GetSamplingRulesResponse> response2 =
+        client2.getSamplingRulesAsync(GetSamplingRulesRequest.create(null));
+
+    assertThat(response1.get()).isSameAs(response2.get());
+    assertThat(server.takeRequest()).isNotNull();
+    assertThat(server.takeRequest(100, TimeUnit.MILLISECONDS)).isNull();
+  }
+
+  @Test
+  void getSamplingTargetsAsync_malformed() {
+    server.enqueue(HttpResponse.of(HttpStatus.OK, MediaType.JSON, "notjson"));
+    assertThat(
+            client.getSamplingTargetsAsync(
+                GetSamplingTargetsRequest.create(Collections.emptyList())))
+        .failsWithin(Duration.ofSeconds(10))
+        .withThrowableOfType(ExecutionException.class)
+        .withCauseInstanceOf(UncheckedIOException.class)
+        .withMessageContaining("Failed to deserialize response.");
+  }
+
+  @Test
+  void getSamplingRulesAsync_malformedEndpoint() {
+    XraySamplerClient client =
+        new XraySamplerClient(
+            "not a url", XraySamplerClient.sharedHttpClient(), /* coalesceRulesRequests= */ true);
+
+    CompletableFuture<GetSamplingRulesResponse> response1 =
+        client.getSamplingRulesAsync(GetSamplingRulesRequest.create(null));
+    CompletableFuture<GetSamplingRulesResponse> response2 =
+        client.getSamplingRulesAsync(GetSamplingRulesRequest.create(null));
+
+    // The failed request is not kept in flight, every call fails on its own.
+    assertThat(response2).isNotSameAs(response1);
+    assertThat(response1)
+        .failsWithin(Duration.ofSeconds(10))
+        .withThrowableOfType(ExecutionException.class)
+        .withCauseInstanceOf(IllegalArgumentException.class);
+    assertThat(response2)
+        .failsWithin(Duration.ofSeconds(10))
+        .withThrowableOfType(ExecutionException.class)
+        .withCauseInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void getSamplingRules_errorResponse() {
+    server.enqueue(HttpResponse.of(HttpStatus.INTERNAL_SERVER_ERROR));
+    assertThatThrownBy(() -> client.getSamplingRules(GetSamplingRulesRequest.create("token")))
+        .isInstanceOf(UncheckedIOException.class)
+        .hasMessage("Failed to execute sampling request.");
+  }
+
+  @ParameterizedTest
+  @ValueSource(
+      strings = {
+        "1624000095",
+        "1624000095.1",
+        "1624000095.123",
+        "1624000095.1239",
+        "1624000095.999999999",
+        "0",
+        "0.001",
+        "-1.5",
+        "-0.0001",
+        "999999999999999.999"
+      })
+  void parseEpochMillis(String date) {
+    assertThat(
+            XraySamplerClient.FloatDateDeserializer.parseEpochMillis(
+                date.toCharArray(), 0, date.length()))
+        .isEqualTo(
+            XraySamplerClient.FloatDateDeserializer.parseServiceSpecificDate(date).getTime());
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"", "-", ".5", "1.", "1e9", "1.5E3", "+1", "1 ", "1624000095.12a"})
+  void parseEpochMillis_unsupported(String date) {
+    assertThat(
+            XraySamplerClient.FloatDateDeserializer.parseEpochMillis(
+                date.toCharArray(), 0, date.length()))
+        .isEqualTo(XraySamplerClient.FloatDateDeserializer.INVALID_EPOCH_MILLIS);
+  }
+
   private static void enqueueResource(String resourcePath) throws Exception {
     server.enqueue(
         HttpResponse.of(
@@ -13,6 +13,7 @@ repositories {
 dependencies {
   // When updating, update above in plugins too
   implementation("com.diffplug.spotless:spotless-plugin-gradle:6.16.0")
+  implementation("me.champeau.jmh:jmh-gradle-plugin:0.7.0")
   implementation("net.ltgt.gradle:gradle-errorprone-plugin:3.0.1")
   implementation("net.ltgt.gradle:gradle-nullaway-plugin:1.5.0")
 }
@@ -0,0 +1,21 @@
+plugins {
+  id("me.champeau.jmh")
+}
+
+dependencies {
+  jmh("org.openjdk.jmh:jmh-core")
+  jmh("org.openjdk.jmh:jmh-generator-bytecode")
+}
+
+// invoke jmh on a single benchmark class like so:
+//   ./gradlew -PjmhIncludeSingleClass=ConsistentSamplerBenchmark :consistent-sampling:jmh
+jmh {
+  failOnError.set(true)
+  resultFormat.set("JSON")
+  // report allocation rates and GC counts alongside the timings
+  profilers.add("gc")
+  val jmhIncludeSingleClass: String? by project
+  if (jmhIncludeSingleClass != null) {
+    includes.add(jmhIncludeSingleClass as String)
+  }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.sampler.consistent;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ConsistentReservoirSamplingSpanProcessorBenchmark {
+
+  private static final int NUMBER_OF_SPANS = 1024;
+
+  private static final class NoopSpanExporter implements SpanExporter {
+
+    @Override
+    public CompletableResultCode export(Collection<SpanData> spans) {
+      return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+      return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+      return CompletableResultCode.ofSuccess();
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class ProcessorState {
+
+    @Param({"100", "10000"})
+    public int reservoirSize;
+
+    private SpanProcessor processor;
+    private ReadableSpan[] spans;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      processor =
+          ConsistentReservoirSamplingSpanProcessor.create(
+              new NoopSpanExporter(),
+              reservoirSize,
+              TimeUnit.MILLISECONDS.toNanos(100),
+              TimeUnit.SECONDS.toNanos(30));
+
+      // the spans are created by a separate tracer provider, such that they are only passed to the
+      // processor under test by the benchmark methods
+      SdkTracerProvider tracerProvider =
+          SdkTracerProvider.builder().setSampler(ConsistentSampler.alwaysOn()).build();
+      Tracer tracer = tracerProvider.get("benchmark");
+      spans = new ReadableSpan[NUMBER_OF_SPANS];
+      for (int i = 0; i < NUMBER_OF_SPANS; ++i) {
+        Span span = tracer.spanBuilder("span").startSpan();
+        span.end();
+        spans[i] = (ReadableSpan) span;
+      }
+      tracerProvider.shutdown().join(10, TimeUnit.SECONDS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      processor.shutdown().join(10, TimeUnit.SECONDS);
+    }
+  }
+
+  @State(Scope.Thread)
+  public static class ThreadState {
+    private int spanIndex;
+  }
+
+  private static void onEnd(ProcessorState processorState, ThreadState threadState) {
+    int spanIndex = threadState.spanIndex;
+    threadState.spanIndex = (spanIndex + 1) & (NUMBER_OF_SPANS - 1);
+    processorState.processor.onEnd(processorState.spans[spanIndex]);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void onEnd01Thread(ProcessorState processorState, ThreadState threadState) {
+    onEnd(processorState, threadState);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public void onEnd08Threads(ProcessorState processorState, ThreadState threadState) {
+    onEnd(processorState, threadState);
+  }
+
+  @Benchmark
+  @Threads(32)
+  public void onEnd32Threads(ProcessorState processorState, ThreadState threadState) {
+    onEnd(processorState, threadState);
+  }
+}
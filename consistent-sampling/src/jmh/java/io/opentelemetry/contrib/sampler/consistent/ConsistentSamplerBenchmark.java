@@ -0,0 +1,96 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.sampler.consistent;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConsistentSamplerBenchmark {
+
+  private static final String TRACE_ID = "0123456789abcdef0123456789abcdef";
+  private static final String SPAN_ID = "0123456789abcdef";
+  private static final String SPAN_NAME = "span";
+  private static final Attributes ATTRIBUTES = Attributes.empty();
+  private static final List<LinkData> LINKS = Collections.emptyList();
+
+  private final ConsistentSampler sampler =
+      ConsistentSampler.parentBased(ConsistentSampler.probabilityBased(0.5));
+  private final ConsistentSampler traceIdBasedSampler =
+      ConsistentSampler.parentBased(
+          ConsistentSampler.probabilityBased(0.5, RValueGenerator.traceIdBased()));
+  private final Context rootContext = Context.root();
+  private final Context parentContextWithOtelTraceState =
+      createParentContext(
+          TraceState.builder().put(OtelTraceState.TRACE_STATE_KEY, "p:1;r:5").build());
+  private final Context parentContextWithOtherTraceStateEntries =
+      createParentContext(
+          TraceState.builder()
+              .put("vendor", "value")
+              .put(OtelTraceState.TRACE_STATE_KEY, "p:1;r:5;x:3")
+              .build());
+
+  private static Context createParentContext(TraceState traceState) {
+    return Span.wrap(SpanContext.create(TRACE_ID, SPAN_ID, TraceFlags.getSampled(), traceState))
+        .storeInContext(Context.root());
+  }
+
+  private TraceState shouldSample(Context parentContext) {
+    return shouldSample(sampler, parentContext);
+  }
+
+  private static TraceState shouldSample(ConsistentSampler sampler, Context parentContext) {
+    SamplingResult samplingResult =
+        sampler.shouldSample(
+            parentContext, TRACE_ID, SPAN_NAME, SpanKind.SERVER, ATTRIBUTES, LINKS);
+    return samplingResult.getUpdatedTraceState(
+        Span.fromContext(parentContext).getSpanContext().getTraceState());
+  }
+
+  @Benchmark
+  public TraceState shouldSampleRoot() {
+    return shouldSample(rootContext);
+  }
+
+  @Benchmark
+  public TraceState shouldSampleRootTraceIdBased() {
+    return shouldSample(traceIdBasedSampler, rootContext);
+  }
+
+  @Benchmark
+  public TraceState shouldSampleWithParentOtelTraceState() {
+    return shouldSample(parentContextWithOtelTraceState);
+  }
+
+  @Benchmark
+  public TraceState shouldSampleWithParentOtherTraceStateEntries() {
+    return shouldSample(parentContextWithOtherTraceStateEntries);
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.sampler.consistent;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OtelTraceStateBenchmark {
+
+  @Param({"p:1;r:5", "p:20;r:62", "p:8;r:12;x:abc;y:def"})
+  public String traceStateString;
+
+  private int pval;
+  private int rval;
+
+  @Setup
+  public void setup() {
+    OtelTraceState otelTraceState = OtelTraceState.parse(traceStateString);
+    pval = otelTraceState.getP();
+    rval = otelTraceState.getR();
+  }
+
+  @Benchmark
+  public OtelTraceState parse() {
+    return OtelTraceState.parse(traceStateString);
+  }
+
+  @Benchmark
+  public int parsePacked() {
+    return OtelTraceState.parsePacked(traceStateString);
+  }
+
+  @Benchmark
+  public String parseAndSerialize() {
+    return OtelTraceState.parse(traceStateString).serialize();
+  }
+
+  @Benchmark
+  public String serializePAndR() {
+    return OtelTraceState.serialize(pval, rval);
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.sampler.consistent;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RandomGeneratorBenchmark {
+
+  private final RandomGenerator randomGenerator = RandomGenerator.getDefault();
+
+  @State(Scope.Benchmark)
+  public static class ProbabilityState {
+    @Param({"0.001", "0.5", "0.999"})
+    public double probability;
+  }
+
+  @Benchmark
+  public boolean nextBoolean(ProbabilityState probabilityState) {
+    return randomGenerator.nextBoolean(probabilityState.probability);
+  }
+
+  @Benchmark
+  public int numberOfLeadingZerosOfRandomLong() {
+    return randomGenerator.numberOfLeadingZerosOfRandomLong();
+  }
+
+  // r-values, which are numbers of leading zeros of random longs, for a batch of 64 spans
+  private final int[] values = new int[64];
+
+  @Benchmark
+  public int[] fillWithNumberOfLeadingZerosOfRandomLongs() {
+    randomGenerator.fillWithNumberOfLeadingZerosOfRandomLongs(values);
+    return values;
+  }
+
+  // a small reservoir exporting 64 candidate spans, 16 of which get their p-value incremented
+  @Benchmark
+  public BitSet generateRandomBitSetSmall() {
+    return randomGenerator.generateRandomBitSet(64, 16);
+  }
+
+  // a large reservoir exporting 4096 candidate spans, 1024 of which get their p-value incremented
+  @Benchmark
+  public BitSet generateRandomBitSetLarge() {
+    return randomGenerator.generateRandomBitSet(4096, 1024);
+  }
+}
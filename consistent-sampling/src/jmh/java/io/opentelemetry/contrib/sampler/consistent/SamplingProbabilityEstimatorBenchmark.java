@@ -0,0 +1,106 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.sampler.consistent;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link SamplingProbabilityEstimator} with the single shared state previously used by
+ * {@link ConsistentRateLimitingSampler}, which is updated by every span.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SamplingProbabilityEstimatorBenchmark {
+
+  private static final double TARGET_SPANS_PER_SECOND_LIMIT = 1000;
+  private static final double ADAPTATION_TIME_SECONDS = 5;
+
+  private static final class SharedStateEstimator {
+
+    private static final class EstimatorState {
+      private final double effectiveWindowCount;
+      private final double effectiveWindowNanos;
+      private final long lastNanoTime;
+
+      private EstimatorState(
+          double effectiveWindowCount, double effectiveWindowNanos, long lastNanoTime) {
+        this.effectiveWindowCount = effectiveWindowCount;
+        this.effectiveWindowNanos = effectiveWindowNanos;
+        this.lastNanoTime = lastNanoTime;
+      }
+    }
+
+    private final double inverseAdaptationTimeNanos = 1e-9 / ADAPTATION_TIME_SECONDS;
+    private final double targetSpansPerNanosecondLimit = 1e-9 * TARGET_SPANS_PER_SECOND_LIMIT;
+    private final AtomicReference<EstimatorState> state =
+        new AtomicReference<>(new EstimatorState(0, 0, System.nanoTime()));
+
+    private EstimatorState updateState(EstimatorState oldState, long currentNanoTime) {
+      if (currentNanoTime <= oldState.lastNanoTime) {
+        return new EstimatorState(
+            oldState.effectiveWindowCount + 1,
+            oldState.effectiveWindowNanos,
+            oldState.lastNanoTime);
+      }
+      long nanoTimeDelta = currentNanoTime - oldState.lastNanoTime;
+      double decayFactor = Math.exp(-nanoTimeDelta * inverseAdaptationTimeNanos);
+      return new EstimatorState(
+          oldState.effectiveWindowCount * decayFactor + 1,
+          oldState.effectiveWindowNanos * decayFactor + nanoTimeDelta,
+          currentNanoTime);
+    }
+
+    private double estimate(long currentNanoTime) {
+      EstimatorState currentState = state.updateAndGet(s -> updateState(s, currentNanoTime));
+      return (currentState.effectiveWindowNanos * targetSpansPerNanosecondLimit)
+          / currentState.effectiveWindowCount;
+    }
+  }
+
+  private final SamplingProbabilityEstimator estimator =
+      new SamplingProbabilityEstimator(
+          TARGET_SPANS_PER_SECOND_LIMIT, ADAPTATION_TIME_SECONDS, System.nanoTime());
+  private final SharedStateEstimator sharedStateEstimator = new SharedStateEstimator();
+
+  @Benchmark
+  @Threads(1)
+  public double estimate() {
+    return estimator.estimate(System.nanoTime(), 1.);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public double estimateContended() {
+    return estimator.estimate(System.nanoTime(), 1.);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public double estimateSharedState() {
+    return sharedStateEstimator.estimate(System.nanoTime());
+  }
+
+  @Benchmark
+  @Threads(8)
+  public double estimateSharedStateContended() {
+    return sharedStateEstimator.estimate(System.nanoTime());
+  }
+}
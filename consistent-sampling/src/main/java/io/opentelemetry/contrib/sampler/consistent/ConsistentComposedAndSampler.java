@@ -7,6 +7,7 @@ package io.opentelemetry.contrib.sampler.consistent;
 
 import static java.util.Objects.requireNonNull;
 
+import io.opentelemetry.api.common.Attributes;
 import javax.annotation.concurrent.Immutable;
 
 /**
@@ -37,8 +38,17 @@ final class ConsistentComposedAndSampler extends ConsistentSampler {
 
   @Override
   protected int getP(int parentP, boolean isRoot) {
-    int p1 = sampler1.getP(parentP, isRoot);
-    int p2 = sampler2.getP(parentP, isRoot);
+    return combineP(sampler1.getP(parentP, isRoot), sampler2.getP(parentP, isRoot));
+  }
+
+  @Override
+  protected int getP(int parentP, boolean isRoot, String spanName, Attributes attributes) {
+    return combineP(
+        sampler1.getP(parentP, isRoot, spanName, attributes),
+        sampler2.getP(parentP, isRoot, spanName, attributes));
+  }
+
+  private static int combineP(int p1, int p2) {
     if (OtelTraceState.isValidP(p1) && OtelTraceState.isValidP(p2)) {
       return Math.max(p1, p2);
     } else {
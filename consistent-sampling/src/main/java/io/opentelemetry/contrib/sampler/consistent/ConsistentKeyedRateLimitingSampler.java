@@ -0,0 +1,215 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.sampler.consistent;
+
+import static java.util.Objects.requireNonNull;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.LongSupplier;
+
+/**
+ * This consistent {@link Sampler} limits the rate of sampled spans individually for each key, where
+ * the key is derived from the span name and the span attributes, and additionally limits the total
+ * rate of sampled spans.
+ *
+ * <p>For each key, the rate of spans is estimated using the same exponential smoothing as in {@link
+ * ConsistentRateLimitingSampler}, which gives a sampling probability that limits the rate of
+ * sampled spans with that key to the per-key limit. Hence, a key with a high span rate only
+ * consumes its own budget and cannot starve other keys.
+ *
+ * <p>The global limit is enforced by another estimator which counts every span weighted by its
+ * per-key sampling probability. It therefore estimates the rate of spans that would be sampled if
+ * only the per-key limits were applied. If this rate exceeds the global limit, the sampling
+ * probabilities of all keys are reduced by the same factor, such that every key keeps its share of
+ * the global budget.
+ *
+ * <p>At most {@code maxNumberOfKeys} keys are tracked. If a new key is encountered while this
+ * number is reached, a key that has not been used recently is evicted. The key is chosen by the
+ * CLOCK approximation of least recently used eviction: the tracked keys form a ring, and a key that
+ * was used since the clock hand last passed it gets a second chance. As every second chance is paid
+ * for by a span, eviction takes amortized constant time, and the lookup of tracked keys stays
+ * lock-free. A new key starts as if its previous span had occurred {@code 1 /
+ * targetSpansPerSecondLimitPerKey} seconds ago (at most one hour ago), so that its first span is
+ * sampled with probability 1.
+ */
+final class ConsistentKeyedRateLimitingSampler extends ConsistentSampler {
+
+  /** The key of spans for which no key could be derived. */
+  static final Object MISSING_KEY = new Object();
+
+  private static final double MAX_INITIAL_WAITING_TIME_SECONDS = 3600;
+
+  private final String description;
+  private final BiFunction<String, Attributes, Object> keyFunction;
+  private final double targetSpansPerSecondLimitPerKey;
+  private final double adaptationTimeSeconds;
+  private final int maxNumberOfKeys;
+  private final long initialWaitingTimeNanos;
+  private final LongSupplier nanoTimeSupplier;
+  private final Map<Object, SamplingProbabilityEstimator> keyEstimators;
+  private final Object keyEstimatorsLock = new Object();
+  // guarded by keyEstimatorsLock
+  private final List<ClockEntry> clock = new ArrayList<>();
+  // guarded by keyEstimatorsLock
+  private int clockHand;
+  private final SamplingProbabilityEstimator globalEstimator;
+  private final RandomGenerator randomGenerator;
+
+  /**
+   * Constructor.
+   *
+   * @param keyFunction the function deriving the key from the span name and the span attributes
+   * @param keyDescription a description of the key function
+   * @param targetSpansPerSecondLimitPerKey the desired spans per second limit for each key
+   * @param targetSpansPerSecondLimit the desired spans per second limit for all keys together
+   * @param adaptationTimeSeconds the typical time to adapt to a new load (time constant used for
+   *     exponential smoothing)
+   * @param maxNumberOfKeys the maximum number of tracked keys
+   * @param rValueGenerator the function to use for generating the r-value
+   * @param randomGenerator a random generator
+   * @param nanoTimeSupplier a supplier for the current nano time
+   */
+  ConsistentKeyedRateLimitingSampler(
+      BiFunction<String, Attributes, Object> keyFunction,
+      String keyDescription,
+      double targetSpansPerSecondLimitPerKey,
+      double targetSpansPerSecondLimit,
+      double adaptationTimeSeconds,
+      int maxNumberOfKeys,
+      RValueGenerator rValueGenerator,
+      RandomGenerator randomGenerator,
+      LongSupplier nanoTimeSupplier) {
+    super(rValueGenerator);
+
+    if (targetSpansPerSecondLimitPerKey < 0.0) {
+      throw new IllegalArgumentException(
+          "Limit for sampled spans per second and key must be nonnegative!");
+    }
+    if (targetSpansPerSecondLimit < 0.0) {
+      throw new IllegalArgumentException("Limit for sampled spans per second must be nonnegative!");
+    }
+    if (adaptationTimeSeconds < 0.0) {
+      throw new IllegalArgumentException("Adaptation rate must be nonnegative!");
+    }
+    if (maxNumberOfKeys <= 0) {
+      throw new IllegalArgumentException("Maximum number of keys must be positive!");
+    }
+    this.description =
+        String.format(
+            "ConsistentKeyedRateLimitingSampler{%s, %.6f, %.6f, %.6f, %d}",
+            keyDescription,
+            targetSpansPerSecondLimitPerKey,
+            targetSpansPerSecondLimit,
+            adaptationTimeSeconds,
+            maxNumberOfKeys);
+    this.keyFunction = requireNonNull(keyFunction);
+    this.targetSpansPerSecondLimitPerKey = targetSpansPerSecondLimitPerKey;
+    this.adaptationTimeSeconds = adaptationTimeSeconds;
+    this.maxNumberOfKeys = maxNumberOfKeys;
+    this.initialWaitingTimeNanos =
+        (long)
+            (1e9
+                * Math.min(1. / targetSpansPerSecondLimitPerKey, MAX_INITIAL_WAITING_TIME_SECONDS));
+    this.nanoTimeSupplier = requireNonNull(nanoTimeSupplier);
+    this.keyEstimators = new ConcurrentHashMap<>();
+    this.globalEstimator =
+        new SamplingProbabilityEstimator(
+            targetSpansPerSecondLimit, adaptationTimeSeconds, nanoTimeSupplier.getAsLong());
+    this.randomGenerator = randomGenerator;
+  }
+
+  /** A tracked key together with the last use observed when the clock hand passed it. */
+  private static final class ClockEntry {
+    private Object key;
+    private SamplingProbabilityEstimator keyEstimator;
+    private long referenceNanoTime;
+
+    private ClockEntry(Object key, SamplingProbabilityEstimator keyEstimator, long nanoTime) {
+      this.key = key;
+      this.keyEstimator = keyEstimator;
+      this.referenceNanoTime = nanoTime;
+    }
+  }
+
+  private SamplingProbabilityEstimator getKeyEstimator(Object key, long nanoTime) {
+    SamplingProbabilityEstimator keyEstimator = keyEstimators.get(key);
+    if (keyEstimator != null) {
+      return keyEstimator;
+    }
+    synchronized (keyEstimatorsLock) {
+      keyEstimator = keyEstimators.get(key);
+      if (keyEstimator == null) {
+        keyEstimator =
+            new SamplingProbabilityEstimator(
+                targetSpansPerSecondLimitPerKey,
+                adaptationTimeSeconds,
+                nanoTime - initialWaitingTimeNanos);
+        // the estimator is used right away, which sets its last nano time to the given one
+        if (clock.size() < maxNumberOfKeys) {
+          clock.add(new ClockEntry(key, keyEstimator, nanoTime));
+        } else {
+          replaceNotRecentlyUsedKey(key, keyEstimator, nanoTime);
+        }
+        keyEstimators.put(key, keyEstimator);
+      }
+      return keyEstimator;
+    }
+  }
+
+  private void replaceNotRecentlyUsedKey(
+      Object key, SamplingProbabilityEstimator keyEstimator, long nanoTime) {
+    // after one full revolution every key has had its second chance
+    for (int i = 0; i < clock.size(); ++i) {
+      ClockEntry entry = clock.get(clockHand);
+      long lastNanoTime = entry.keyEstimator.getLastNanoTime();
+      if (lastNanoTime == entry.referenceNanoTime) {
+        break;
+      }
+      entry.referenceNanoTime = lastNanoTime;
+      clockHand = (clockHand + 1) % clock.size();
+    }
+    ClockEntry entry = clock.get(clockHand);
+    keyEstimators.remove(entry.key);
+    entry.key = key;
+    entry.keyEstimator = keyEstimator;
+    entry.referenceNanoTime = nanoTime;
+    clockHand = (clockHand + 1) % clock.size();
+  }
+
+  // visible for testing
+  int getNumberOfKeys() {
+    return keyEstimators.size();
+  }
+
+  @Override
+  protected int getP(int parentP, boolean isRoot) {
+    return getP(parentP, isRoot, "", Attributes.empty());
+  }
+
+  @Override
+  protected int getP(int parentP, boolean isRoot, String spanName, Attributes attributes) {
+    long nanoTime = nanoTimeSupplier.getAsLong();
+    SamplingProbabilityEstimator keyEstimator =
+        getKeyEstimator(keyFunction.apply(spanName, attributes), nanoTime);
+
+    double keySamplingProbability = Math.min(1., keyEstimator.estimate(nanoTime, 1.));
+    double globalSamplingProbability =
+        Math.min(1., globalEstimator.estimate(nanoTime, keySamplingProbability));
+
+    return getRandomizedP(keySamplingProbability * globalSamplingProbability, randomGenerator);
+  }
+
+  @Override
+  public String getDescription() {
+    return description;
+  }
+}
@@ -7,6 +7,7 @@ package io.opentelemetry.contrib.sampler.consistent;
 
 import static java.util.Objects.requireNonNull;
 
+import io.opentelemetry.api.common.Attributes;
 import javax.annotation.concurrent.Immutable;
 
 /**
@@ -44,6 +45,15 @@ final class ConsistentParentBasedSampler extends ConsistentSampler {
     }
   }
 
+  @Override
+  protected int getP(int parentP, boolean isRoot, String spanName, Attributes attributes) {
+    if (isRoot) {
+      return rootSampler.getP(parentP, isRoot, spanName, attributes);
+    } else {
+      return parentP;
+    }
+  }
+
   @Override
   public String getDescription() {
     return description;
@@ -8,9 +8,7 @@ package io.opentelemetry.contrib.sampler.consistent;
 import static java.util.Objects.requireNonNull;
 
 import io.opentelemetry.sdk.trace.samplers.Sampler;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.LongSupplier;
-import javax.annotation.concurrent.Immutable;
 
 /**
  * This consistent {@link Sampler} adjusts the sampling probability dynamically to limit the rate of
@@ -64,27 +62,14 @@ import javax.annotation.concurrent.Immutable;
  *   <li>{@code decayFactor} corresponds to {@code b(n)}
  *   <li>{@code adaptationTimeSeconds} corresponds to {@code -1 / ln(1 - a)}
  * </ul>
+ *
+ * <p>The smoothing is implemented by {@link SamplingProbabilityEstimator}.
  */
 final class ConsistentRateLimitingSampler extends ConsistentSampler {
 
-  @Immutable
-  private static final class State {
-    private final double effectiveWindowCount;
-    private final double effectiveWindowNanos;
-    private final long lastNanoTime;
-
-    public State(double effectiveWindowCount, double effectiveWindowNanos, long lastNanoTime) {
-      this.effectiveWindowCount = effectiveWindowCount;
-      this.effectiveWindowNanos = effectiveWindowNanos;
-      this.lastNanoTime = lastNanoTime;
-    }
-  }
-
   private final String description;
   private final LongSupplier nanoTimeSupplier;
-  private final double inverseAdaptationTimeNanos;
-  private final double targetSpansPerNanosecondLimit;
-  private final AtomicReference<State> state;
+  private final SamplingProbabilityEstimator samplingProbabilityEstimator;
   private final RandomGenerator randomGenerator;
 
   /**
@@ -117,57 +102,18 @@ final class ConsistentRateLimitingSampler extends ConsistentSampler {
             targetSpansPerSecondLimit, adaptationTimeSeconds);
     this.nanoTimeSupplier = requireNonNull(nanoTimeSupplier);
 
-    this.inverseAdaptationTimeNanos = 1e-9 / adaptationTimeSeconds;
-    this.targetSpansPerNanosecondLimit = 1e-9 * targetSpansPerSecondLimit;
-
-    this.state = new AtomicReference<>(new State(0, 0, nanoTimeSupplier.getAsLong()));
+    this.samplingProbabilityEstimator =
+        new SamplingProbabilityEstimator(
+            targetSpansPerSecondLimit, adaptationTimeSeconds, nanoTimeSupplier.getAsLong());
 
     this.randomGenerator = randomGenerator;
   }
 
-  private State updateState(State oldState, long currentNanoTime) {
-    if (currentNanoTime <= oldState.lastNanoTime) {
-      return new State(
-          oldState.effectiveWindowCount + 1, oldState.effectiveWindowNanos, oldState.lastNanoTime);
-    }
-    long nanoTimeDelta = currentNanoTime - oldState.lastNanoTime;
-    double decayFactor = Math.exp(-nanoTimeDelta * inverseAdaptationTimeNanos);
-    double currentEffectiveWindowCount = oldState.effectiveWindowCount * decayFactor + 1;
-    double currentEffectiveWindowNanos =
-        oldState.effectiveWindowNanos * decayFactor + nanoTimeDelta;
-    return new State(currentEffectiveWindowCount, currentEffectiveWindowNanos, currentNanoTime);
-  }
-
   @Override
   protected int getP(int parentP, boolean isRoot) {
-    long currentNanoTime = nanoTimeSupplier.getAsLong();
-    State currentState = state.updateAndGet(s -> updateState(s, currentNanoTime));
-
     double samplingProbability =
-        (currentState.effectiveWindowNanos * targetSpansPerNanosecondLimit)
-            / currentState.effectiveWindowCount;
-
-    if (samplingProbability >= 1.) {
-      return 0;
-    }
-
-    int lowerPValue = getLowerBoundP(samplingProbability);
-    int upperPValue = getUpperBoundP(samplingProbability);
-
-    if (lowerPValue == upperPValue) {
-      return lowerPValue;
-    }
-
-    double upperSamplingRate = getSamplingProbability(lowerPValue);
-    double lowerSamplingRate = getSamplingProbability(upperPValue);
-    double probabilityToUseLowerPValue =
-        (samplingProbability - lowerSamplingRate) / (upperSamplingRate - lowerSamplingRate);
-
-    if (randomGenerator.nextBoolean(probabilityToUseLowerPValue)) {
-      return lowerPValue;
-    } else {
-      return upperPValue;
-    }
+        samplingProbabilityEstimator.estimate(nanoTimeSupplier.getAsLong(), 1.);
+    return getRandomizedP(samplingProbability, randomGenerator);
   }
 
   @Override
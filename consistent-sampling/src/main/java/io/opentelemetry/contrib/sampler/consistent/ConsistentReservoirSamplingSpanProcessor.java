@@ -8,7 +8,6 @@ package io.opentelemetry.contrib.sampler.consistent;
 import static io.opentelemetry.api.internal.Utils.checkArgument;
 import static java.util.Objects.requireNonNull;
 
-import io.opentelemetry.api.trace.SpanContext;
 import io.opentelemetry.api.trace.TraceState;
 import io.opentelemetry.context.Context;
 import io.opentelemetry.sdk.common.CompletableResultCode;
@@ -16,31 +15,51 @@ import io.opentelemetry.sdk.internal.DaemonThreadFactory;
 import io.opentelemetry.sdk.trace.ReadWriteSpan;
 import io.opentelemetry.sdk.trace.ReadableSpan;
 import io.opentelemetry.sdk.trace.SpanProcessor;
-import io.opentelemetry.sdk.trace.data.DelegatingSpanData;
-import io.opentelemetry.sdk.trace.data.SpanData;
 import io.opentelemetry.sdk.trace.export.SpanExporter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 
 /**
  * A {@link SpanProcessor} which periodically exports a fixed maximum number of spans. If the number
  * of spans in a period exceeds the fixed reservoir (buffer) size, spans will be consistently
  * (compare {@link ConsistentSampler}) sampled.
+ *
+ * <p>Optionally, spans can be classified into several independent reservoirs, each with its own
+ * size, which share the export period and the worker thread.
+ *
+ * <p>To reduce lock contention, spans are buffered in several stripes before they are added to a
+ * reservoir. Each stripe buffers at most {@code ceil(reservoirSize / numberOfStripes)} spans, so at
+ * most {@code reservoirSize + numberOfStripes * ceil(reservoirSize / numberOfStripes)} spans, which
+ * is less than {@code 2 * reservoirSize + numberOfStripes}, are retained per reservoir.
  */
 public final class ConsistentReservoirSamplingSpanProcessor implements SpanProcessor {
 
   private static final String WORKER_THREAD_NAME =
       ConsistentReservoirSamplingSpanProcessor.class.getSimpleName() + "_WorkerThread";
+  private static final String CONVERSION_THREAD_NAME =
+      ConsistentReservoirSamplingSpanProcessor.class.getSimpleName() + "_ConversionThread";
 
   private final Worker worker;
   private final AtomicBoolean isShutdown = new AtomicBoolean(false);
@@ -54,38 +73,51 @@ public final class ConsistentReservoirSamplingSpanProcessor implements SpanProce
     private int pval;
     private final int rval;
     private final long priority;
+    // the p-value of the trace state, only relevant if the trace state has a valid r-value
+    private final int traceStatePval;
+    private final boolean hasTraceStateValidR;
 
     public static ReadableSpanWithPriority create(
         ReadableSpan readableSpan, RandomGenerator randomGenerator) {
-      String otelTraceStateString =
-          readableSpan.getSpanContext().getTraceState().get(OtelTraceState.TRACE_STATE_KEY);
-      OtelTraceState otelTraceState = OtelTraceState.parse(otelTraceStateString);
-      int pval;
-      int rval;
+      TraceState traceState = readableSpan.getSpanContext().getTraceState();
+      // the ot entries set by the sampler are looked up instead of parsed
+      int packedOtelTraceState =
+          OtelTraceState.getPacked(traceState.get(OtelTraceState.TRACE_STATE_KEY));
+      int pval = OtelTraceState.unpackP(packedOtelTraceState);
+      int rval = OtelTraceState.unpackR(packedOtelTraceState);
+
+      int traceStatePval = pval;
+      boolean hasTraceStateValidR = OtelTraceState.isValidR(rval);
+
       long priority = randomGenerator.nextLong();
-      if (otelTraceState.hasValidR()) {
-        rval = otelTraceState.getR();
-      } else {
+      if (!hasTraceStateValidR) {
         rval =
             Math.min(randomGenerator.numberOfLeadingZerosOfRandomLong(), OtelTraceState.getMaxR());
       }
 
-      if (otelTraceState.hasValidP()) {
-        pval = otelTraceState.getP();
-      } else {
+      if (!OtelTraceState.isValidP(pval)) {
         // if the p-value is not defined assume it is zero,
         // which corresponds to an adjusted count of 1
         pval = 0;
       }
 
-      return new ReadableSpanWithPriority(readableSpan, pval, rval, priority);
+      return new ReadableSpanWithPriority(
+          readableSpan, pval, rval, priority, traceStatePval, hasTraceStateValidR);
     }
 
-    private ReadableSpanWithPriority(ReadableSpan readableSpan, int pval, int rval, long priority) {
+    private ReadableSpanWithPriority(
+        ReadableSpan readableSpan,
+        int pval,
+        int rval,
+        long priority,
+        int traceStatePval,
+        boolean hasTraceStateValidR) {
       this.readableSpan = readableSpan;
       this.pval = pval;
       this.rval = rval;
       this.priority = priority;
+      this.traceStatePval = traceStatePval;
+      this.hasTraceStateValidR = hasTraceStateValidR;
     }
 
     private ReadableSpan getReadableSpan() {
@@ -104,6 +136,14 @@ public final class ConsistentReservoirSamplingSpanProcessor implements SpanProce
       return rval;
     }
 
+    private boolean isTraceStateUpdateRequired() {
+      if (hasTraceStateValidR) {
+        return pval != traceStatePval;
+      } else {
+        return pval > 0;
+      }
+    }
+
     private static int compareRthenPriority(
         ReadableSpanWithPriority s1, ReadableSpanWithPriority s2) {
       int compareR = Integer.compare(s1.rval, s2.rval);
@@ -232,10 +272,13 @@ public final class ConsistentReservoirSamplingSpanProcessor implements SpanProce
       }
     }
 
-    public List<SpanData> getResult() {
+    public List<LazySpanData> getResult() {
 
       if (numberOfDiscardedSpansWithMaxDiscardedRValue == 0) {
-        return queue.stream().map(x -> x.readableSpan.toSpanData()).collect(Collectors.toList());
+        // the p-values are not changed
+        return queue.stream()
+            .map(x -> new LazySpanData(x.readableSpan, x.getP(), false))
+            .collect(Collectors.toList());
       }
 
       List<ReadableSpanWithPriority> readableSpansWithPriority = new ArrayList<>(queue.size());
@@ -265,7 +308,7 @@ public final class ConsistentReservoirSamplingSpanProcessor implements SpanProce
               numSampledSpansWithGreaterRValueAndSmallPValue, roundedExpectedNumPValueIncrements);
 
       int incrementIndicatorIndex = 0;
-      List<SpanData> result = new ArrayList<>(queue.size());
+      List<LazySpanData> result = new ArrayList<>(queue.size());
       for (ReadableSpanWithPriority readableSpanWithPriority : readableSpansWithPriority) {
         if (readableSpanWithPriority.getP() <= maxDiscardedRValue) {
           readableSpanWithPriority.setP(maxDiscardedRValue);
@@ -277,49 +320,35 @@ public final class ConsistentReservoirSamplingSpanProcessor implements SpanProce
           }
         }
 
-        SpanData spanData = readableSpanWithPriority.getReadableSpan().toSpanData();
-        SpanContext spanContext = spanData.getSpanContext();
-        TraceState traceState = spanContext.getTraceState();
-        String otelTraceStateString = traceState.get(OtelTraceState.TRACE_STATE_KEY);
-        OtelTraceState otelTraceState = OtelTraceState.parse(otelTraceStateString);
-        if ((!otelTraceState.hasValidR() && readableSpanWithPriority.getP() > 0)
-            || (otelTraceState.hasValidR()
-                && readableSpanWithPriority.getP() != otelTraceState.getP())) {
-          otelTraceState.setP(readableSpanWithPriority.getP());
-          spanData = updateSpanDataWithOtelTraceState(spanData, otelTraceState);
-        }
-        result.add(spanData);
+        result.add(
+            new LazySpanData(
+                readableSpanWithPriority.getReadableSpan(),
+                readableSpanWithPriority.getP(),
+                readableSpanWithPriority.isTraceStateUpdateRequired()));
       }
 
       return result;
     }
 
-    public boolean isEmpty() {
-      return queue.isEmpty();
+    public int size() {
+      return queue.size();
     }
   }
 
-  private static SpanData updateSpanDataWithOtelTraceState(
-      SpanData spanData, OtelTraceState otelTraceState) {
-    SpanContext spanContext = spanData.getSpanContext();
-    TraceState traceState = spanContext.getTraceState();
-    String updatedOtelTraceStateString = otelTraceState.serialize();
-    TraceState updatedTraceState =
-        traceState.toBuilder()
-            .put(OtelTraceState.TRACE_STATE_KEY, updatedOtelTraceStateString)
-            .build();
-    SpanContext updatedSpanContext =
-        SpanContext.create(
-            spanContext.getTraceId(),
-            spanContext.getSpanId(),
-            spanContext.getTraceFlags(),
-            updatedTraceState);
-    return new DelegatingSpanData(spanData) {
-      @Override
-      public SpanContext getSpanContext() {
-        return updatedSpanContext;
-      }
-    };
+  // visible for testing
+  static SpanProcessor create(
+      SpanExporter spanExporter,
+      int reservoirSize,
+      long exportPeriodNanos,
+      long exporterTimeoutNanos,
+      RandomGenerator randomGenerator) {
+    return create(
+        spanExporter,
+        reservoirSize,
+        exportPeriodNanos,
+        exporterTimeoutNanos,
+        randomGenerator,
+        Striping.DEFAULT_NUMBER_OF_STRIPES);
   }
 
   // visible for testing
@@ -328,9 +357,113 @@ public final class ConsistentReservoirSamplingSpanProcessor implements SpanProce
       int reservoirSize,
       long exportPeriodNanos,
       long exporterTimeoutNanos,
-      RandomGenerator randomGenerator) {
+      RandomGenerator randomGenerator,
+      int numberOfStripes) {
+    return create(
+        spanExporter,
+        reservoirSize,
+        exportPeriodNanos,
+        exporterTimeoutNanos,
+        randomGenerator,
+        numberOfStripes,
+        0);
+  }
+
+  // visible for testing
+  static SpanProcessor create(
+      SpanExporter spanExporter,
+      int reservoirSize,
+      long exportPeriodNanos,
+      long exporterTimeoutNanos,
+      RandomGenerator randomGenerator,
+      int numberOfStripes,
+      int numberOfConversionThreads) {
+    return new ConsistentReservoirSamplingSpanProcessor(
+        spanExporter,
+        exportPeriodNanos,
+        new int[] {reservoirSize},
+        span -> 0,
+        exporterTimeoutNanos,
+        randomGenerator,
+        numberOfStripes,
+        numberOfConversionThreads);
+  }
+
+  // visible for testing
+  static SpanProcessor create(
+      SpanExporter spanExporter,
+      Function<ReadableSpan, String> classifier,
+      Map<String, Integer> reservoirSizes,
+      int defaultReservoirSize,
+      long exportPeriodNanos,
+      long exporterTimeoutNanos,
+      RandomGenerator randomGenerator,
+      int numberOfStripes) {
+    requireNonNull(classifier, "classifier");
+    requireNonNull(reservoirSizes, "reservoirSizes");
+
+    // the reservoir with index 0 is the default reservoir
+    int[] reservoirSizesByIndex = new int[reservoirSizes.size() + 1];
+    Map<String, Integer> reservoirIndices = new HashMap<>();
+    reservoirSizesByIndex[0] = defaultReservoirSize;
+    for (Map.Entry<String, Integer> entry : reservoirSizes.entrySet()) {
+      int reservoirIndex = reservoirIndices.size() + 1;
+      reservoirIndices.put(requireNonNull(entry.getKey(), "class"), reservoirIndex);
+      reservoirSizesByIndex[reservoirIndex] = requireNonNull(entry.getValue(), "reservoirSize");
+    }
+    ToIntFunction<ReadableSpan> reservoirSelector =
+        span -> {
+          String spanClass = classifier.apply(span);
+          Integer reservoirIndex = spanClass != null ? reservoirIndices.get(spanClass) : null;
+          return reservoirIndex != null ? reservoirIndex : 0;
+        };
+
     return new ConsistentReservoirSamplingSpanProcessor(
-        spanExporter, exportPeriodNanos, reservoirSize, exporterTimeoutNanos, randomGenerator);
+        spanExporter,
+        exportPeriodNanos,
+        reservoirSizesByIndex,
+        reservoirSelector,
+        exporterTimeoutNanos,
+        randomGenerator,
+        numberOfStripes,
+        0);
+  }
+
+  /**
+   * Creates a new {@link SpanProcessor} which keeps several independent reservoirs and periodically
+   * exports the spans of all of them. Each span is assigned to a reservoir by the given classifier,
+   * for example based on the service, the endpoint, or the status of the span. If the number of
+   * spans assigned to a reservoir in a period exceeds its size, the spans of this reservoir will be
+   * consistently (compare {@link ConsistentSampler}) sampled. The p-values are adjusted for each
+   * reservoir individually, hence estimates derived from the exported spans remain unbiased.
+   *
+   * <p>All reservoirs share a single worker thread and the export period.
+   *
+   * @param spanExporter a span exporter
+   * @param classifier a function returning the class of a span
+   * @param reservoirSizes the reservoir sizes for the span classes
+   * @param defaultReservoirSize the size of the reservoir for spans whose class is not contained in
+   *     {@code reservoirSizes}
+   * @param exportPeriodNanos the export period in nanoseconds
+   * @param exporterTimeoutNanos the exporter timeout in nanoseconds
+   * @return a span processor
+   */
+  public static SpanProcessor create(
+      SpanExporter spanExporter,
+      Function<ReadableSpan, String> classifier,
+      Map<String, Integer> reservoirSizes,
+      int defaultReservoirSize,
+      long exportPeriodNanos,
+      long exporterTimeoutNanos) {
+    return create(
+        spanExporter,
+        classifier,
+        reservoirSizes,
+        defaultReservoirSize,
+        exportPeriodNanos,
+        exporterTimeoutNanos,
+        RandomGenerator.getDefault(),
+        Striping.DEFAULT_NUMBER_OF_STRIPES);
   }
 
   /**
@@ -357,6 +490,39 @@ public final class ConsistentReservoirSamplingSpanProcessor implements SpanProce
         RandomGenerator.getDefault());
   }
 
+  /**
+   * Creates a new {@link SpanProcessor} which periodically exports a fixed maximum number of spans.
+   * If the number of spans in a period exceeds the fixed reservoir (buffer) size, spans will be
+   * consistently (compare {@link ConsistentSampler}) sampled.
+   *
+   * <p>By default, the spans passed to the exporter are converted lazily, when the exporter
+   * accesses them. If the given number of conversion threads is positive, the spans are instead
+   * converted eagerly before export, split across a pool with the given number of threads.
+   *
+   * @param spanExporter a span exporter
+   * @param reservoirSize the reservoir size
+   * @param exportPeriodNanos the export period in nanoseconds
+   * @param exporterTimeoutNanos the exporter timeout in nanoseconds
+   * @param numberOfConversionThreads the number of threads used to convert spans before export, or
+   *     0 for lazy conversion
+   * @return a span processor
+   */
+  public static SpanProcessor create(
+      SpanExporter spanExporter,
+      int reservoirSize,
+      long exportPeriodNanos,
+      long exporterTimeoutNanos,
+      int numberOfConversionThreads) {
+    return create(
+        spanExporter,
+        reservoirSize,
+        exportPeriodNanos,
+        exporterTimeoutNanos,
+        RandomGenerator.getDefault(),
+        Striping.DEFAULT_NUMBER_OF_STRIPES,
+        numberOfConversionThreads);
+  }
+
   /**
    * Creates a new {@link SpanProcessor} which periodically exports a fixed maximum number of spans.
    * If the number of spans in a period exceeds the fixed reservoir (buffer) size, spans will be
@@ -375,18 +541,35 @@ public final class ConsistentReservoirSamplingSpanProcessor implements SpanProce
   private ConsistentReservoirSamplingSpanProcessor(
       SpanExporter spanExporter,
       long exportPeriodNanos,
-      int reservoirSize,
+      int[] reservoirSizes,
+      ToIntFunction<ReadableSpan> reservoirSelector,
       long exporterTimeoutNanos,
-      RandomGenerator randomGenerator) {
+      RandomGenerator randomGenerator,
+      int numberOfStripes,
+      int numberOfConversionThreads) {
     requireNonNull(spanExporter, "spanExporter");
     checkArgument(exportPeriodNanos > 0, "export period must be positive");
-    checkArgument(reservoirSize > 0, "reservoir size must be positive");
+    for (int reservoirSize : reservoirSizes) {
+      checkArgument(reservoirSize > 0, "reservoir size must be positive");
+    }
     checkArgument(exporterTimeoutNanos > 0, "exporter timeout must be positive");
     requireNonNull(randomGenerator, "randomGenerator");
+    checkArgument(
+        numberOfStripes > 0 && Integer.bitCount(numberOfStripes) == 1,
+        "number of stripes must be a positive power of two");
+    checkArgument(
+        numberOfConversionThreads >= 0, "number of conversion threads must be nonnegative");
 
     this.worker =
         new Worker(
-            spanExporter, exportPeriodNanos, reservoirSize, exporterTimeoutNanos, randomGenerator);
+            spanExporter,
+            exportPeriodNanos,
+            reservoirSizes,
+            reservoirSelector,
+            exporterTimeoutNanos,
+            randomGenerator,
+            numberOfStripes,
+            numberOfConversionThreads);
     Thread workerThread = new DaemonThreadFactory(WORKER_THREAD_NAME).newThread(worker);
     workerThread.start();
   }
@@ -427,7 +610,110 @@ public final class ConsistentReservoirSamplingSpanProcessor implements SpanProce
 
   // Visible for testing
   boolean isReservoirEmpty() {
-    return worker.isReservoirEmpty();
+    return worker.getNumberOfRetainedSpans() == 0;
+  }
+
+  // Visible for testing
+  int getNumberOfRetainedSpans() {
+    return worker.getNumberOfRetainedSpans();
+  }
+
+  /**
+   * A reservoir that is filled by several threads through stripes, which buffer the spans ended by
+   * a subset of the threads.
+   *
+   * <p>Since a reservoir keeps the spans with largest r-values (in case of ties with highest
+   * priority), the kept spans do not depend on the order in which spans are added. The same holds
+   * for the largest discarded r-value and the number of discarded spans with that r-value, which
+   * are the only statistics needed for the p-value adjustments in {@link Reservoir#getResult()}.
+   * Hence, buffering spans gives the same result as adding them to the reservoir directly, while
+   * the lock of the reservoir is only taken once per full buffer.
+   */
+  private static final class StripedReservoir {
+    private final int reservoirSize;
+    private final RandomGenerator randomGenerator;
+    private final ReservoirStripe[] stripes;
+    private final int stripeMask;
+    private final Object lock = new Object();
+    private Reservoir reservoir;
+
+    private StripedReservoir(
+        int reservoirSize, RandomGenerator randomGenerator, int numberOfStripes) {
+      this.reservoirSize = reservoirSize;
+      this.randomGenerator = randomGenerator;
+      this.stripes = new ReservoirStripe[numberOfStripes];
+      int stripeCapacity = (reservoirSize + numberOfStripes - 1) / numberOfStripes;
+      for (int i = 0; i < numberOfStripes; ++i) {
+        stripes[i] = new ReservoirStripe(stripeCapacity);
+      }
+      this.stripeMask = numberOfStripes - 1;
+      synchronized (lock) {
+        this.reservoir = new Reservoir(reservoirSize, randomGenerator);
+      }
+    }
+
+    private void add(ReadableSpanWithPriority readableSpanWithPriority) {
+      stripes[(int) Thread.currentThread().getId() & stripeMask].add(
+          readableSpanWithPriority, this);
+    }
+
+    private void addAll(ReadableSpanWithPriority[] buffer, int count) {
+      synchronized (lock) {
+        for (int i = 0; i < count; ++i) {
+          reservoir.add(buffer[i]);
+        }
+      }
+    }
+
+    /** Returns the reservoir with all buffered spans and replaces it with an empty one. */
+    private Reservoir swap() {
+      for (ReservoirStripe stripe : stripes) {
+        stripe.flush(this);
+      }
+      synchronized (lock) {
+        Reservoir oldReservoir = reservoir;
+        reservoir = new Reservoir(reservoirSize, randomGenerator);
+        return oldReservoir;
+      }
+    }
+
+    private int getNumberOfRetainedSpans() {
+      int numberOfRetainedSpans = 0;
+      for (ReservoirStripe stripe : stripes) {
+        numberOfRetainedSpans += stripe.size();
+      }
+      synchronized (lock) {
+        return numberOfRetainedSpans + reservoir.size();
+      }
+    }
+  }
+
+  /** A buffer for the spans ended by a subset of the threads, guarded by itself. */
+  private static final class ReservoirStripe {
+    private final ReadableSpanWithPriority[] buffer;
+    private int size;
+
+    private ReservoirStripe(int capacity) {
+      this.buffer = new ReadableSpanWithPriority[capacity];
+    }
+
+    private synchronized void add(
+        ReadableSpanWithPriority readableSpanWithPriority, StripedReservoir stripedReservoir) {
+      buffer[size++] = readableSpanWithPriority;
+      if (size == buffer.length) {
+        flush(stripedReservoir);
+      }
+    }
+
+    private synchronized void flush(StripedReservoir stripedReservoir) {
+      stripedReservoir.addAll(buffer, size);
+      Arrays.fill(buffer, 0, size, null);
+      size = 0;
+    }
+
+    private synchronized int size() {
+      return size;
+    }
   }
 
   private static final class Worker implements Runnable {
@@ -435,44 +721,62 @@ public final class ConsistentReservoirSamplingSpanProcessor implements SpanProce
     private static final Logger logger = Logger.getLogger(Worker.class.getName());
     private final SpanExporter spanExporter;
     private final long exportPeriodNanos;
-    private final int reservoirSize;
+    private final ToIntFunction<ReadableSpan> reservoirSelector;
     private final long exporterTimeoutNanos;
 
     private long nextExportTime;
 
     private final RandomGenerator randomGenerator;
-    private final Object reservoirLock = new Object();
-    private Reservoir reservoir;
+    private final StripedReservoir[] reservoirs;
     private final BlockingQueue<CompletableResultCode> signal;
+    private final int numberOfConversionThreads;
+    @Nullable private final ExecutorService conversionExecutor;
     private volatile boolean continueWork = true;
 
-    private static Reservoir createReservoir(int reservoirSize, RandomGenerator randomGenerator) {
-      return new Reservoir(reservoirSize, randomGenerator);
-    }
-
     private Worker(
         SpanExporter spanExporter,
         long exportPeriodNanos,
-        int reservoirSize,
+        int[] reservoirSizes,
+        ToIntFunction<ReadableSpan> reservoirSelector,
         long exporterTimeoutNanos,
-        RandomGenerator randomGenerator) {
+        RandomGenerator randomGenerator,
+        int numberOfStripes,
+        int numberOfConversionThreads) {
       this.spanExporter = spanExporter;
       this.exportPeriodNanos = exportPeriodNanos;
-      this.reservoirSize = reservoirSize;
+      this.reservoirSelector = reservoirSelector;
       this.exporterTimeoutNanos = exporterTimeoutNanos;
       this.randomGenerator = randomGenerator;
-      synchronized (reservoirLock) {
-        this.reservoir = createReservoir(reservoirSize, randomGenerator);
+      this.reservoirs = new StripedReservoir[reservoirSizes.length];
+      for (int reservoirIndex = 0; reservoirIndex < reservoirSizes.length; ++reservoirIndex) {
+        reservoirs[reservoirIndex] =
+            new StripedReservoir(reservoirSizes[reservoirIndex], randomGenerator, numberOfStripes);
       }
       this.signal = new ArrayBlockingQueue<>(1);
+      this.numberOfConversionThreads = numberOfConversionThreads;
+      this.conversionExecutor =
+          numberOfConversionThreads > 0
+              ? Executors.newFixedThreadPool(
+                  numberOfConversionThreads, new DaemonThreadFactory(CONVERSION_THREAD_NAME))
+              : null;
     }
 
     private void addSpan(ReadableSpan span) {
       ReadableSpanWithPriority readableSpanWithPriority =
           ReadableSpanWithPriority.create(span, randomGenerator);
-      synchronized (reservoirLock) {
-        reservoir.add(readableSpanWithPriority);
+      reservoirs[reservoirSelector.applyAsInt(span)].add(readableSpanWithPriority);
+    }
+
+    private List<LazySpanData> swapAndCollectReservoirs() {
+      if (reservoirs.length == 1) {
+        return reservoirs[0].swap().getResult();
+      }
+      // the p-values are adjusted for each reservoir individually
+      List<LazySpanData> result = new ArrayList<>();
+      for (StripedReservoir reservoir : reservoirs) {
+        result.addAll(reservoir.swap().getResult());
       }
+      return result;
     }
 
     @Override
@@ -482,13 +786,7 @@ public final class ConsistentReservoirSamplingSpanProcessor implements SpanProce
       while (continueWork) {
 
         if (completableResultCode != null || System.nanoTime() >= nextExportTime) {
-          Reservoir oldReservoir;
-          Reservoir newReservoir = createReservoir(reservoirSize, randomGenerator);
-          synchronized (reservoirLock) {
-            oldReservoir = reservoir;
-            reservoir = newReservoir;
-          }
-          exportCurrentBatch(oldReservoir.getResult());
+          exportCurrentBatch(swapAndCollectReservoirs());
           updateNextExportTime();
           if (completableResultCode != null) {
             completableResultCode.succeed();
@@ -518,6 +816,9 @@ public final class ConsistentReservoirSamplingSpanProcessor implements SpanProce
       flushResult.whenComplete(
           () -> {
             continueWork = false;
+            if (conversionExecutor != null) {
+              conversionExecutor.shutdown();
+            }
             CompletableResultCode shutdownResult = spanExporter.shutdown();
             shutdownResult.whenComplete(
                 () -> {
@@ -538,11 +839,47 @@ public final class ConsistentReservoirSamplingSpanProcessor implements SpanProce
       return flushResult;
     }
 
-    private void exportCurrentBatch(List<SpanData> batch) {
+    /**
+     * Converts the spans of the batch eagerly, split into chunks that are processed by the
+     * conversion threads.
+     */
+    private void materialize(List<LazySpanData> batch) {
+      ExecutorService executor = conversionExecutor;
+      if (executor == null) {
+        return;
+      }
+      int chunkSize = (batch.size() + numberOfConversionThreads - 1) / numberOfConversionThreads;
+      List<Callable<Void>> tasks = new ArrayList<>(numberOfConversionThreads);
+      for (int fromIndex = 0; fromIndex < batch.size(); fromIndex += chunkSize) {
+        List<LazySpanData> chunk =
+            batch.subList(fromIndex, Math.min(fromIndex + chunkSize, batch.size()));
+        tasks.add(
+            () -> {
+              for (LazySpanData lazySpanData : chunk) {
+                lazySpanData.materialize();
+              }
+              return null;
+            });
+      }
+      try {
+        for (Future<Void> future : executor.invokeAll(tasks)) {
+          future.get();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException | RejectedExecutionException e) {
+        // spans that have not been converted are converted lazily by the exporter
+        logger.log(Level.WARNING, "Span conversion failed", e);
+      }
+    }
+
+    private void exportCurrentBatch(List<LazySpanData> batch) {
       if (batch.isEmpty()) {
         return;
       }
 
+      materialize(batch);
+
       try {
         CompletableResultCode result = spanExporter.export(Collections.unmodifiableList(batch));
         result.join(exporterTimeoutNanos, TimeUnit.NANOSECONDS);
@@ -556,10 +893,12 @@ public final class ConsistentReservoirSamplingSpanProcessor implements SpanProce
       }
     }
 
-    private boolean isReservoirEmpty() {
-      synchronized (reservoirLock) {
-        return reservoir.isEmpty();
+    private int getNumberOfRetainedSpans() {
+      int numberOfRetainedSpans = 0;
+      for (StripedReservoir reservoir : reservoirs) {
+        numberOfRetainedSpans += reservoir.getNumberOfRetainedSpans();
       }
+      return numberOfRetainedSpans;
     }
   }
 }
@@ -7,6 +7,7 @@ package io.opentelemetry.contrib.sampler.consistent;
 
 import static java.util.Objects.requireNonNull;
 
+import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.SpanContext;
@@ -15,9 +16,9 @@ import io.opentelemetry.api.trace.TraceState;
 import io.opentelemetry.context.Context;
 import io.opentelemetry.sdk.trace.data.LinkData;
 import io.opentelemetry.sdk.trace.samplers.Sampler;
-import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
 import io.opentelemetry.sdk.trace.samplers.SamplingResult;
 import java.util.List;
+import java.util.function.BiFunction;
 import java.util.function.LongSupplier;
 
 /** Abstract base class for consistent samplers. */
@@ -160,6 +161,167 @@ public abstract class ConsistentSampler implements Sampler {
         nanoTimeSupplier);
   }
 
+  /**
+   * Returns a new {@link ConsistentSampler} that attempts to adjust the sampling probability
+   * dynamically to meet individual target span rates for each span name and a target span rate for
+   * all spans together.
+   *
+   * @param targetSpansPerSecondLimitPerSpanName the desired spans per second limit for each span
+   *     name
+   * @param targetSpansPerSecondLimit the desired spans per second limit for all spans
+   * @param adaptationTimeSeconds the typical time to adapt to a new load (time constant used for
+   *     exponential smoothing)
+   * @param maxNumberOfSpanNames the maximum number of span names for which the span rate is
+   *     tracked, the least recently used span names are evicted first
+   */
+  public static ConsistentSampler rateLimitedPerSpanName(
+      double targetSpansPerSecondLimitPerSpanName,
+      double targetSpansPerSecondLimit,
+      double adaptationTimeSeconds,
+      int maxNumberOfSpanNames) {
+    return rateLimitedPerSpanName(
+        targetSpansPerSecondLimitPerSpanName,
+        targetSpansPerSecondLimit,
+        adaptationTimeSeconds,
+        maxNumberOfSpanNames,
+        RValueGenerators.getDefault());
+  }
+
+  /**
+   * Returns a new {@link ConsistentSampler} that attempts to adjust the sampling probability
+   * dynamically to meet individual target span rates for each span name and a target span rate for
+   * all spans together.
+   *
+   * @param targetSpansPerSecondLimitPerSpanName the desired spans per second limit for each span
+   *     name
+   * @param targetSpansPerSecondLimit the desired spans per second limit for all spans
+   * @param adaptationTimeSeconds the typical time to adapt to a new load (time constant used for
+   *     exponential smoothing)
+   * @param maxNumberOfSpanNames the maximum number of span names for which the span rate is
+   *     tracked, the least recently used span names are evicted first
+   * @param rValueGenerator the function to use for generating the r-value
+   */
+  public static ConsistentSampler rateLimitedPerSpanName(
+      double targetSpansPerSecondLimitPerSpanName,
+      double targetSpansPerSecondLimit,
+      double adaptationTimeSeconds,
+      int maxNumberOfSpanNames,
+      RValueGenerator rValueGenerator) {
+    return rateLimitedPerKey(
+        (spanName, attributes) -> spanName,
+        "spanName",
+        targetSpansPerSecondLimitPerSpanName,
+        targetSpansPerSecondLimit,
+        adaptationTimeSeconds,
+        maxNumberOfSpanNames,
+        rValueGenerator,
+        System::nanoTime);
+  }
+
+  /**
+   * Returns a new {@link ConsistentSampler} that attempts to adjust the sampling probability
+   * dynamically to meet individual target span rates for each value of the given attribute and a
+   * target span rate for all spans together. Spans without the attribute share a common budget.
+   *
+   * @param attributeKey the attribute key
+   * @param targetSpansPerSecondLimitPerAttributeValue the desired spans per second limit for each
+   *     attribute value
+   * @param targetSpansPerSecondLimit the desired spans per second limit for all spans
+   * @param adaptationTimeSeconds the typical time to adapt to a new load (time constant used for
+   *     exponential smoothing)
+   * @param maxNumberOfAttributeValues the maximum number of attribute values for which the span
+   *     rate is tracked, the least recently used attribute values are evicted first
+   */
+  public static ConsistentSampler rateLimitedPerAttribute(
+      AttributeKey<?> attributeKey,
+      double targetSpansPerSecondLimitPerAttributeValue,
+      double targetSpansPerSecondLimit,
+      double adaptationTimeSeconds,
+      int maxNumberOfAttributeValues) {
+    return rateLimitedPerAttribute(
+        attributeKey,
+        targetSpansPerSecondLimitPerAttributeValue,
+        targetSpansPerSecondLimit,
+        adaptationTimeSeconds,
+        maxNumberOfAttributeValues,
+        RValueGenerators.getDefault());
+  }
+
+  /**
+   * Returns a new {@link ConsistentSampler} that attempts to adjust the sampling probability
+   * dynamically to meet individual target span rates for each value of the given attribute and a
+   * target span rate for all spans together. Spans without the attribute share a common budget.
+   *
+   * @param attributeKey the attribute key
+   * @param targetSpansPerSecondLimitPerAttributeValue the desired spans per second limit for each
+   *     attribute value
+   * @param targetSpansPerSecondLimit the desired spans per second limit for all spans
+   * @param adaptationTimeSeconds the typical time to adapt to a new load (time constant used for
+   *     exponential smoothing)
+   * @param maxNumberOfAttributeValues the maximum number of attribute values for which the span
+   *     rate is tracked, the least recently used attribute values are evicted first
+   * @param rValueGenerator the function to use for generating the r-value
+   */
+  public static ConsistentSampler rateLimitedPerAttribute(
+      AttributeKey<?> attributeKey,
+      double targetSpansPerSecondLimitPerAttributeValue,
+      double targetSpansPerSecondLimit,
+      double adaptationTimeSeconds,
+      int maxNumberOfAttributeValues,
+      RValueGenerator rValueGenerator) {
+    requireNonNull(attributeKey);
+    return rateLimitedPerKey(
+        (spanName, attributes) -> {
+          Object attributeValue = attributes.get(attributeKey);
+          return attributeValue != null
+              ? attributeValue
+              : ConsistentKeyedRateLimitingSampler.MISSING_KEY;
+        },
+        "attribute=" + attributeKey.getKey(),
+        targetSpansPerSecondLimitPerAttributeValue,
+        targetSpansPerSecondLimit,
+        adaptationTimeSeconds,
+        maxNumberOfAttributeValues,
+        rValueGenerator,
+        System::nanoTime);
+  }
+
+  /**
+   * Returns a new {@link ConsistentSampler} that attempts to adjust the sampling probability
+   * dynamically to meet individual target span rates for each key and a target span rate for all
+   * spans together.
+   *
+   * @param keyFunction the function deriving the key from the span name and the span attributes
+   * @param keyDescription a description of the key function
+   * @param targetSpansPerSecondLimitPerKey the desired spans per second limit for each key
+   * @param targetSpansPerSecondLimit the desired spans per second limit for all spans
+   * @param adaptationTimeSeconds the typical time to adapt to a new load (time constant used for
+   *     exponential smoothing)
+   * @param maxNumberOfKeys the maximum number of keys for which the span rate is tracked
+   * @param rValueGenerator the function to use for generating the r-value
+   * @param nanoTimeSupplier a supplier for the current nano time
+   */
+  static ConsistentSampler rateLimitedPerKey(
+      BiFunction<String, Attributes, Object> keyFunction,
+      String keyDescription,
+      double targetSpansPerSecondLimitPerKey,
+      double targetSpansPerSecondLimit,
+      double adaptationTimeSeconds,
+      int maxNumberOfKeys,
+      RValueGenerator rValueGenerator,
+      LongSupplier nanoTimeSupplier) {
+    return new ConsistentKeyedRateLimitingSampler(
+        keyFunction,
+        keyDescription,
+        targetSpansPerSecondLimitPerKey,
+        targetSpansPerSecondLimit,
+        adaptationTimeSeconds,
+        maxNumberOfKeys,
+        rValueGenerator,
+        RandomGenerator.getDefault(),
+        nanoTimeSupplier);
+  }
+
   /**
    * Returns a {@link ConsistentSampler} that samples a span if both this and the other given
    * consistent sampler would sample the span.
@@ -212,14 +374,11 @@ public abstract class ConsistentSampler implements Sampler {
     this.rValueGenerator = requireNonNull(rValueGenerator);
   }
 
-  private static boolean isInvariantViolated(
-      OtelTraceState otelTraceState, boolean isParentSampled) {
-    if (otelTraceState.hasValidR() && otelTraceState.hasValidP()) {
+  private static boolean isInvariantViolated(int p, int r, boolean isParentSampled) {
+    if (OtelTraceState.isValidR(r) && OtelTraceState.isValidP(p)) {
       // if valid p- and r-values are given, they must be consistent with the isParentSampled flag
       // see
       // https://github.com/open-telemetry/opentelemetry-specification/blob/main/specification/trace/tracestate-probability-sampling.md#sampled-flag
-      int p = otelTraceState.getP();
-      int r = otelTraceState.getR();
       int maxP = OtelTraceState.getMaxP();
       boolean isInvariantTrue = ((p <= r) == isParentSampled) || (isParentSampled && (p == maxP));
       return !isInvariantTrue;
@@ -244,59 +403,53 @@ public abstract class ConsistentSampler implements Sampler {
 
     TraceState parentTraceState = parentSpanContext.getTraceState();
     String otelTraceStateString = parentTraceState.get(OtelTraceState.TRACE_STATE_KEY);
-    OtelTraceState otelTraceState = OtelTraceState.parse(otelTraceStateString);
+    // decode p- and r-values without allocating, other key-value pairs are only extracted if
+    // present
+    int packedOtelTraceState = OtelTraceState.parsePacked(otelTraceStateString);
+    int p = OtelTraceState.unpackP(packedOtelTraceState);
+    int r = OtelTraceState.unpackR(packedOtelTraceState);
 
-    if (!otelTraceState.hasValidR() || isInvariantViolated(otelTraceState, isParentSampled)) {
+    if (!OtelTraceState.isValidR(r) || isInvariantViolated(p, r, isParentSampled)) {
       // unset p-value in case of an invalid r-value or in case of any invariant violation
-      otelTraceState.invalidateP();
+      p = OtelTraceState.getInvalidP();
     }
 
     // generate new r-value if not available
-    if (!otelTraceState.hasValidR()) {
-      otelTraceState.setR(Math.min(rValueGenerator.generate(traceId), OtelTraceState.getMaxR()));
+    if (!OtelTraceState.isValidR(r)) {
+      r = Math.min(rValueGenerator.generate(traceId), OtelTraceState.getMaxR());
+      if (!OtelTraceState.isValidR(r)) {
+        r = OtelTraceState.getInvalidR();
+      }
     }
 
     // determine and set new p-value that is used for the sampling decision
-    int newP = getP(otelTraceState.getP(), isRoot);
-    otelTraceState.setP(newP);
+    p = getP(p, isRoot, name, attributes);
+    if (!OtelTraceState.isValidP(p)) {
+      p = OtelTraceState.getInvalidP();
+    }
 
     // determine sampling decision
     boolean isSampled;
-    if (otelTraceState.hasValidP()) {
-      isSampled = (otelTraceState.getP() <= otelTraceState.getR());
+    if (OtelTraceState.isValidP(p)) {
+      isSampled = (p <= r);
     } else {
       // if new p-value is invalid, respect sampling decision of parent
       isSampled = isParentSampled;
     }
-    SamplingDecision samplingDecision =
-        isSampled ? SamplingDecision.RECORD_AND_SAMPLE : SamplingDecision.DROP;
 
     // invalidate p-value if not sampled
     if (!isSampled) {
-      otelTraceState.invalidateP();
+      p = OtelTraceState.getInvalidP();
     }
 
-    String newOtTraceState = otelTraceState.serialize();
-
-    return new SamplingResult() {
-
-      @Override
-      public SamplingDecision getDecision() {
-        return samplingDecision;
-      }
-
-      @Override
-      public Attributes getAttributes() {
-        return Attributes.empty();
-      }
+    if (!OtelTraceState.unpackHasOtherKeyValuePairs(packedOtelTraceState)) {
+      return ConsistentSamplingResult.get(isSampled, p, r);
+    }
 
-      @Override
-      public TraceState getUpdatedTraceState(TraceState parentTraceState) {
-        return parentTraceState.toBuilder()
-            .put(OtelTraceState.TRACE_STATE_KEY, newOtTraceState)
-            .build();
-      }
-    };
+    OtelTraceState otelTraceState = OtelTraceState.parse(otelTraceStateString);
+    otelTraceState.setR(r);
+    otelTraceState.setP(p);
+    return ConsistentSamplingResult.create(isSampled, otelTraceState.serialize());
   }
 
   /**
@@ -337,6 +490,28 @@ public abstract class ConsistentSampler implements Sampler {
    */
   protected abstract int getP(int parentP, boolean isRoot);
 
+  /**
+   * Returns the p-value that is used for the sampling decision, possibly depending on the span name
+   * and the span attributes.
+   *
+   * <p>The same restrictions as for {@link #getP(int, boolean)} apply. In particular, the returned
+   * p-value must not depend on the r-value.
+   *
+   * <p>The default implementation ignores the span name and attributes and delegates to {@link
+   * #getP(int, boolean)}. Composite samplers must override this method and pass the span name and
+   * attributes on to their delegates.
+   *
+   * @param parentP is the p-value (if known) that was used for a consistent sampling decision by
+   *     the parent
+   * @param isRoot is true for the root span
+   * @param spanName the name of the span
+   * @param attributes the attributes of the span
+   * @return the p-value
+   */
+  protected int getP(int parentP, boolean isRoot, String spanName, Attributes attributes) {
+    return getP(parentP, isRoot);
+  }
+
   /**
    * Returns the sampling probability for a given p-value.
    *
@@ -356,6 +531,41 @@ public abstract class ConsistentSampler implements Sampler {
     }
   }
 
+  /**
+   * Returns a randomly chosen p-value such that the expected sampling probability equals the given
+   * sampling probability.
+   *
+   * <p>The p-value is either {@link #getLowerBoundP(double)} or {@link #getUpperBoundP(double)},
+   * chosen with appropriate probabilities.
+   *
+   * @param samplingProbability the sampling probability, values greater than 1 are treated as 1
+   * @param randomGenerator the random generator
+   * @return the p-value
+   */
+  static int getRandomizedP(double samplingProbability, RandomGenerator randomGenerator) {
+    if (samplingProbability >= 1.) {
+      return 0;
+    }
+
+    int lowerPValue = getLowerBoundP(samplingProbability);
+    int upperPValue = getUpperBoundP(samplingProbability);
+
+    if (lowerPValue == upperPValue) {
+      return lowerPValue;
+    }
+
+    double upperSamplingRate = getSamplingProbability(lowerPValue);
+    double lowerSamplingRate = getSamplingProbability(upperPValue);
+    double probabilityToUseLowerPValue =
+        (samplingProbability - lowerSamplingRate) / (upperSamplingRate - lowerSamplingRate);
+
+    if (randomGenerator.nextBoolean(probabilityToUseLowerPValue)) {
+      return lowerPValue;
+    } else {
+      return upperPValue;
+    }
+  }
+
   private static final double SMALLEST_POSITIVE_SAMPLING_PROBABILITY =
       getSamplingProbability(OtelTraceState.getMaxP() - 1);
 
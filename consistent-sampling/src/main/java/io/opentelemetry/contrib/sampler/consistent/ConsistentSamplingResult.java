@@ -0,0 +1,164 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.sampler.consistent;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A {@link SamplingResult} of a {@link ConsistentSampler}, which sets the {@code ot} entry of the
+ * trace state.
+ *
+ * <p>The number of distinct sampling results for trace states that only contain p- and r-values is
+ * small. These results are created once and cached, together with the corresponding updated trace
+ * states for parent trace states that contain no other entries than {@code ot}. Hence, sampling
+ * decisions for such spans do not allocate. The p- and r-values of these trace states can be
+ * decoded without parsing by {@link OtelTraceState#getPacked(String)}.
+ */
+@Immutable
+final class ConsistentSamplingResult implements SamplingResult {
+
+  private static final int NUMBER_OF_R_VALUES = OtelTraceState.getMaxR() + 1;
+
+  // sampled results indexed by (p + 1) * NUMBER_OF_R_VALUES + r
+  private static final AtomicReferenceArray<ConsistentSamplingResult> SAMPLED_RESULTS =
+      new AtomicReferenceArray<>((OtelTraceState.getMaxP() + 2) * NUMBER_OF_R_VALUES);
+
+  // dropped results have an invalid p-value and are indexed by r
+  private static final AtomicReferenceArray<ConsistentSamplingResult> DROPPED_RESULTS =
+      new AtomicReferenceArray<>(NUMBER_OF_R_VALUES);
+
+  // trace states that only contain the ot entry, indexed like the sampled results
+  private static final AtomicReferenceArray<TraceState> OTEL_ONLY_TRACE_STATES =
+      new AtomicReferenceArray<>((OtelTraceState.getMaxP() + 2) * NUMBER_OF_R_VALUES);
+
+  private final SamplingDecision decision;
+  private final String otelTraceStateString;
+  private final TraceState otelOnlyTraceState;
+
+  private ConsistentSamplingResult(
+      SamplingDecision decision, String otelTraceStateString, TraceState otelOnlyTraceState) {
+    this.decision = decision;
+    this.otelTraceStateString = otelTraceStateString;
+    this.otelOnlyTraceState = otelOnlyTraceState;
+  }
+
+  private static SamplingDecision getDecision(boolean isSampled) {
+    return isSampled ? SamplingDecision.RECORD_AND_SAMPLE : SamplingDecision.DROP;
+  }
+
+  /**
+   * Returns a sampling result for a trace state that only contains the given p- and r-values.
+   *
+   * @param isSampled the sampling decision
+   * @param pval the p-value, is expected to be invalid if not sampled
+   * @param rval the r-value
+   * @return a cached sampling result
+   */
+  static SamplingResult get(boolean isSampled, int pval, int rval) {
+    if (!OtelTraceState.isValidR(rval)) {
+      return create(isSampled, pval, rval);
+    }
+    if (!OtelTraceState.isValidP(pval)) {
+      pval = OtelTraceState.getInvalidP();
+    }
+    AtomicReferenceArray<ConsistentSamplingResult> results;
+    int index;
+    if (isSampled) {
+      results = SAMPLED_RESULTS;
+      index = (pval + 1) * NUMBER_OF_R_VALUES + rval;
+    } else if (pval == OtelTraceState.getInvalidP()) {
+      results = DROPPED_RESULTS;
+      index = rval;
+    } else {
+      return create(false, pval, rval);
+    }
+    ConsistentSamplingResult result = results.get(index);
+    if (result == null) {
+      result = create(isSampled, pval, rval);
+      // concurrent threads may create equal instances, either of them can be cached
+      results.lazySet(index, result);
+    }
+    return result;
+  }
+
+  private static ConsistentSamplingResult create(boolean isSampled, int pval, int rval) {
+    return new ConsistentSamplingResult(
+        getDecision(isSampled),
+        OtelTraceState.serialize(pval, rval),
+        getOtelOnlyTraceState(pval, rval));
+  }
+
+  /**
+   * Returns a trace state that only contains an {@code ot} entry with the given p- and r-values.
+   *
+   * @param pval the p-value
+   * @param rval the r-value
+   * @return a cached trace state, if the r-value is valid
+   */
+  static TraceState getOtelOnlyTraceState(int pval, int rval) {
+    if (!OtelTraceState.isValidR(rval)) {
+      return createOtelOnlyTraceState(OtelTraceState.serialize(pval, rval));
+    }
+    if (!OtelTraceState.isValidP(pval)) {
+      pval = OtelTraceState.getInvalidP();
+    }
+    int index = (pval + 1) * NUMBER_OF_R_VALUES + rval;
+    TraceState traceState = OTEL_ONLY_TRACE_STATES.get(index);
+    if (traceState == null) {
+      traceState = createOtelOnlyTraceState(OtelTraceState.serialize(pval, rval));
+      // concurrent threads may create equal instances, either of them can be cached
+      OTEL_ONLY_TRACE_STATES.lazySet(index, traceState);
+    }
+    return traceState;
+  }
+
+  private static TraceState createOtelOnlyTraceState(String otelTraceStateString) {
+    return TraceState.builder().put(OtelTraceState.TRACE_STATE_KEY, otelTraceStateString).build();
+  }
+
+  /**
+   * Returns a new sampling result that sets the given value for the {@code ot} entry of the trace
+   * state.
+   *
+   * @param isSampled the sampling decision
+   * @param otelTraceStateString the value of the {@code ot} entry
+   * @return a new sampling result
+   */
+  static ConsistentSamplingResult create(boolean isSampled, String otelTraceStateString) {
+    return new ConsistentSamplingResult(
+        getDecision(isSampled),
+        otelTraceStateString,
+        createOtelOnlyTraceState(otelTraceStateString));
+  }
+
+  @Override
+  public SamplingDecision getDecision() {
+    return decision;
+  }
+
+  @Override
+  public Attributes getAttributes() {
+    return Attributes.empty();
+  }
+
+  @Override
+  public TraceState getUpdatedTraceState(TraceState parentTraceState) {
+    if (!otelTraceStateString.isEmpty()
+        && (parentTraceState.isEmpty()
+            || (parentTraceState.size() == 1
+                && parentTraceState.get(OtelTraceState.TRACE_STATE_KEY) != null))) {
+      return otelOnlyTraceState;
+    }
+    return parentTraceState.toBuilder()
+        .put(OtelTraceState.TRACE_STATE_KEY, otelTraceStateString)
+        .build();
+  }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.sampler.consistent;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.sdk.common.InstrumentationScopeInfo;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.data.StatusData;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link SpanData} view of an ended {@link ReadableSpan} whose p-value might have been changed by
+ * {@link ConsistentReservoirSamplingSpanProcessor}.
+ *
+ * <p>The conversion of the span using {@link ReadableSpan#toSpanData()} is deferred until any of
+ * the properties that are not directly available from the {@link ReadableSpan} is accessed, or
+ * until {@link #materialize()} is called. Similarly, the updated span context is only created when
+ * it is accessed. Only the {@code ot} entry of the trace state is patched.
+ */
+final class LazySpanData implements SpanData {
+
+  private final ReadableSpan readableSpan;
+  private final int pval;
+  private final boolean isTraceStateUpdateRequired;
+
+  // concurrent initializations yield equivalent instances, either of them can be kept
+  @Nullable private volatile SpanData spanData;
+  @Nullable private volatile SpanContext updatedSpanContext;
+
+  /**
+   * Constructor.
+   *
+   * @param readableSpan an ended span
+   * @param pval the p-value of the span
+   * @param isTraceStateUpdateRequired whether the trace state of the span needs to be updated with
+   *     the given p-value
+   */
+  LazySpanData(ReadableSpan readableSpan, int pval, boolean isTraceStateUpdateRequired) {
+    this.readableSpan = readableSpan;
+    this.pval = pval;
+    this.isTraceStateUpdateRequired = isTraceStateUpdateRequired;
+  }
+
+  /** Performs the conversion of the span eagerly. */
+  void materialize() {
+    getSpanData();
+    getSpanContext();
+  }
+
+  private SpanData getSpanData() {
+    SpanData result = spanData;
+    if (result == null) {
+      result = readableSpan.toSpanData();
+      spanData = result;
+    }
+    return result;
+  }
+
+  private SpanContext createUpdatedSpanContext() {
+    SpanContext spanContext = readableSpan.getSpanContext();
+    TraceState traceState = spanContext.getTraceState();
+    String otelTraceStateString = traceState.get(OtelTraceState.TRACE_STATE_KEY);
+    int packedOtelTraceState = OtelTraceState.getPacked(otelTraceStateString);
+    TraceState updatedTraceState;
+    if (otelTraceStateString != null
+        && traceState.size() == 1
+        && !OtelTraceState.unpackHasOtherKeyValuePairs(packedOtelTraceState)) {
+      // reuse the cached trace state, as set by the sampler for the updated p-value
+      updatedTraceState =
+          ConsistentSamplingResult.getOtelOnlyTraceState(
+              pval, OtelTraceState.unpackR(packedOtelTraceState));
+    } else {
+      OtelTraceState otelTraceState = OtelTraceState.parse(otelTraceStateString);
+      otelTraceState.setP(pval);
+      updatedTraceState =
+          traceState.toBuilder()
+              .put(OtelTraceState.TRACE_STATE_KEY, otelTraceState.serialize())
+              .build();
+    }
+    return SpanContext.create(
+        spanContext.getTraceId(),
+        spanContext.getSpanId(),
+        spanContext.getTraceFlags(),
+        updatedTraceState);
+  }
+
+  @Override
+  public SpanContext getSpanContext() {
+    if (!isTraceStateUpdateRequired) {
+      return readableSpan.getSpanContext();
+    }
+    SpanContext result = updatedSpanContext;
+    if (result == null) {
+      result = createUpdatedSpanContext();
+      updatedSpanContext = result;
+    }
+    return result;
+  }
+
+  @Override
+  public String getName() {
+    return readableSpan.getName();
+  }
+
+  @Override
+  public SpanKind getKind() {
+    return readableSpan.getKind();
+  }
+
+  @Override
+  public SpanContext getParentSpanContext() {
+    return readableSpan.getParentSpanContext();
+  }
+
+  @Override
+  public StatusData getStatus() {
+    return getSpanData().getStatus();
+  }
+
+  @Override
+  public long getStartEpochNanos() {
+    return getSpanData().getStartEpochNanos();
+  }
+
+  @Override
+  public Attributes getAttributes() {
+    return getSpanData().getAttributes();
+  }
+
+  @Override
+  public List<EventData> getEvents() {
+    return getSpanData().getEvents();
+  }
+
+  @Override
+  public List<LinkData> getLinks() {
+    return getSpanData().getLinks();
+  }
+
+  @Override
+  public long getEndEpochNanos() {
+    return getSpanData().getEndEpochNanos();
+  }
+
+  @Override
+  public boolean hasEnded() {
+    return readableSpan.hasEnded();
+  }
+
+  @Override
+  public int getTotalRecordedEvents() {
+    return getSpanData().getTotalRecordedEvents();
+  }
+
+  @Override
+  public int getTotalRecordedLinks() {
+    return getSpanData().getTotalRecordedLinks();
+  }
+
+  @Override
+  public int getTotalAttributeCount() {
+    return getSpanData().getTotalAttributeCount();
+  }
+
+  @Deprecated
+  @Override
+  public io.opentelemetry.sdk.common.InstrumentationLibraryInfo getInstrumentationLibraryInfo() {
+    return readableSpan.getInstrumentationLibraryInfo();
+  }
+
+  @Override
+  public InstrumentationScopeInfo getInstrumentationScopeInfo() {
+    return readableSpan.getInstrumentationScopeInfo();
+  }
+
+  @Override
+  public Resource getResource() {
+    return getSpanData().getResource();
+  }
+
+  @Override
+  public boolean equals(@Nullable Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (!(o instanceof SpanData)) {
+      return false;
+    }
+    SpanData that = (SpanData) o;
+    return getSpanContext().equals(that.getSpanContext())
+        && getParentSpanContext().equals(that.getParentSpanContext())
+        && getResource().equals(that.getResource())
+        && getInstrumentationScopeInfo().equals(that.getInstrumentationScopeInfo())
+        && getName().equals(that.getName())
+        && getKind().equals(that.getKind())
+        && getStartEpochNanos() == that.getStartEpochNanos()
+        && getAttributes().equals(that.getAttributes())
+        && getEvents().equals(that.getEvents())
+        && getLinks().equals(that.getLinks())
+        && getStatus().equals(that.getStatus())
+        && getEndEpochNanos() == that.getEndEpochNanos()
+        && hasEnded() == that.hasEnded()
+        && getTotalRecordedEvents() == that.getTotalRecordedEvents()
+        && getTotalRecordedLinks() == that.getTotalRecordedLinks()
+        && getTotalAttributeCount() == that.getTotalAttributeCount();
+  }
+
+  @Override
+  public int hashCode() {
+    int code = 1;
+    code *= 1000003;
+    code ^= getSpanContext().hashCode();
+    code *= 1000003;
+    code ^= getParentSpanContext().hashCode();
+    code *= 1000003;
+    code ^= getResource().hashCode();
+    code *= 1000003;
+    code ^= getInstrumentationScopeInfo().hashCode();
+    code *= 1000003;
+    code ^= getName().hashCode();
+    code *= 1000003;
+    code ^= getKind().hashCode();
+    code *= 1000003;
+    code ^= (int) ((getStartEpochNanos() >>> 32) ^ getStartEpochNanos());
+    code *= 1000003;
+    code ^= getAttributes().hashCode();
+    code *= 1000003;
+    code ^= getEvents().hashCode();
+    code *= 1000003;
+    code ^= getLinks().hashCode();
+    code *= 1000003;
+    code ^= getStatus().hashCode();
+    code *= 1000003;
+    code ^= (int) ((getEndEpochNanos() >>> 32) ^ getEndEpochNanos());
+    code *= 1000003;
+    code ^= hasEnded() ? 1231 : 1237;
+    code *= 1000003;
+    code ^= getTotalRecordedEvents();
+    code *= 1000003;
+    code ^= getTotalRecordedLinks();
+    code *= 1000003;
+    code ^= getTotalAttributeCount();
+    return code;
+  }
+
+  @Override
+  public String toString() {
+    return "LazySpanData{spanData=" + getSpanData() + ", spanContext=" + getSpanContext() + '}';
+  }
+}
@@ -5,11 +5,19 @@
 
 package io.opentelemetry.contrib.sampler.consistent;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 import javax.annotation.Nullable;
 
+/**
+ * The consistent probability sampling state stored in the {@code ot} entry of the trace state.
+ *
+ * <p>Parsing does not copy any parts of the given character sequence. The p- and r-values are
+ * decoded in place, while other key-value pairs are only validated and remembered as part of the
+ * original character sequence. They are extracted lazily when the state is serialized again. The
+ * serialized representations of states without other key-value pairs are precomputed, so that
+ * serializing such states does not allocate.
+ */
 final class OtelTraceState {
 
   public static final String TRACE_STATE_KEY = "ot";
@@ -22,19 +30,58 @@ final class OtelTraceState {
   private static final int INVALID_R = -1;
   private static final int TRACE_STATE_SIZE_LIMIT = 256;
 
+  // serialized states without other key-value pairs, indexed by (p + 1) * (MAX_R + 2) + (r + 1)
+  private static final String[] SERIALIZED_P_AND_R_VALUES = createSerializedPAndRValues();
+
+  // packed states keyed by the serialized states without other key-value pairs
+  private static final Map<String, Integer> PACKED_P_AND_R_VALUES = createPackedPAndRValues();
+
+  private static final int EMPTY_PACKED = pack(INVALID_P, INVALID_R, false);
+
+  private static final ThreadLocal<StringBuilder> SERIALIZATION_BUFFER =
+      ThreadLocal.withInitial(() -> new StringBuilder(TRACE_STATE_SIZE_LIMIT));
+
   private int rval; // valid in the interval [0, MAX_R]
   private int pval; // valid in the interval [0, MAX_P]
 
-  private final List<String> otherKeyValuePairs;
+  // the parsed character sequence, if it contains other key-value pairs than p and r
+  @Nullable private final CharSequence otherKeyValuePairsSource;
 
-  private OtelTraceState(int rvalue, int pvalue, List<String> otherKeyValuePairs) {
+  private OtelTraceState(int rvalue, int pvalue, @Nullable CharSequence otherKeyValuePairsSource) {
     this.rval = rvalue;
     this.pval = pvalue;
-    this.otherKeyValuePairs = otherKeyValuePairs;
+    this.otherKeyValuePairsSource = otherKeyValuePairsSource;
   }
 
   private OtelTraceState() {
-    this(INVALID_R, INVALID_P, Collections.emptyList());
+    this(INVALID_R, INVALID_P, null);
+  }
+
+  private static String[] createSerializedPAndRValues() {
+    String[] serialized = new String[(MAX_P + 2) * (MAX_R + 2)];
+    for (int p = INVALID_P; p <= MAX_P; ++p) {
+      for (int r = INVALID_R; r <= MAX_R; ++r) {
+        StringBuilder sb = new StringBuilder();
+        appendPAndR(sb, p, r);
+        serialized[getSerializedPAndRValuesIndex(p, r)] = sb.toString();
+      }
+    }
+    return serialized;
+  }
+
+  private static Map<String, Integer> createPackedPAndRValues() {
+    Map<String, Integer> packed = new HashMap<>(2 * SERIALIZED_P_AND_R_VALUES.length);
+    for (int p = INVALID_P; p <= MAX_P; ++p) {
+      for (int r = INVALID_R; r <= MAX_R; ++r) {
+        packed.put(
+            SERIALIZED_P_AND_R_VALUES[getSerializedPAndRValuesIndex(p, r)], pack(p, r, false));
+      }
+    }
+    return packed;
+  }
+
+  private static int getSerializedPAndRValuesIndex(int p, int r) {
+    return (p + 1) * (MAX_R + 2) + (r + 1);
   }
 
   public boolean hasValidR() {
@@ -83,36 +130,84 @@ final class OtelTraceState {
     }
   }
 
+  /**
+   * Returns {@code true} if this state contains other key-value pairs than the p- and r-values.
+   *
+   * @return {@code true} if there are other key-value pairs
+   */
+  public boolean hasOtherKeyValuePairs() {
+    return otherKeyValuePairsSource != null;
+  }
+
   /**
    * Returns a string representing this state.
    *
    * @return a string
    */
   public String serialize() {
-    StringBuilder sb = new StringBuilder();
-    if (hasValidP()) {
-      sb.append("p:").append(pval);
+    if (otherKeyValuePairsSource == null) {
+      return SERIALIZED_P_AND_R_VALUES[getSerializedPAndRValuesIndex(pval, rval)];
     }
-    if (hasValidR()) {
-      if (sb.length() > 0) {
-        sb.append(';');
-      }
-      sb.append("r:").append(rval);
+    StringBuilder sb = SERIALIZATION_BUFFER.get();
+    sb.setLength(0);
+    serializeTo(sb);
+    return sb.toString();
+  }
+
+  /**
+   * Appends the string representing this state to the given buffer.
+   *
+   * <p>The buffer is expected to be empty, as the size limit of the trace state entry is applied to
+   * the whole buffer.
+   *
+   * @param sb the buffer
+   */
+  public void serializeTo(StringBuilder sb) {
+    appendPAndR(sb, pval, rval);
+    CharSequence ts = otherKeyValuePairsSource;
+    if (ts == null) {
+      return;
     }
-    for (String pair : otherKeyValuePairs) {
-      int ex = sb.length();
-      if (ex != 0) {
-        ex += 1;
+    // the source has already been validated by parse, hence key-value pairs are separated by ';'
+    int len = ts.length();
+    int startPos = 0;
+    while (startPos < len) {
+      int separatorPos = startPos;
+      while (separatorPos < len && ts.charAt(separatorPos) != ';') {
+        separatorPos++;
       }
-      if (ex + pair.length() > TRACE_STATE_SIZE_LIMIT) {
-        break;
+      if (!isPOrRKeyValuePair(ts, startPos)) {
+        int ex = sb.length();
+        if (ex != 0) {
+          ex += 1;
+        }
+        if (ex + separatorPos - startPos > TRACE_STATE_SIZE_LIMIT) {
+          break;
+        }
+        if (sb.length() > 0) {
+          sb.append(';');
+        }
+        sb.append(ts, startPos, separatorPos);
       }
+      startPos = separatorPos + 1;
+    }
+  }
+
+  private static void appendPAndR(StringBuilder sb, int pval, int rval) {
+    if (isValidP(pval)) {
+      sb.append("p:").append(pval);
+    }
+    if (isValidR(rval)) {
       if (sb.length() > 0) {
         sb.append(';');
       }
-      sb.append(pair);
+      sb.append("r:").append(rval);
     }
-    return sb.toString();
+  }
+
+  private static boolean isPOrRKeyValuePair(CharSequence ts, int startPos) {
+    char c = ts.charAt(startPos);
+    return (c == P_SUBKEY || c == R_SUBKEY) && ts.charAt(startPos + 1) == ':';
   }
 
   private static boolean isValueByte(char c) {
@@ -136,7 +231,7 @@ final class OtelTraceState {
   }
 
   private static int parseOneOrTwoDigitNumber(
-      String ts, int from, int to, int twoDigitMaxValue, int invalidValue) {
+      CharSequence ts, int from, int to, int twoDigitMaxValue, int invalidValue) {
     if (to - from == 1) {
       char c = ts.charAt(from);
       if (isDigit(c)) {
@@ -172,16 +267,54 @@ final class OtelTraceState {
    * @return the parsed OtelTraceState or a new empty OtelTraceState in case of parsing errors
    */
   public static OtelTraceState parse(@Nullable String ts) {
-    List<String> otherKeyValuePairs = null;
+    return parse((CharSequence) ts);
+  }
+
+  /**
+   * Parses the OtelTraceState from a given character sequence.
+   *
+   * <p>The p- and r-values are decoded without copying any characters. Other key-value pairs are
+   * extracted lazily from the given character sequence when serializing the returned state. If the
+   * character sequence is not a {@link String}, it is copied in case there are other key-value
+   * pairs, so later modifications of a mutable character sequence do not affect the returned state.
+   *
+   * <p>If the character sequence cannot be successfully parsed, a new empty OtelTraceState is
+   * returned.
+   *
+   * @param ts the character sequence
+   * @return the parsed OtelTraceState or a new empty OtelTraceState in case of parsing errors
+   */
+  public static OtelTraceState parse(@Nullable CharSequence ts) {
+    int packed = parsePacked(ts);
+    CharSequence otherKeyValuePairsSource = null;
+    if (ts != null && unpackHasOtherKeyValuePairs(packed)) {
+      otherKeyValuePairsSource = (ts instanceof String) ? ts : ts.toString();
+    }
+    return new OtelTraceState(unpackR(packed), unpackP(packed), otherKeyValuePairsSource);
+  }
+
+  /**
+   * Parses the given character sequence without allocating and returns the p-value, the r-value,
+   * and whether there are other key-value pairs, packed into a single {@code int}.
+   *
+   * <p>Use {@link #unpackP(int)}, {@link #unpackR(int)}, and {@link
+   * #unpackHasOtherKeyValuePairs(int)} to extract the individual values. If the character sequence
+   * cannot be successfully parsed, the result is the same as for an empty state.
+   *
+   * @param ts the character sequence
+   * @return the packed state
+   */
+  static int parsePacked(@Nullable CharSequence ts) {
+    boolean hasOtherKeyValuePairs = false;
     int p = INVALID_P;
     int r = INVALID_R;
 
-    if (ts == null || ts.isEmpty()) {
-      return new OtelTraceState();
+    if (ts == null || ts.length() == 0) {
+      return EMPTY_PACKED;
     }
 
     if (ts.length() > TRACE_STATE_SIZE_LIMIT) {
-      return new OtelTraceState();
+      return EMPTY_PACKED;
     }
 
     int startPos = 0;
@@ -196,7 +329,7 @@ final class OtelTraceState {
         }
       }
       if (colonPos == startPos || colonPos == len || ts.charAt(colonPos) != ':') {
-        return new OtelTraceState();
+        return EMPTY_PACKED;
       }
 
       int separatorPos = colonPos + 1;
@@ -209,14 +342,11 @@ final class OtelTraceState {
       } else if (colonPos - startPos == 1 && ts.charAt(startPos) == R_SUBKEY) {
         r = parseOneOrTwoDigitNumber(ts, colonPos + 1, separatorPos, MAX_R, INVALID_R);
       } else {
-        if (otherKeyValuePairs == null) {
-          otherKeyValuePairs = new ArrayList<>();
-        }
-        otherKeyValuePairs.add(ts.substring(startPos, separatorPos));
+        hasOtherKeyValuePairs = true;
       }
 
       if (separatorPos < len && ts.charAt(separatorPos) != ';') {
-        return new OtelTraceState();
+        return EMPTY_PACKED;
       }
 
       if (separatorPos == len) {
@@ -227,12 +357,84 @@ final class OtelTraceState {
 
       // test for a trailing ;
       if (startPos == len) {
-        return new OtelTraceState();
+        return EMPTY_PACKED;
       }
     }
 
-    return new OtelTraceState(
-        r, p, (otherKeyValuePairs != null) ? otherKeyValuePairs : Collections.emptyList());
+    return pack(p, r, hasOtherKeyValuePairs);
+  }
+
+  /**
+   * Returns the packed state like {@link #parsePacked(CharSequence)}, but looks up states without
+   * other key-value pairs in a precomputed table instead of parsing them.
+   *
+   * <p>The lookup is cheap for the strings returned by {@link #serialize(int, int)}, which are used
+   * for the {@code ot} entries of the trace states set by a {@link ConsistentSampler}.
+   *
+   * @param ts the string
+   * @return the packed state
+   */
+  static int getPacked(@Nullable String ts) {
+    if (ts == null) {
+      return EMPTY_PACKED;
+    }
+    Integer packed = PACKED_P_AND_R_VALUES.get(ts);
+    return packed != null ? packed : parsePacked(ts);
+  }
+
+  private static int pack(int p, int r, boolean hasOtherKeyValuePairs) {
+    return ((p - INVALID_P) << 8) | (r - INVALID_R) | (hasOtherKeyValuePairs ? 1 << 16 : 0);
+  }
+
+  /**
+   * Returns the p-value of a state packed by {@link #parsePacked(CharSequence)}.
+   *
+   * @param packed the packed state
+   * @return the p-value
+   */
+  static int unpackP(int packed) {
+    return ((packed >>> 8) & 0xFF) + INVALID_P;
+  }
+
+  /**
+   * Returns the r-value of a state packed by {@link #parsePacked(CharSequence)}.
+   *
+   * @param packed the packed state
+   * @return the r-value
+   */
+  static int unpackR(int packed) {
+    return (packed & 0xFF) + INVALID_R;
+  }
+
+  /**
+   * Returns {@code true} if a state packed by {@link #parsePacked(CharSequence)} contains other
+   * key-value pairs than the p- and r-values.
+   *
+   * @param packed the packed state
+   * @return {@code true} if there are other key-value pairs
+   */
+  static boolean unpackHasOtherKeyValuePairs(int packed) {
+    return (packed & (1 << 16)) != 0;
+  }
+
+  /**
+   * Returns the string representing a state with the given p- and r-values and no other key-value
+   * pairs.
+   *
+   * <p>Invalid p- or r-values are omitted. The returned strings are precomputed.
+   *
+   * @param pval the p-value
+   * @param rval the r-value
+   * @return a string
+   */
+  static String serialize(int pval, int rval) {
+    if (!isValidP(pval)) {
+      pval = INVALID_P;
+    }
+    if (!isValidR(rval)) {
+      rval = INVALID_R;
+    }
+    return SERIALIZED_P_AND_R_VALUES[getSerializedPAndRValuesIndex(pval, rval)];
   }
 
   public int getR() {
@@ -38,4 +38,20 @@ package io.opentelemetry.contrib.sampler.consistent;
 public interface RValueGenerator {
 
   int generate(String traceId);
+
+  /**
+   * Returns an r-value generator that derives the r-value from the trace ID instead of using a
+   * random number generator.
+   *
+   * <p>The r-value is given by the number of leading zeros of the 56 rightmost bits of the trace
+   * ID. Therefore, this generator must only be used if these bits are uniformly distributed, which
+   * is the case for trace IDs generated by the SDK and for trace IDs with the random flag of W3C
+   * Trace Context Level 2. As the r-value only depends on the trace ID, all participants of a trace
+   * using this generator obtain the same r-value, even if it is not propagated.
+   *
+   * @return an r-value generator
+   */
+  static RValueGenerator traceIdBased() {
+    return RValueGenerators.getTraceIdBased();
+  }
 }
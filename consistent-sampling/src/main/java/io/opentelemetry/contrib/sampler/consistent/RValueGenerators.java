@@ -7,16 +7,64 @@ package io.opentelemetry.contrib.sampler.consistent;
 
 final class RValueGenerators {
 
+  // the number of trailing hexadecimal digits of the trace ID that are expected to be random
+  private static final int NUMBER_OF_RANDOM_HEX_DIGITS = 14;
+
+  private static final int NUMBER_OF_RANDOM_BITS = 4 * NUMBER_OF_RANDOM_HEX_DIGITS;
+
+  private static final int TRACE_ID_LENGTH = 32;
+
   private static final RValueGenerator DEFAULT = createDefault();
 
+  private static final RValueGenerator TRACE_ID_BASED = RValueGenerators::generateFromTraceId;
+
   static RValueGenerator getDefault() {
     return DEFAULT;
   }
 
+  static RValueGenerator getTraceIdBased() {
+    return TRACE_ID_BASED;
+  }
+
   private static RValueGenerator createDefault() {
     RandomGenerator randomGenerator = RandomGenerator.getDefault();
     return s -> randomGenerator.numberOfLeadingZerosOfRandomLong();
   }
 
+  private static int hexDigitValue(char c) {
+    if (c >= '0' && c <= '9') {
+      return c - '0';
+    }
+    if (c >= 'a' && c <= 'f') {
+      return c - 'a' + 10;
+    }
+    return -1;
+  }
+
+  /**
+   * Derives the r-value from the 56 rightmost bits of the trace ID, which are random for trace IDs
+   * as generated by the SDK or flagged as random by W3C Trace Context Level 2. The r-value is the
+   * number of leading zeros of these bits. Only if all of them are zero, which happens with
+   * probability 2^-56, a random number generator is used to extend the r-value. If the trace ID is
+   * not valid, the r-value is generated by the default generator.
+   */
+  private static int generateFromTraceId(String traceId) {
+    if (traceId.length() != TRACE_ID_LENGTH) {
+      return DEFAULT.generate(traceId);
+    }
+    long randomBits = 0;
+    for (int i = TRACE_ID_LENGTH - NUMBER_OF_RANDOM_HEX_DIGITS; i < TRACE_ID_LENGTH; ++i) {
+      int digit = hexDigitValue(traceId.charAt(i));
+      if (digit < 0) {
+        return DEFAULT.generate(traceId);
+      }
+      randomBits = (randomBits << 4) | digit;
+    }
+    if (randomBits != 0) {
+      return Long.numberOfLeadingZeros(randomBits) - (Long.SIZE - NUMBER_OF_RANDOM_BITS);
+    }
+    return NUMBER_OF_RANDOM_BITS + DEFAULT.generate(traceId);
+  }
+
   private RValueGenerators() {}
 }
@@ -75,11 +75,30 @@ final class RandomGenerator {
      * @return the number of leading zeros
      */
     private int numberOfLeadingZerosOfRandomLong(LongSupplier threadSafeRandomLongSupplier) {
+      // Counts the consecutive 1-bits of the random bit stream, which consumes exactly the same
+      // bits as calling nextRandomBit until it returns false, but processes all buffered bits at
+      // once.
       int count = 0;
-      while (count < Long.SIZE && nextRandomBit(threadSafeRandomLongSupplier)) {
-        count += 1;
+      while (true) {
+        int position = bitCount & 0x3F;
+        if (position == 0) {
+          randomBits = threadSafeRandomLongSupplier.getAsLong();
+        }
+        int numberOfAvailableBits = Long.SIZE - position;
+        int numberOfOneBits = Long.numberOfTrailingZeros(~(randomBits >>> position));
+        int numberOfMissingBits = Long.SIZE - count;
+        if (numberOfOneBits >= numberOfMissingBits) {
+          bitCount += numberOfMissingBits;
+          return Long.SIZE;
+        }
+        if (numberOfOneBits == numberOfAvailableBits) {
+          bitCount += numberOfOneBits;
+          count += numberOfOneBits;
+        } else {
+          bitCount += numberOfOneBits + 1;
+          return count + numberOfOneBits;
+        }
       }
-      return count;
     }
   }
 
@@ -133,6 +152,40 @@ final class RandomGenerator {
     return threadLocalData.get().numberOfLeadingZerosOfRandomLong(threadSafeRandomLongSupplier);
   }
 
+  /**
+   * Fills the given array with the numbers of leading zeros of uniform random 64-bit integers.
+   *
+   * <p>The values are geometrically distributed with success probability 1/2, capped at 64, and
+   * have the same distribution as those returned by {@link #numberOfLeadingZerosOfRandomLong()}. On
+   * average, a single random {@code long} is sufficient for 32 values.
+   *
+   * @param values the array to be filled
+   */
+  public void fillWithNumberOfLeadingZerosOfRandomLongs(int[] values) {
+    fillWithNumberOfLeadingZerosOfRandomLongs(values, 0, values.length);
+  }
+
+  /**
+   * Fills the given range of the given array with the numbers of leading zeros of uniform random
+   * 64-bit integers.
+   *
+   * @param values the array to be filled
+   * @param fromIndex the index of the first element (inclusive) to be filled
+   * @param toIndex the index of the last element (exclusive) to be filled
+   * @throws IndexOutOfBoundsException if {@code 0 <= fromIndex <= toIndex <= values.length} is
+   *     violated
+   * @see #fillWithNumberOfLeadingZerosOfRandomLongs(int[])
+   */
+  public void fillWithNumberOfLeadingZerosOfRandomLongs(int[] values, int fromIndex, int toIndex) {
+    if (fromIndex < 0 || fromIndex > toIndex || toIndex > values.length) {
+      throw new IndexOutOfBoundsException();
+    }
+    ThreadLocalData data = threadLocalData.get();
+    for (int i = fromIndex; i < toIndex; ++i) {
+      values[i] = data.numberOfLeadingZerosOfRandomLong(threadSafeRandomLongSupplier);
+    }
+  }
+
   /**
    * Returns a pseudorandomly chosen {@code long} value.
    *
@@ -0,0 +1,318 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.sampler.consistent;
+
+import static io.opentelemetry.contrib.sampler.consistent.Striping.PADDING_SHIFT;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
+
+/**
+ * Estimates the sampling probability needed to limit the rate of sampled spans, using the
+ * exponential smoothing described in {@link ConsistentRateLimitingSampler}.
+ *
+ * <p>To avoid contention, the recursion is not evaluated for every span. Instead, spans only add
+ * their weights to striped accumulators, which are merged into {@code A(n)} and {@code C(n)} every
+ * {@code adaptationTime / MERGES_PER_ADAPTATION_TIME}, or as soon as a stripe has accumulated
+ * {@code SPANS_PER_MERGE} spans. In between, the sampling probability computed by the last merge is
+ * returned. A merge treats the time since the previous merge as a single waiting time, which is
+ * exact if there was a single span in between, and only adds a negligible error otherwise, as the
+ * merge interval is small compared to the adaptation time.
+ *
+ * <p>To accumulate the weights of spans that occurred at different times without knowing the time
+ * of the next merge, they are scaled by {@code w(n) := exp((t(n) - T) / adaptationTime)} relative
+ * to some reference time {@code T}, which turns the decayed sum into a plain sum. The reference
+ * time is occasionally moved forward to keep the scale factors bounded, and {@code w(n)} is
+ * computed using a precomputed table instead of {@link Math#exp(double)}. Accumulators of the
+ * previous reference time are kept until the next merge, so that weights added concurrently to them
+ * are not lost.
+ *
+ * <p>Every span contributes a weight to {@code C(n)}, which is 1 for plain rate limiting. A weight
+ * smaller than 1 can be used to count only the expected fraction of a span that passes an upstream
+ * sampling stage.
+ */
+final class SamplingProbabilityEstimator {
+
+  // the reference time is moved forward, if the scale factor exceeds exp(REBASE_THRESHOLD)
+  private static final double REBASE_THRESHOLD = 32;
+
+  // spans with larger scale factors, which only occur after a long pause, force a rebase first
+  private static final double MAX_EXPONENT = 2 * REBASE_THRESHOLD;
+
+  private static final int MERGES_PER_ADAPTATION_TIME = 64;
+
+  private static final int SPANS_PER_MERGE = 16;
+
+  // the scaled weights, the number of spans since the last merge, and the latest nano time
+  private static final int SCALED_WEIGHT_OFFSET = 0;
+  private static final int SPAN_COUNT_OFFSET = 1;
+  private static final int NANO_TIME_OFFSET = 2;
+  private static final int STRIPE_LENGTH = 3;
+
+  private static final int EXP2_TABLE_SIZE = 1024;
+
+  // EXP2_TABLE[i] = 2^(i / EXP2_TABLE_SIZE)
+  private static final double[] EXP2_TABLE = createExp2Table();
+
+  private static final double LOG2_E = 1. / Math.log(2.);
+
+  private static double[] createExp2Table() {
+    double[] table = new double[EXP2_TABLE_SIZE + 1];
+    for (int i = 0; i <= EXP2_TABLE_SIZE; ++i) {
+      table[i] = Math.pow(2., i / (double) EXP2_TABLE_SIZE);
+    }
+    return table;
+  }
+
+  /**
+   * Approximates {@code exp(x)} using linear interpolation of a precomputed table. The relative
+   * error is smaller than {@code 1e-7}.
+   *
+   * @param x the exponent, must be finite
+   * @return an approximation of {@code exp(x)}
+   */
+  // visible for testing
+  static double exp(double x) {
+    double y = x * LOG2_E;
+    double integralPart = Math.floor(y);
+    double scaledFractionalPart = (y - integralPart) * EXP2_TABLE_SIZE;
+    // for tiny negative y, y - floor(y) rounds to 1, in which case the upper table entry is used
+    int index = Math.min((int) scaledFractionalPart, EXP2_TABLE_SIZE - 1);
+    double lower = EXP2_TABLE[index];
+    double upper = EXP2_TABLE[index + 1];
+    double mantissa = lower + (upper - lower) * (scaledFractionalPart - index);
+    return Math.scalb(mantissa, (int) Math.max(Integer.MIN_VALUE, integralPart));
+  }
+
+  /**
+   * Striped accumulators of the weights scaled relative to a common reference time. Until an update
+   * fails due to contention, only a single base stripe is used.
+   */
+  private static final class Accumulators {
+    private final long referenceNanoTime;
+    private final AtomicLongArray base = new AtomicLongArray(STRIPE_LENGTH);
+    @Nullable private volatile AtomicLongArray stripes;
+
+    private Accumulators(long referenceNanoTime) {
+      this.referenceNanoTime = referenceNanoTime;
+    }
+
+    /** Adds a scaled weight and returns the number of spans of the stripe since the last drain. */
+    private long add(double scaledWeight, long nanoTime, int numberOfStripes) {
+      AtomicLongArray stripes = this.stripes;
+      if (stripes == null) {
+        if (tryAdd(base, 0, scaledWeight)) {
+          return record(base, 0, nanoTime);
+        }
+        stripes = getOrCreateStripes(numberOfStripes);
+      }
+      int probe = Striping.getProbe();
+      while (true) {
+        int index = (probe & (numberOfStripes - 1)) << PADDING_SHIFT;
+        if (tryAdd(stripes, index, scaledWeight)) {
+          return record(stripes, index, nanoTime);
+        }
+        probe = Striping.advanceProbe(probe);
+      }
+    }
+
+    private static boolean tryAdd(AtomicLongArray stripes, int index, double scaledWeight) {
+      long current = stripes.get(index + SCALED_WEIGHT_OFFSET);
+      long updated = Double.doubleToRawLongBits(Double.longBitsToDouble(current) + scaledWeight);
+      return stripes.compareAndSet(index + SCALED_WEIGHT_OFFSET, current, updated);
+    }
+
+    private static long record(AtomicLongArray stripes, int index, long nanoTime) {
+      long lastNanoTime = stripes.get(index + NANO_TIME_OFFSET);
+      while (nanoTime > lastNanoTime
+          && !stripes.compareAndSet(index + NANO_TIME_OFFSET, lastNanoTime, nanoTime)) {
+        lastNanoTime = stripes.get(index + NANO_TIME_OFFSET);
+      }
+      return stripes.incrementAndGet(index + SPAN_COUNT_OFFSET);
+    }
+
+    private synchronized AtomicLongArray getOrCreateStripes(int numberOfStripes) {
+      AtomicLongArray stripes = this.stripes;
+      if (stripes == null) {
+        stripes = new AtomicLongArray(numberOfStripes << PADDING_SHIFT);
+        this.stripes = stripes;
+      }
+      return stripes;
+    }
+
+    /** Resets the accumulators and returns the sum of the scaled weights. */
+    private double drain(int numberOfStripes) {
+      double scaledWeights = drain(base, 0);
+      AtomicLongArray stripes = this.stripes;
+      if (stripes != null) {
+        for (int i = 0; i < numberOfStripes; ++i) {
+          scaledWeights += drain(stripes, i << PADDING_SHIFT);
+        }
+      }
+      return scaledWeights;
+    }
+
+    private static double drain(AtomicLongArray stripes, int index) {
+      stripes.set(index + SPAN_COUNT_OFFSET, 0);
+      return Double.longBitsToDouble(stripes.getAndSet(index + SCALED_WEIGHT_OFFSET, 0L));
+    }
+
+    private long getLastNanoTime(int numberOfStripes) {
+      long lastNanoTime = base.get(NANO_TIME_OFFSET);
+      AtomicLongArray stripes = this.stripes;
+      if (stripes != null) {
+        for (int i = 0; i < numberOfStripes; ++i) {
+          lastNanoTime =
+              Math.max(lastNanoTime, stripes.get((i << PADDING_SHIFT) + NANO_TIME_OFFSET));
+        }
+      }
+      return lastNanoTime;
+    }
+  }
+
+  private final double inverseAdaptationTimeNanos;
+  private final double targetSpansPerNanosecondLimit;
+  private final boolean isAdaptationTimeZero;
+  private final long mergeIntervalNanos;
+  private final int numberOfStripes;
+  private final ReentrantLock mergeLock = new ReentrantLock();
+  private volatile Accumulators accumulators;
+  // accumulators of the previous reference time, drained by the next merge, guarded by mergeLock
+  @Nullable private Accumulators retiredAccumulators;
+  // the smoothed quantities as of the last merge, guarded by mergeLock
+  private double effectiveWindowCount;
+  private double effectiveWindowNanos;
+  private volatile long lastMergeNanoTime;
+  private volatile long nextMergeNanoTime;
+  private volatile double samplingProbability = Double.POSITIVE_INFINITY;
+
+  /**
+   * Constructor.
+   *
+   * @param targetSpansPerSecondLimit the desired spans per second limit, must be nonnegative
+   * @param adaptationTimeSeconds the typical time to adapt to a new load (time constant used for
+   *     exponential smoothing), must be nonnegative
+   * @param initialNanoTime the nano time at which the estimation starts
+   */
+  SamplingProbabilityEstimator(
+      double targetSpansPerSecondLimit, double adaptationTimeSeconds, long initialNanoTime) {
+    this(
+        targetSpansPerSecondLimit,
+        adaptationTimeSeconds,
+        initialNanoTime,
+        Striping.DEFAULT_NUMBER_OF_STRIPES);
+  }
+
+  // Visible for testing
+  SamplingProbabilityEstimator(
+      double targetSpansPerSecondLimit,
+      double adaptationTimeSeconds,
+      long initialNanoTime,
+      int numberOfStripes) {
+    this.isAdaptationTimeZero = adaptationTimeSeconds == 0.0;
+    // without smoothing, weights are not scaled and every span may merge
+    this.inverseAdaptationTimeNanos = isAdaptationTimeZero ? 0 : 1e-9 / adaptationTimeSeconds;
+    this.targetSpansPerNanosecondLimit = 1e-9 * targetSpansPerSecondLimit;
+    this.mergeIntervalNanos = (long) (1e9 * adaptationTimeSeconds / MERGES_PER_ADAPTATION_TIME);
+    this.numberOfStripes = numberOfStripes;
+    this.accumulators = new Accumulators(initialNanoTime);
+    this.lastMergeNanoTime = initialNanoTime;
+    this.nextMergeNanoTime = initialNanoTime;
+  }
+
+  /**
+   * Returns the latest nano time passed to {@link #estimate(long, double)}, or the initial nano
+   * time if there was none.
+   *
+   * @return the last observed nano time
+   */
+  long getLastNanoTime() {
+    return Math.max(lastMergeNanoTime, accumulators.getLastNanoTime(numberOfStripes));
+  }
+
+  /**
+   * Records a span and returns the estimated sampling probability needed to meet the target rate.
+   *
+   * @param currentNanoTime the nano time of the span
+   * @param weight the weight of the span, must be in the range [0,1]
+   * @return the estimated sampling probability, may be greater than 1 or even infinite if the
+   *     target rate is not reached
+   */
+  double estimate(long currentNanoTime, double weight) {
+    Accumulators currentAccumulators = accumulators;
+    double exponent =
+        (currentNanoTime - currentAccumulators.referenceNanoTime) * inverseAdaptationTimeNanos;
+    if (exponent > MAX_EXPONENT) {
+      mergeLock.lock();
+      try {
+        // moves the reference time forward before the span is added
+        merge(currentNanoTime);
+        Accumulators rebasedAccumulators = accumulators;
+        double scaleFactor =
+            exp(
+                (currentNanoTime - rebasedAccumulators.referenceNanoTime)
+                    * inverseAdaptationTimeNanos);
+        rebasedAccumulators.add(weight * scaleFactor, currentNanoTime, numberOfStripes);
+        merge(currentNanoTime);
+      } finally {
+        mergeLock.unlock();
+      }
+      return samplingProbability;
+    }
+    long spanCount =
+        currentAccumulators.add(weight * exp(exponent), currentNanoTime, numberOfStripes);
+    if ((currentNanoTime >= nextMergeNanoTime || spanCount >= SPANS_PER_MERGE)
+        && mergeLock.tryLock()) {
+      try {
+        merge(currentNanoTime);
+      } finally {
+        mergeLock.unlock();
+      }
+    }
+    return samplingProbability;
+  }
+
+  private void merge(long currentNanoTime) {
+    long previousMergeNanoTime = lastMergeNanoTime;
+    // never move the merge time backwards, otherwise the time in between would be counted twice
+    long mergeNanoTime = Math.max(currentNanoTime, previousMergeNanoTime);
+    long nanoTimeDelta = mergeNanoTime - previousMergeNanoTime;
+    // without smoothing only the last waiting time is considered
+    double decayFactor =
+        isAdaptationTimeZero ? 0 : exp(-nanoTimeDelta * inverseAdaptationTimeNanos);
+
+    double count = effectiveWindowCount * decayFactor;
+    Accumulators retired = retiredAccumulators;
+    if (retired != null) {
+      count += drain(retired, mergeNanoTime);
+      retiredAccumulators = null;
+    }
+    Accumulators current = accumulators;
+    count += drain(current, mergeNanoTime);
+    double windowNanos = effectiveWindowNanos * decayFactor + nanoTimeDelta;
+
+    effectiveWindowCount = count;
+    effectiveWindowNanos = windowNanos;
+    lastMergeNanoTime = mergeNanoTime;
+    if ((mergeNanoTime - current.referenceNanoTime) * inverseAdaptationTimeNanos
+        > REBASE_THRESHOLD) {
+      retiredAccumulators = current;
+      accumulators = new Accumulators(mergeNanoTime);
+    }
+    nextMergeNanoTime = mergeNanoTime + mergeIntervalNanos;
+    samplingProbability =
+        count > 0
+            ? (windowNanos * targetSpansPerNanosecondLimit) / count
+            : Double.POSITIVE_INFINITY;
+  }
+
+  private double drain(Accumulators accumulators, long mergeNanoTime) {
+    // scales the weights from the reference time of the accumulators to the merge time
+    return accumulators.drain(numberOfStripes)
+        * exp((accumulators.referenceNanoTime - mergeNanoTime) * inverseAdaptationTimeNanos);
+  }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.sampler.consistent;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import org.assertj.core.data.Percentage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ConsistentKeyedRateLimitingSamplerTest {
+
+  private long[] nanoTime;
+  private LongSupplier nanoTimeSupplier;
+  private Context parentContext;
+  private String traceId;
+  private SpanKind spanKind;
+  private List<LinkData> parentLinks;
+
+  @BeforeEach
+  void init() {
+    nanoTime = new long[] {0L};
+    nanoTimeSupplier = () -> nanoTime[0];
+    parentContext = Context.root();
+    traceId = "0123456789abcdef0123456789abcdef";
+    spanKind = SpanKind.SERVER;
+    parentLinks = Collections.emptyList();
+  }
+
+  private void advanceTime(long nanosIncrement) {
+    nanoTime[0] += nanosIncrement;
+  }
+
+  private long getCurrentTimeNanos() {
+    return nanoTime[0];
+  }
+
+  private ConsistentKeyedRateLimitingSampler createSamplerPerSpanName(
+      double targetSpansPerSecondLimitPerSpanName,
+      double targetSpansPerSecondLimit,
+      int maxNumberOfSpanNames) {
+    return (ConsistentKeyedRateLimitingSampler)
+        ConsistentSampler.rateLimitedPerKey(
+            (spanName, attributes) -> spanName,
+            "spanName",
+            targetSpansPerSecondLimitPerSpanName,
+            targetSpansPerSecondLimit,
+            5,
+            maxNumberOfSpanNames,
+            rValueGenerator(),
+            nanoTimeSupplier);
+  }
+
+  private boolean isSampled(ConsistentSampler sampler, String name, Attributes attributes) {
+    return SamplingDecision.RECORD_AND_SAMPLE.equals(
+        sampler
+            .shouldSample(parentContext, traceId, name, spanKind, attributes, parentLinks)
+            .getDecision());
+  }
+
+  private static boolean isInLast50Seconds(long nanoTime) {
+    return nanoTime > TimeUnit.SECONDS.toNanos(50) && nanoTime <= TimeUnit.SECONDS.toNanos(100);
+  }
+
+  @Test
+  void testHotSpanNameDoesNotStarveOtherSpanNames() {
+    ConsistentSampler sampler = createSamplerPerSpanName(100, 1000, 10);
+
+    // 10000 spans per second named "hot" and 10 spans per second named "cold"
+    long nanosBetweenSpans = TimeUnit.MICROSECONDS.toNanos(100);
+    int numSpans = 1000000;
+
+    long numSampledHotSpans = 0;
+    long numSampledColdSpans = 0;
+    for (int i = 0; i < numSpans; ++i) {
+      advanceTime(nanosBetweenSpans);
+      boolean isCold = i % 1000 == 0;
+      boolean isSampled = isSampled(sampler, isCold ? "cold" : "hot", Attributes.empty());
+      if (isSampled && isInLast50Seconds(getCurrentTimeNanos())) {
+        if (isCold) {
+          numSampledColdSpans += 1;
+        } else {
+          numSampledHotSpans += 1;
+        }
+      }
+    }
+
+    assertThat(numSampledHotSpans / 50.).isCloseTo(100, Percentage.withPercentage(5));
+    assertThat(numSampledColdSpans / 50.).isEqualTo(10);
+  }
+
+  @Test
+  void testGlobalLimit() {
+    int numSpanNames = 20;
+    ConsistentSampler sampler = createSamplerPerSpanName(100, 500, numSpanNames);
+
+    // 1000 spans per second for each span name, in total 20000 spans per second
+    long nanosBetweenSpans = TimeUnit.MICROSECONDS.toNanos(50);
+    int numSpans = 2000000;
+    String[] spanNames = new String[numSpanNames];
+    for (int k = 0; k < numSpanNames; ++k) {
+      spanNames[k] = "name" + k;
+    }
+
+    long[] numSampledSpans = new long[numSpanNames];
+    for (int i = 0; i < numSpans; ++i) {
+      advanceTime(nanosBetweenSpans);
+      int k = i % numSpanNames;
+      if (isSampled(sampler, spanNames[k], Attributes.empty())
+          && isInLast50Seconds(getCurrentTimeNanos())) {
+        numSampledSpans[k] += 1;
+      }
+    }
+
+    // the per-span-name limits would allow 2000 spans per second, the global limit is shared
+    // equally
+    long totalNumSampledSpans = 0;
+    for (int k = 0; k < numSpanNames; ++k) {
+      assertThat(numSampledSpans[k] / 50.).isCloseTo(25, Percentage.withPercentage(10));
+      totalNumSampledSpans += numSampledSpans[k];
+    }
+    assertThat(totalNumSampledSpans / 50.).isCloseTo(500, Percentage.withPercentage(5));
+  }
+
+  @Test
+  void testRateLimitedPerAttribute() {
+    AttributeKey<String> routeKey = AttributeKey.stringKey("http.route");
+    ConsistentSampler sampler =
+        ConsistentSampler.rateLimitedPerAttribute(routeKey, 100, 1000, 5, 10);
+    assertThat(sampler.getDescription())
+        .isEqualTo(
+            "ConsistentKeyedRateLimitingSampler{attribute=http.route, 100.000000, 1000.000000,"
+                + " 5.000000, 10}");
+
+    ConsistentKeyedRateLimitingSampler keyedSampler =
+        (ConsistentKeyedRateLimitingSampler)
+            ConsistentSampler.rateLimitedPerKey(
+                (spanName, attributes) -> {
+                  Object value = attributes.get(routeKey);
+                  return value != null ? value : ConsistentKeyedRateLimitingSampler.MISSING_KEY;
+                },
+                "attribute=http.route",
+                100,
+                1000,
+                5,
+                10,
+                rValueGenerator(),
+                nanoTimeSupplier);
+
+    Attributes hotRoute = Attributes.of(routeKey, "/hot");
+    Attributes coldRoute = Attributes.of(routeKey, "/cold");
+
+    long nanosBetweenSpans = TimeUnit.MICROSECONDS.toNanos(100);
+    int numSpans = 1000000;
+
+    long numSampledHotSpans = 0;
+    long numSampledColdSpans = 0;
+    long numSampledSpansWithoutRoute = 0;
+    for (int i = 0; i < numSpans; ++i) {
+      advanceTime(nanosBetweenSpans);
+      Attributes attributes;
+      if (i % 1000 == 0) {
+        attributes = coldRoute;
+      } else if (i % 1000 == 1) {
+        attributes = Attributes.empty();
+      } else {
+        attributes = hotRoute;
+      }
+      // the span name is ignored
+      boolean isSampled = isSampled(keyedSampler, "name" + (i % 7), attributes);
+      if (isSampled && isInLast50Seconds(getCurrentTimeNanos())) {
+        if (attributes == coldRoute) {
+          numSampledColdSpans += 1;
+        } else if (attributes == hotRoute) {
+          numSampledHotSpans += 1;
+        } else {
+          numSampledSpansWithoutRoute += 1;
+        }
+      }
+    }
+
+    assertThat(keyedSampler.getNumberOfKeys()).isEqualTo(3);
+    assertThat(numSampledHotSpans / 50.).isCloseTo(100, Percentage.withPercentage(5));
+    assertThat(numSampledColdSpans / 50.).isEqualTo(10);
+    assertThat(numSampledSpansWithoutRoute / 50.).isEqualTo(10);
+  }
+
+  @Test
+  void testLeastRecentlyUsedSpanNamesAreEvicted() {
+    ConsistentKeyedRateLimitingSampler sampler = createSamplerPerSpanName(100, 1000, 3);
+
+    for (String name : new String[] {"a", "b", "c", "a", "d"}) {
+      advanceTime(TimeUnit.MILLISECONDS.toNanos(1));
+      // the first span of a new span name is always sampled
+      assertThat(isSampled(sampler, name, Attributes.empty())).isTrue();
+    }
+    assertThat(sampler.getNumberOfKeys()).isEqualTo(3);
+
+    // "b" was evicted, hence its next span is sampled as if it was new
+    advanceTime(TimeUnit.MILLISECONDS.toNanos(1));
+    assertThat(isSampled(sampler, "b", Attributes.empty())).isTrue();
+    assertThat(sampler.getNumberOfKeys()).isEqualTo(3);
+
+    for (int i = 0; i < 1000; ++i) {
+      advanceTime(TimeUnit.MILLISECONDS.toNanos(1));
+      isSampled(sampler, "name" + i, Attributes.empty());
+    }
+    assertThat(sampler.getNumberOfKeys()).isEqualTo(3);
+  }
+
+  @Test
+  void testDescription() {
+    assertThat(ConsistentSampler.rateLimitedPerSpanName(100, 1000, 5, 10).getDescription())
+        .isEqualTo(
+            "ConsistentKeyedRateLimitingSampler{spanName, 100.000000, 1000.000000, 5.000000, 10}");
+  }
+
+  @Test
+  void testInvalidConfig() {
+    assertThatThrownBy(() -> ConsistentSampler.rateLimitedPerSpanName(-1, 1000, 5, 10))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> ConsistentSampler.rateLimitedPerSpanName(100, -1, 5, 10))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> ConsistentSampler.rateLimitedPerSpanName(100, 1000, -1, 10))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> ConsistentSampler.rateLimitedPerSpanName(100, 1000, 5, 0))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static RValueGenerator rValueGenerator() {
+    SplittableRandom random = new SplittableRandom(0L);
+    RandomGenerator randomGenerator = RandomGenerator.create(random::nextLong);
+    return s -> randomGenerator.numberOfLeadingZerosOfRandomLong();
+  }
+}
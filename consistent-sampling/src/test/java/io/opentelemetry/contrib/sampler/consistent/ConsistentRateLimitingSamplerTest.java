@@ -17,7 +17,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.LongSupplier;
 import org.assertj.core.data.Percentage;
 import org.junit.jupiter.api.BeforeEach;
@@ -197,6 +201,66 @@ class ConsistentRateLimitingSamplerTest {
         .isCloseTo(targetSpansPerSecondLimit, Percentage.withPercentage(5));
   }
 
+  @Test
+  void testConstantRateConcurrently() throws Exception {
+
+    double targetSpansPerSecondLimit = 1000;
+    double adaptationTimeSeconds = 5;
+    int numThreads = 8;
+    int numSpansPerThread = 125000;
+    long nanosBetweenSpans = TimeUnit.MICROSECONDS.toNanos(100);
+
+    // every span advances the shared clock, so the total span rate is the same as in
+    // testConstantRate
+    AtomicLong sharedNanoTime = new AtomicLong();
+    ThreadLocal<long[]> spanNanoTime = ThreadLocal.withInitial(() -> new long[1]);
+    ConsistentSampler sampler =
+        ConsistentSampler.rateLimited(
+            targetSpansPerSecondLimit,
+            adaptationTimeSeconds,
+            RValueGenerators.getDefault(),
+            () -> {
+              long nanoTime = sharedNanoTime.addAndGet(nanosBetweenSpans);
+              spanNanoTime.get()[0] = nanoTime;
+              return nanoTime;
+            });
+
+    ExecutorService executorService = Executors.newFixedThreadPool(numThreads);
+    List<Future<List<Long>>> futures = new ArrayList<>();
+    try {
+      for (int t = 0; t < numThreads; ++t) {
+        futures.add(
+            executorService.submit(
+                () -> {
+                  List<Long> spanSampledNanos = new ArrayList<>();
+                  for (int i = 0; i < numSpansPerThread; ++i) {
+                    SamplingResult samplingResult =
+                        sampler.shouldSample(
+                            parentContext, traceId, name, spanKind, attributes, parentLinks);
+                    if (SamplingDecision.RECORD_AND_SAMPLE.equals(samplingResult.getDecision())) {
+                      spanSampledNanos.add(spanNanoTime.get()[0]);
+                    }
+                  }
+                  return spanSampledNanos;
+                }));
+      }
+      List<Long> spanSampledNanos = new ArrayList<>();
+      for (Future<List<Long>> future : futures) {
+        spanSampledNanos.addAll(future.get());
+      }
+
+      long numSampledSpansInLast5Seconds =
+          spanSampledNanos.stream()
+              .filter(x -> x > TimeUnit.SECONDS.toNanos(95) && x <= TimeUnit.SECONDS.toNanos(100))
+              .count();
+
+      assertThat(numSampledSpansInLast5Seconds / 5.)
+          .isCloseTo(targetSpansPerSecondLimit, Percentage.withPercentage(5));
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
   private static RValueGenerator rValueGenerator() {
     SplittableRandom random = new SplittableRandom(0L);
     RandomGenerator randomGenerator = RandomGenerator.create(random::nextLong);
@@ -7,6 +7,7 @@ package io.opentelemetry.contrib.sampler.consistent;
 
 import static io.opentelemetry.contrib.sampler.consistent.ConsistentReservoirSamplingSpanProcessor.DEFAULT_EXPORT_TIMEOUT_NANOS;
 import static io.opentelemetry.contrib.sampler.consistent.TestUtil.verifyObservedPvaluesUsingGtest;
+import static java.util.Objects.requireNonNull;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatCode;
 import static org.assertj.core.api.AssertionsForClassTypes.assertThatThrownBy;
@@ -21,6 +22,7 @@ import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.when;
 
 import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.TraceState;
 import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.sdk.common.CompletableResultCode;
 import io.opentelemetry.sdk.trace.ReadableSpan;
@@ -33,15 +35,20 @@ import io.opentelemetry.sdk.trace.samplers.SamplingResult;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SplittableRandom;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import javax.annotation.Nullable;
 import org.hipparchus.distribution.discrete.BinomialDistribution;
@@ -49,6 +56,8 @@ import org.hipparchus.stat.inference.GTest;
 import org.hipparchus.stat.inference.TTest;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.ArgumentMatcher;
 import org.mockito.ArgumentMatchers;
 
@@ -161,6 +170,33 @@ class ConsistentReservoirSamplingSpanProcessorTest {
             () -> ConsistentReservoirSamplingSpanProcessor.create(exporter, 1, 1, 1, null))
         .isInstanceOf(NullPointerException.class)
         .hasMessage("randomGenerator");
+    assertThatThrownBy(
+            () ->
+                ConsistentReservoirSamplingSpanProcessor.create(
+                    exporter, 1, 1, 1, RandomGenerator.getDefault(), 3))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("number of stripes must be a positive power of two");
+    assertThatThrownBy(() -> ConsistentReservoirSamplingSpanProcessor.create(exporter, 1, 1, 1, -1))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("number of conversion threads must be nonnegative");
+    assertThatThrownBy(
+            () ->
+                ConsistentReservoirSamplingSpanProcessor.create(
+                    exporter, null, Collections.emptyMap(), 1, 1, 1))
+        .isInstanceOf(NullPointerException.class)
+        .hasMessage("classifier");
+    assertThatThrownBy(
+            () ->
+                ConsistentReservoirSamplingSpanProcessor.create(
+                    exporter, ReadableSpan::getName, Collections.emptyMap(), 0, 1, 1))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("reservoir size must be positive");
+    assertThatThrownBy(
+            () ->
+                ConsistentReservoirSamplingSpanProcessor.create(
+                    exporter, ReadableSpan::getName, Collections.singletonMap("a", -1), 1, 1, 1))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("reservoir size must be positive");
   }
 
   @Test
@@ -243,9 +279,11 @@ class ConsistentReservoirSamplingSpanProcessorTest {
 
   @Test
   void ignoresNullSpans() {
+    SpanExporter exporter = mock(SpanExporter.class);
+    when(exporter.shutdown()).thenReturn(CompletableResultCode.ofSuccess());
     SpanProcessor processor =
         ConsistentReservoirSamplingSpanProcessor.create(
-            mock(SpanExporter.class), RESERVOIR_SIZE, EXPORT_PERIOD_100_MILLIS_AS_NANOS);
+            exporter, RESERVOIR_SIZE, EXPORT_PERIOD_100_MILLIS_AS_NANOS);
     assertThatCode(
             () -> {
               processor.onStart(null, null);
@@ -486,6 +524,207 @@ class ConsistentReservoirSamplingSpanProcessorTest {
     shutdown(sdkTracerProvider);
   }
 
+  @ParameterizedTest
+  @ValueSource(ints = {0, 1, 4})
+  @Timeout(10)
+  void fullReservoirWithConversionThreads(int numberOfConversionThreads) {
+    int reservoirSize = 100;
+    int numberOfSpans = 1000;
+
+    WaitingSpanExporter exporter = new WaitingSpanExporter(reservoirSize);
+
+    SpanProcessor processor =
+        ConsistentReservoirSamplingSpanProcessor.create(
+            exporter,
+            reservoirSize,
+            VERY_LONG_EXPORT_PERIOD_NANOS,
+            DEFAULT_EXPORT_TIMEOUT_NANOS,
+            numberOfConversionThreads);
+
+    SdkTracerProvider sdkTracerProvider =
+        SdkTracerProvider.builder()
+            .setSampler(ConsistentSampler.alwaysOn())
+            .addSpanProcessor(processor)
+            .build();
+
+    List<ReadableSpan> spans =
+        IntStream.range(0, numberOfSpans)
+            .mapToObj(i -> createEndedSpan("MySpanName/" + i, sdkTracerProvider))
+            .collect(Collectors.toList());
+
+    processor.forceFlush().join(10, TimeUnit.SECONDS);
+
+    List<SpanData> exported = exporter.waitForExport();
+    assertThat(exported).hasSize(reservoirSize);
+
+    Map<String, ReadableSpan> spansByName =
+        spans.stream().collect(Collectors.toMap(ReadableSpan::getName, span -> span));
+    for (SpanData spanData : exported) {
+      ReadableSpan span = requireNonNull(spansByName.get(spanData.getName()));
+      SpanData originalSpanData = span.toSpanData();
+      assertThat(spanData.getSpanContext().getSpanId())
+          .isEqualTo(originalSpanData.getSpanContext().getSpanId());
+      assertThat(spanData.getAttributes()).isEqualTo(originalSpanData.getAttributes());
+      assertThat(spanData.getStartEpochNanos()).isEqualTo(originalSpanData.getStartEpochNanos());
+      assertThat(spanData.getEndEpochNanos()).isEqualTo(originalSpanData.getEndEpochNanos());
+
+      // the p-values have been raised by the reservoir
+      OtelTraceState originalTraceState =
+          OtelTraceState.parse(
+              originalSpanData
+                  .getSpanContext()
+                  .getTraceState()
+                  .get(OtelTraceState.TRACE_STATE_KEY));
+      OtelTraceState traceState =
+          OtelTraceState.parse(
+              spanData.getSpanContext().getTraceState().get(OtelTraceState.TRACE_STATE_KEY));
+      assertThat(traceState.getR()).isEqualTo(originalTraceState.getR());
+      assertThat(traceState.getP()).isGreaterThan(originalTraceState.getP());
+      assertThat(traceState.getP()).isLessThanOrEqualTo(traceState.getR());
+      assertThat(spanData.getSpanContext().getTraceState())
+          .isEqualTo(
+              TraceState.builder()
+                  .put(OtelTraceState.TRACE_STATE_KEY, traceState.serialize())
+                  .build());
+    }
+
+    shutdown(sdkTracerProvider);
+  }
+
+  @Nullable
+  private static String getSpanClass(ReadableSpan span) {
+    String name = span.getName();
+    int index = name.indexOf('/');
+    return index >= 0 ? name.substring(0, index) : null;
+  }
+
+  @Test
+  @Timeout(10)
+  void multipleReservoirs() {
+    Map<String, Integer> reservoirSizes = new HashMap<>();
+    reservoirSizes.put("a", 10);
+    reservoirSizes.put("b", 100);
+    int defaultReservoirSize = 5;
+
+    WaitingSpanExporter exporter = new WaitingSpanExporter(0);
+    SpanProcessor processor =
+        ConsistentReservoirSamplingSpanProcessor.create(
+            exporter,
+            ConsistentReservoirSamplingSpanProcessorTest::getSpanClass,
+            reservoirSizes,
+            defaultReservoirSize,
+            VERY_LONG_EXPORT_PERIOD_NANOS,
+            DEFAULT_EXPORT_TIMEOUT_NANOS);
+
+    SdkTracerProvider sdkTracerProvider =
+        SdkTracerProvider.builder()
+            .setSampler(ConsistentSampler.alwaysOn())
+            .addSpanProcessor(processor)
+            .build();
+
+    for (int i = 0; i < 1000; ++i) {
+      createEndedSpan("a/" + i, sdkTracerProvider);
+    }
+    for (int i = 0; i < 50; ++i) {
+      createEndedSpan("b/" + i, sdkTracerProvider);
+    }
+    for (int i = 0; i < 200; ++i) {
+      createEndedSpan("c/" + i, sdkTracerProvider);
+      createEndedSpan(Integer.toString(i), sdkTracerProvider);
+    }
+
+    processor.forceFlush().join(10, TimeUnit.SECONDS);
+
+    Map<String, List<SpanData>> exportedByClass =
+        exporter.getExported().stream()
+            .collect(
+                Collectors.groupingBy(
+                    spanData -> {
+                      int index = spanData.getName().indexOf('/');
+                      return index >= 0 ? spanData.getName().substring(0, index) : "";
+                    }));
+    assertThat(exportedByClass.get("a")).hasSize(10);
+    assertThat(exportedByClass.get("b")).hasSize(50);
+    // unknown classes and spans without class share the default reservoir
+    int numberOfDefaultSpans =
+        exportedByClass.getOrDefault("c", Collections.emptyList()).size()
+            + exportedByClass.getOrDefault("", Collections.emptyList()).size();
+    assertThat(numberOfDefaultSpans).isEqualTo(defaultReservoirSize);
+
+    // the p-values of spans in a reservoir that was not full are not changed
+    for (SpanData spanData : exportedByClass.get("b")) {
+      OtelTraceState traceState =
+          OtelTraceState.parse(
+              spanData.getSpanContext().getTraceState().get(OtelTraceState.TRACE_STATE_KEY));
+      assertThat(traceState.getP()).isZero();
+    }
+    for (SpanData spanData : exportedByClass.get("a")) {
+      OtelTraceState traceState =
+          OtelTraceState.parse(
+              spanData.getSpanContext().getTraceState().get(OtelTraceState.TRACE_STATE_KEY));
+      assertThat(traceState.getP()).isPositive();
+    }
+
+    shutdown(sdkTracerProvider);
+  }
+
+  @Test
+  @Timeout(100)
+  void multipleReservoirsAreUnbiased() {
+    int numCycles = 500;
+    int numberOfSpansA = 1000;
+    int numberOfSpansB = 300;
+
+    SplittableRandom rng = new SplittableRandom(0x6a1f0c2d83be4e95L);
+    WaitingSpanExporter exporter = new WaitingSpanExporter(0);
+    SpanProcessor processor =
+        ConsistentReservoirSamplingSpanProcessor.create(
+            exporter,
+            ConsistentReservoirSamplingSpanProcessorTest::getSpanClass,
+            Collections.singletonMap("a", 100),
+            100,
+            VERY_LONG_EXPORT_PERIOD_NANOS,
+            DEFAULT_EXPORT_TIMEOUT_NANOS,
+            RandomGenerator.create(asThreadSafeLongSupplier(rng.split())),
+            1);
+
+    RandomGenerator randomGenerator = RandomGenerator.create(asThreadSafeLongSupplier(rng));
+    SdkTracerProvider sdkTracerProvider =
+        SdkTracerProvider.builder()
+            .setSampler(
+                ConsistentSampler.alwaysOn(s -> randomGenerator.numberOfLeadingZerosOfRandomLong()))
+            .addSpanProcessor(processor)
+            .build();
+
+    double[] totalAdjustedCountsA = new double[numCycles];
+    double[] totalAdjustedCountsB = new double[numCycles];
+    for (int k = 0; k < numCycles; ++k) {
+      for (int i = 0; i < numberOfSpansA; ++i) {
+        createEndedSpan("a/" + i, sdkTracerProvider);
+      }
+      for (int i = 0; i < numberOfSpansB; ++i) {
+        createEndedSpan("b/" + i, sdkTracerProvider);
+      }
+      processor.forceFlush().join(10, TimeUnit.SECONDS);
+
+      for (SpanData spanData : exporter.getExported()) {
+        OtelTraceState traceState =
+            OtelTraceState.parse(
+                spanData.getSpanContext().getTraceState().get(OtelTraceState.TRACE_STATE_KEY));
+        if (spanData.getName().startsWith("a/")) {
+          totalAdjustedCountsA[k] += 1L << traceState.getP();
+        } else {
+          totalAdjustedCountsB[k] += 1L << traceState.getP();
+        }
+      }
+    }
+
+    assertThat(new TTest().tTest(numberOfSpansA, totalAdjustedCountsA)).isGreaterThan(0.01);
+    assertThat(new TTest().tTest(numberOfSpansB, totalAdjustedCountsB)).isGreaterThan(0.01);
+
+    shutdown(sdkTracerProvider);
+  }
+
   private enum Tests {
     VERIFY_MEAN,
     VERIFY_PVALUE_DISTRIBUTION,
@@ -687,4 +926,227 @@ class ConsistentReservoirSamplingSpanProcessorTest {
     testConsistentSampling(
         0xc41d327fd1a6866aL, 1000000, 5, 4, 1.0, EnumSet.of(Tests.VERIFY_ORDER_INDEPENDENCE));
   }
+
+  private static final class ConcurrentSamplingResult {
+    private final double[] totalAdjustedCounts;
+    private final long[] pValueCounts = new long[OtelTraceState.getMaxP() + 1];
+
+    private ConcurrentSamplingResult(int numCycles) {
+      this.totalAdjustedCounts = new double[numCycles];
+    }
+  }
+
+  /**
+   * Ends spans concurrently from several threads and collects the adjusted counts and p-values of
+   * the exported spans for each export cycle.
+   */
+  private ConcurrentSamplingResult runConcurrentSampling(
+      long seed,
+      int numberOfStripes,
+      int numberOfThreads,
+      int numCycles,
+      int numberOfSpansPerThread,
+      int reservoirSize,
+      double samplingProbability)
+      throws Exception {
+
+    SplittableRandom rng1 = new SplittableRandom(seed);
+    SplittableRandom rng2 = rng1.split();
+
+    WaitingSpanExporter spanExporter = new WaitingSpanExporter(0);
+
+    SpanProcessor processor =
+        ConsistentReservoirSamplingSpanProcessor.create(
+            spanExporter,
+            reservoirSize,
+            VERY_LONG_EXPORT_PERIOD_NANOS,
+            DEFAULT_EXPORT_TIMEOUT_NANOS,
+            RandomGenerator.create(asThreadSafeLongSupplier(rng1)),
+            numberOfStripes);
+
+    RandomGenerator randomGenerator = RandomGenerator.create(asThreadSafeLongSupplier(rng2));
+    SdkTracerProvider sdkTracerProvider =
+        SdkTracerProvider.builder()
+            .setSampler(
+                ConsistentSampler.probabilityBased(
+                    samplingProbability, s -> randomGenerator.numberOfLeadingZerosOfRandomLong()))
+            .addSpanProcessor(processor)
+            .build();
+
+    ConcurrentSamplingResult result = new ConcurrentSamplingResult(numCycles);
+    ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads);
+    try {
+      for (int k = 0; k < numCycles; ++k) {
+        List<Future<Long>> futures = new ArrayList<>(numberOfThreads);
+        for (int t = 0; t < numberOfThreads; ++t) {
+          futures.add(
+              executorService.submit(
+                  () -> {
+                    long numberOfSampledSpans = 0;
+                    for (int i = 0; i < numberOfSpansPerThread; ++i) {
+                      ReadableSpan span = createEndedSpan(SPAN_NAME_1, sdkTracerProvider);
+                      if (span != null && span.getSpanContext().isSampled()) {
+                        numberOfSampledSpans += 1;
+                      }
+                    }
+                    return numberOfSampledSpans;
+                  }));
+        }
+        long numberOfSampledSpans = 0;
+        for (Future<Long> future : futures) {
+          numberOfSampledSpans += future.get();
+        }
+
+        processor.forceFlush().join(1000, TimeUnit.SECONDS);
+
+        List<SpanData> exported = spanExporter.getExported();
+        assertThat(exported).hasSize((int) Math.min(reservoirSize, numberOfSampledSpans));
+
+        long totalAdjustedCount = 0;
+        for (SpanData spanData : exported) {
+          String traceStateString =
+              spanData.getSpanContext().getTraceState().get(OtelTraceState.TRACE_STATE_KEY);
+          OtelTraceState traceState = OtelTraceState.parse(traceStateString);
+          assertTrue(traceState.hasValidR());
+          assertTrue(traceState.hasValidP());
+          assertThat(traceState.getP()).isLessThanOrEqualTo(traceState.getR());
+          result.pValueCounts[traceState.getP()] += 1;
+          totalAdjustedCount += 1L << traceState.getP();
+        }
+        result.totalAdjustedCounts[k] = totalAdjustedCount;
+      }
+    } finally {
+      executorService.shutdown();
+    }
+
+    shutdown(sdkTracerProvider);
+    return result;
+  }
+
+  @Test
+  @Timeout(100)
+  void retainedSpansAreBounded() throws Exception {
+    int numberOfStripes = 8;
+    int numberOfThreads = 8;
+    int reservoirSize = 20;
+    // each stripe buffers at most ceil(reservoirSize / numberOfStripes) spans
+    int maxNumberOfRetainedSpans =
+        reservoirSize + numberOfStripes * ((reservoirSize + numberOfStripes - 1) / numberOfStripes);
+
+    WaitingSpanExporter spanExporter = new WaitingSpanExporter(0);
+    ConsistentReservoirSamplingSpanProcessor processor =
+        (ConsistentReservoirSamplingSpanProcessor)
+            ConsistentReservoirSamplingSpanProcessor.create(
+                spanExporter,
+                reservoirSize,
+                VERY_LONG_EXPORT_PERIOD_NANOS,
+                DEFAULT_EXPORT_TIMEOUT_NANOS,
+                RandomGenerator.getDefault(),
+                numberOfStripes);
+    SdkTracerProvider sdkTracerProvider =
+        SdkTracerProvider.builder()
+            .setSampler(ConsistentSampler.alwaysOn())
+            .addSpanProcessor(processor)
+            .build();
+
+    ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads);
+    try {
+      List<Future<?>> futures = new ArrayList<>(numberOfThreads);
+      for (int t = 0; t < numberOfThreads; ++t) {
+        futures.add(
+            executorService.submit(
+                () -> {
+                  for (int i = 0; i < 10000; ++i) {
+                    createEndedSpan(SPAN_NAME_1, sdkTracerProvider);
+                  }
+                }));
+      }
+      for (Future<?> future : futures) {
+        while (!future.isDone()) {
+          assertThat(processor.getNumberOfRetainedSpans())
+              .isLessThanOrEqualTo(maxNumberOfRetainedSpans);
+        }
+        future.get();
+      }
+      assertThat(processor.getNumberOfRetainedSpans())
+          .isBetween(reservoirSize, maxNumberOfRetainedSpans);
+
+      processor.forceFlush().join(10, TimeUnit.SECONDS);
+      assertThat(spanExporter.getExported()).hasSize(reservoirSize);
+    } finally {
+      executorService.shutdown();
+    }
+    shutdown(sdkTracerProvider);
+  }
+
+  private static long[] toNonEmptyCounts(long[] counts, long[] reference) {
+    return IntStream.range(0, counts.length)
+        .filter(i -> counts[i] > 0 || reference[i] > 0)
+        .mapToLong(i -> counts[i])
+        .toArray();
+  }
+
+  /**
+   * Verifies that a striped reservoir, which is concurrently filled by several threads, is
+   * statistically equivalent to a single reservoir.
+   */
+  @Test
+  @Timeout(1000)
+  void testConcurrentStripedSamplingEquivalentToSingleReservoir() throws Exception {
+    int numberOfThreads = 8;
+    int numCycles = 500;
+    int numberOfSpansPerThread = 250;
+    int reservoirSize = 200;
+    double samplingProbability = 0.5;
+    // the mean of the total adjusted count is given by the total number of spans
+    long expectedTotalAdjustedCount = numberOfThreads * (long) numberOfSpansPerThread;
+
+    ConcurrentSamplingResult singleReservoirResult =
+        runConcurrentSampling(
+            0x6f4bd7c3a0e1c0a5L,
+            1,
+            numberOfThreads,
+            numCycles,
+            numberOfSpansPerThread,
+            reservoirSize,
+            samplingProbability);
+    ConcurrentSamplingResult stripedReservoirResult =
+        runConcurrentSampling(
+            0x1f02f8f5d0b7a6e3L,
+            8,
+            numberOfThreads,
+            numCycles,
+            numberOfSpansPerThread,
+            reservoirSize,
+            samplingProbability);
+
+    // both implementations must give unbiased estimates of the total number of spans
+    assertThat(
+            new TTest()
+                .tTest(
+                    (double) expectedTotalAdjustedCount, singleReservoirResult.totalAdjustedCounts))
+        .isGreaterThan(0.01);
+    assertThat(
+            new TTest()
+                .tTest(
+                    (double) expectedTotalAdjustedCount,
+                    stripedReservoirResult.totalAdjustedCounts))
+        .isGreaterThan(0.01);
+
+    // the estimates and the p-value distributions of both implementations must not differ
+    assertThat(
+            new TTest()
+                .tTest(
+                    singleReservoirResult.totalAdjustedCounts,
+                    stripedReservoirResult.totalAdjustedCounts))
+        .isGreaterThan(0.01);
+    assertThat(
+            new GTest()
+                .gTestDataSetsComparison(
+                    toNonEmptyCounts(
+                        singleReservoirResult.pValueCounts, stripedReservoirResult.pValueCounts),
+                    toNonEmptyCounts(
+                        stripedReservoirResult.pValueCounts, singleReservoirResult.pValueCounts)))
+        .isGreaterThan(0.01);
+  }
 }
@@ -8,9 +8,11 @@ package io.opentelemetry.contrib.sampler.consistent;
 import static io.opentelemetry.contrib.sampler.consistent.OtelTraceState.getInvalidP;
 import static io.opentelemetry.contrib.sampler.consistent.OtelTraceState.getInvalidR;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.api.trace.Span;
@@ -22,6 +24,8 @@ import io.opentelemetry.context.Context;
 import io.opentelemetry.sdk.trace.data.LinkData;
 import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
 import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.Collections;
 import java.util.List;
 import java.util.OptionalInt;
@@ -256,4 +260,139 @@ class ConsistentSamplerTest {
     assertConsistentSampling(3, 5, SAMPLED, getInvalidP(), 7, getInvalidP(), 5, SAMPLED);
     assertConsistentSampling(5, 3, NOT_SAMPLED, getInvalidP(), 7, getInvalidP(), 3, NOT_SAMPLED);
   }
+
+  @Test
+  void testSamplingResultsAreCached() {
+    String traceId = "0123456789abcdef0123456789abcdef";
+    String spanId = "0123456789abcdef";
+    ConsistentSampler sampler = createConsistentSampler(2, 3);
+
+    Context parentContext = createParentContext(traceId, spanId, 1, 5, SAMPLED);
+    SamplingResult samplingResult1 =
+        sampler.shouldSample(
+            parentContext,
+            traceId,
+            "name",
+            SpanKind.SERVER,
+            Attributes.empty(),
+            Collections.emptyList());
+    SamplingResult samplingResult2 =
+        sampler.shouldSample(
+            parentContext,
+            traceId,
+            "name",
+            SpanKind.SERVER,
+            Attributes.empty(),
+            Collections.emptyList());
+    assertThat(samplingResult1).isSameAs(samplingResult2);
+
+    TraceState parentTraceState = Span.fromContext(parentContext).getSpanContext().getTraceState();
+    assertThat(samplingResult1.getUpdatedTraceState(parentTraceState))
+        .isSameAs(samplingResult2.getUpdatedTraceState(parentTraceState));
+    assertThat(samplingResult1.getUpdatedTraceState(parentTraceState).asMap())
+        .containsExactly(entry(OtelTraceState.TRACE_STATE_KEY, "p:2;r:5"));
+    assertThat(samplingResult1.getUpdatedTraceState(TraceState.getDefault()).asMap())
+        .containsExactly(entry(OtelTraceState.TRACE_STATE_KEY, "p:2;r:5"));
+
+    TraceState parentTraceStateWithOtherEntries =
+        parentTraceState.toBuilder().put("vendor", "value").build();
+    assertThat(samplingResult1.getUpdatedTraceState(parentTraceStateWithOtherEntries).asMap())
+        .containsOnly(entry(OtelTraceState.TRACE_STATE_KEY, "p:2;r:5"), entry("vendor", "value"));
+  }
+
+  @Test
+  void testUpdatedTraceStateCarriesDecodedValues() {
+    String traceId = "0123456789abcdef0123456789abcdef";
+    String spanId = "0123456789abcdef";
+    ConsistentSampler sampler = createConsistentSampler(2, 3);
+
+    Context parentContext = createParentContext(traceId, spanId, 1, 5, SAMPLED);
+    SamplingResult samplingResult =
+        sampler.shouldSample(
+            parentContext,
+            traceId,
+            "name",
+            SpanKind.SERVER,
+            Attributes.empty(),
+            Collections.emptyList());
+
+    TraceState updatedTraceState = samplingResult.getUpdatedTraceState(TraceState.getDefault());
+    int packedOtelTraceState =
+        OtelTraceState.getPacked(updatedTraceState.get(OtelTraceState.TRACE_STATE_KEY));
+    assertThat(OtelTraceState.unpackP(packedOtelTraceState)).isEqualTo(2);
+    assertThat(OtelTraceState.unpackR(packedOtelTraceState)).isEqualTo(5);
+    assertThat(OtelTraceState.unpackHasOtherKeyValuePairs(packedOtelTraceState)).isFalse();
+    assertThat(updatedTraceState).isSameAs(ConsistentSamplingResult.getOtelOnlyTraceState(2, 5));
+  }
+
+  @Test
+  void testUpdatedTraceStateEqualsBuiltTraceState() {
+    TraceState otelOnlyTraceState = ConsistentSamplingResult.getOtelOnlyTraceState(2, 5);
+    TraceState builtTraceState =
+        TraceState.builder().put(OtelTraceState.TRACE_STATE_KEY, "p:2;r:5").build();
+
+    assertThat(otelOnlyTraceState).isEqualTo(builtTraceState);
+    assertThat(builtTraceState).isEqualTo(otelOnlyTraceState);
+    assertThat(otelOnlyTraceState).hasSameHashCodeAs(builtTraceState);
+  }
+
+  @Test
+  void testSamplingResultWithOtherKeyValuePairs() {
+    String traceId = "0123456789abcdef0123456789abcdef";
+    String spanId = "0123456789abcdef";
+    ConsistentSampler sampler = createConsistentSampler(2, 3);
+
+    TraceState parentTraceState =
+        TraceState.builder().put(OtelTraceState.TRACE_STATE_KEY, "x:1;r:5;p:1").build();
+    Context parentContext =
+        Span.wrap(SpanContext.create(traceId, spanId, TraceFlags.getSampled(), parentTraceState))
+            .storeInContext(Context.root());
+    SamplingResult samplingResult =
+        sampler.shouldSample(
+            parentContext,
+            traceId,
+            "name",
+            SpanKind.SERVER,
+            Attributes.empty(),
+            Collections.emptyList());
+
+    assertThat(samplingResult.getUpdatedTraceState(parentTraceState).asMap())
+        .containsExactly(entry(OtelTraceState.TRACE_STATE_KEY, "p:2;r:5;x:1"));
+  }
+
+  @Test
+  void testShouldSampleDoesNotAllocate() {
+    ThreadMXBean threadMxBean = ManagementFactory.getThreadMXBean();
+    assumeTrue(threadMxBean instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean allocationMxBean =
+        (com.sun.management.ThreadMXBean) threadMxBean;
+    assumeTrue(allocationMxBean.isThreadAllocatedMemorySupported());
+    allocationMxBean.setThreadAllocatedMemoryEnabled(true);
+
+    String traceId = "0123456789abcdef0123456789abcdef";
+    String spanId = "0123456789abcdef";
+    ConsistentSampler sampler = ConsistentSampler.probabilityBased(0.5);
+    Context rootContext = Context.root();
+    Context parentContext = createParentContext(traceId, spanId, 1, 5, SAMPLED);
+    Attributes attributes = Attributes.empty();
+    List<LinkData> parentLinks = Collections.emptyList();
+
+    int numberOfIterations = 100_000;
+    long threadId = Thread.currentThread().getId();
+    long allocatedBytes = 0;
+    // the first round warms up and fills the caches
+    for (int round = 0; round < 2; ++round) {
+      long allocatedBytesBefore = allocationMxBean.getThreadAllocatedBytes(threadId);
+      for (int i = 0; i < numberOfIterations; ++i) {
+        sampler.shouldSample(
+            rootContext, traceId, "name", SpanKind.SERVER, attributes, parentLinks);
+        sampler.shouldSample(
+            parentContext, traceId, "name", SpanKind.SERVER, attributes, parentLinks);
+      }
+      allocatedBytes = allocationMxBean.getThreadAllocatedBytes(threadId) - allocatedBytesBefore;
+    }
+
+    // allow for a small constant overhead, but not for any per-span allocation
+    assertThat(allocatedBytes).isLessThan(numberOfIterations);
+  }
 }
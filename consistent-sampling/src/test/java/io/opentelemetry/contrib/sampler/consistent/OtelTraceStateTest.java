@@ -5,6 +5,7 @@
 
 package io.opentelemetry.contrib.sampler.consistent;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import java.util.stream.Collectors;
@@ -76,4 +77,67 @@ public class OtelTraceStateTest {
     assertEquals("", OtelTraceState.parse("_;p:6;r:10").serialize());
     assertEquals("", OtelTraceState.parse("5;p:6;r:10").serialize());
   }
+
+  @Test
+  public void testParseCharSequence() {
+    StringBuilder sb = new StringBuilder("x:3;r:5;p:4");
+    OtelTraceState otelTraceState = OtelTraceState.parse(sb);
+    sb.setLength(0);
+    sb.append("y:4");
+    assertEquals(4, otelTraceState.getP());
+    assertEquals(5, otelTraceState.getR());
+    assertThat(otelTraceState.hasOtherKeyValuePairs()).isTrue();
+    assertEquals("p:4;r:5;x:3", otelTraceState.serialize());
+
+    assertEquals("", OtelTraceState.parse(new StringBuilder("p:5;")).serialize());
+    assertEquals("p:6;r:10", OtelTraceState.parse(new StringBuilder("r:10;p:6")).serialize());
+  }
+
+  @Test
+  public void testSerializeWithoutOtherKeyValuePairs() {
+    OtelTraceState otelTraceState = OtelTraceState.parse("r:5;p:4");
+    assertThat(otelTraceState.hasOtherKeyValuePairs()).isFalse();
+    assertThat(otelTraceState.serialize()).isSameAs(otelTraceState.serialize());
+
+    for (int p = OtelTraceState.getInvalidP(); p <= OtelTraceState.getMaxP(); ++p) {
+      for (int r = OtelTraceState.getInvalidR(); r <= OtelTraceState.getMaxR(); ++r) {
+        otelTraceState.setP(p);
+        otelTraceState.setR(r);
+        String expected;
+        if (OtelTraceState.isValidP(p) && OtelTraceState.isValidR(r)) {
+          expected = "p:" + p + ";r:" + r;
+        } else if (OtelTraceState.isValidP(p)) {
+          expected = "p:" + p;
+        } else if (OtelTraceState.isValidR(r)) {
+          expected = "r:" + r;
+        } else {
+          expected = "";
+        }
+        assertEquals(expected, otelTraceState.serialize());
+      }
+    }
+  }
+
+  @Test
+  public void testGetPacked() {
+    for (int p = OtelTraceState.getInvalidP(); p <= OtelTraceState.getMaxP(); ++p) {
+      for (int r = OtelTraceState.getInvalidR(); r <= OtelTraceState.getMaxR(); ++r) {
+        String serialized = OtelTraceState.serialize(p, r);
+        assertEquals(OtelTraceState.parsePacked(serialized), OtelTraceState.getPacked(serialized));
+        assertEquals(
+            OtelTraceState.parsePacked(serialized),
+            OtelTraceState.getPacked(new String(serialized.toCharArray())));
+      }
+    }
+    assertEquals(OtelTraceState.parsePacked(null), OtelTraceState.getPacked(null));
+    assertEquals(OtelTraceState.parsePacked("p:5;"), OtelTraceState.getPacked("p:5;"));
+    assertEquals(OtelTraceState.parsePacked("x:3;r:5"), OtelTraceState.getPacked("x:3;r:5"));
+  }
+
+  @Test
+  public void testSerializeTo() {
+    StringBuilder sb = new StringBuilder();
+    OtelTraceState.parse("a:1;r:5;p:4;b:2").serializeTo(sb);
+    assertEquals("p:4;r:5;a:1;b:2", sb.toString());
+  }
 }
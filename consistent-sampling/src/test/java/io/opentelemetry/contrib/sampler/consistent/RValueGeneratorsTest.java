@@ -0,0 +1,106 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.sampler.consistent;
+
+import static io.opentelemetry.contrib.sampler.consistent.RandomGeneratorTest.verifyGeometricDistribution;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+
+class RValueGeneratorsTest {
+
+  private static String createRandomTraceId(SplittableRandom random) {
+    return String.format("%016x%016x", random.nextLong(), random.nextLong());
+  }
+
+  @Test
+  void testDefault() {
+    SplittableRandom random = new SplittableRandom(0x5b8e2f1c9a7d4036L);
+    RValueGenerator rValueGenerator = RValueGenerators.getDefault();
+    int[] values = new int[100000];
+    for (int i = 0; i < values.length; ++i) {
+      values[i] = rValueGenerator.generate(createRandomTraceId(random));
+    }
+    verifyGeometricDistribution(values);
+  }
+
+  @Test
+  void testTraceIdBased() {
+    SplittableRandom random = new SplittableRandom(0xa4c7e9130f6b8d25L);
+    RValueGenerator rValueGenerator = RValueGenerator.traceIdBased();
+    int[] values = new int[100000];
+    for (int i = 0; i < values.length; ++i) {
+      values[i] = rValueGenerator.generate(createRandomTraceId(random));
+    }
+    verifyGeometricDistribution(values);
+  }
+
+  @Test
+  void testTraceIdBasedIsDeterministic() {
+    RValueGenerator rValueGenerator = RValueGenerator.traceIdBased();
+    // only the 56 rightmost bits are relevant
+    assertThat(rValueGenerator.generate("ffffffffffffffffff80000000000000")).isEqualTo(0);
+    assertThat(rValueGenerator.generate("00000000000000000080000000000000")).isEqualTo(0);
+    assertThat(rValueGenerator.generate("0123456789abcdef0040000000000000")).isEqualTo(1);
+    assertThat(rValueGenerator.generate("0123456789abcdef001fffffffffffff")).isEqualTo(3);
+    assertThat(rValueGenerator.generate("0123456789abcdef0000000000000001")).isEqualTo(55);
+  }
+
+  @Test
+  void testTraceIdBasedWithZeroRandomBits() {
+    RValueGenerator rValueGenerator = RValueGenerator.traceIdBased();
+    assertThat(rValueGenerator.generate("0123456789abcdef0000000000000000"))
+        .isGreaterThanOrEqualTo(56);
+  }
+
+  @Test
+  void testTraceIdBasedWithInvalidTraceId() {
+    RValueGenerator rValueGenerator = RValueGenerator.traceIdBased();
+    assertThat(rValueGenerator.generate("")).isBetween(0, Long.SIZE);
+    assertThat(rValueGenerator.generate("0123456789abcdef")).isBetween(0, Long.SIZE);
+    assertThat(rValueGenerator.generate("0123456789abcdef0123456789abcdeX"))
+        .isBetween(0, Long.SIZE);
+  }
+
+  @Test
+  void testTraceIdBasedSampling() {
+    SplittableRandom random = new SplittableRandom(0x2e7a5c3f81b9d604L);
+    ConsistentSampler sampler =
+        ConsistentSampler.probabilityBased(0.25, RValueGenerator.traceIdBased());
+    int numberOfSpans = 100000;
+    Map<Integer, Long> observedPvalues = new HashMap<>();
+    for (int i = 0; i < numberOfSpans; ++i) {
+      String traceId = createRandomTraceId(random);
+      SamplingResult samplingResult =
+          sampler.shouldSample(
+              Context.root(),
+              traceId,
+              "span",
+              SpanKind.INTERNAL,
+              Attributes.empty(),
+              Collections.emptyList());
+      if (samplingResult.getDecision() == SamplingDecision.RECORD_AND_SAMPLE) {
+        OtelTraceState traceState =
+            OtelTraceState.parse(
+                samplingResult
+                    .getUpdatedTraceState(TraceState.getDefault())
+                    .get(OtelTraceState.TRACE_STATE_KEY));
+        observedPvalues.merge(traceState.getP(), 1L, Long::sum);
+      }
+    }
+    TestUtil.verifyObservedPvaluesUsingGtest(numberOfSpans, observedPvalues, 0.25);
+  }
+}
@@ -6,10 +6,12 @@
 package io.opentelemetry.contrib.sampler.consistent;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.assertj.core.api.Assertions.fail;
 
 import java.util.BitSet;
 import java.util.SplittableRandom;
+import java.util.function.LongSupplier;
 import java.util.stream.DoubleStream;
 import org.hipparchus.stat.inference.GTest;
 import org.junit.jupiter.api.Test;
@@ -40,6 +42,136 @@ public class RandomGeneratorTest {
     }
   }
 
+  /**
+   * Verifies that the given values are geometrically distributed with success probability 1/2,
+   * which is the distribution required for r-values.
+   */
+  static void verifyGeometricDistribution(int[] values) {
+    int numberOfBuckets = 10; // the last bucket collects all values >= numberOfBuckets - 1
+    long[] observed = new long[numberOfBuckets];
+    double[] expected = new double[numberOfBuckets];
+    for (int value : values) {
+      assertThat(value).isBetween(0, Long.SIZE);
+      observed[Math.min(value, numberOfBuckets - 1)] += 1;
+    }
+    for (int i = 0; i < numberOfBuckets; ++i) {
+      expected[i] = values.length * Math.pow(0.5, Math.min(i + 1, numberOfBuckets - 1));
+    }
+    assertThat(new GTest().gTest(expected, observed)).isGreaterThan(0.01);
+  }
+
+  // reference implementation consuming one random bit at a time
+  private static int[] numberOfLeadingZerosBitByBit(LongSupplier randomLongSupplier, int size) {
+    int[] result = new int[size];
+    long randomBits = 0;
+    int bitCount = 0;
+    for (int i = 0; i < size; ++i) {
+      int count = 0;
+      while (count < Long.SIZE) {
+        if ((bitCount & 0x3F) == 0) {
+          randomBits = randomLongSupplier.getAsLong();
+        }
+        boolean randomBit = ((randomBits >>> bitCount) & 1L) != 0L;
+        bitCount += 1;
+        if (!randomBit) {
+          break;
+        }
+        count += 1;
+      }
+      result[i] = count;
+    }
+    return result;
+  }
+
+  // a random long supplier that frequently returns long runs of 1-bits
+  private static LongSupplier createRandomLongSupplierWithRunsOfOneBits(long seed) {
+    SplittableRandom splittableRandom = new SplittableRandom(seed);
+    return () -> {
+      switch (splittableRandom.nextInt(4)) {
+        case 0:
+          return -1L;
+        case 1:
+          return -1L << splittableRandom.nextInt(64);
+        case 2:
+          return -1L >>> splittableRandom.nextInt(64);
+        default:
+          return splittableRandom.nextLong();
+      }
+    };
+  }
+
+  @Test
+  void testNumberOfLeadingZerosOfRandomLong() {
+    int numValues = 100000;
+    RandomGenerator randomGenerator =
+        RandomGenerator.create(new SplittableRandom(0x3c1d8a4a0e4f6b2eL)::nextLong);
+    int[] values = new int[numValues];
+    for (int i = 0; i < numValues; ++i) {
+      values[i] = randomGenerator.numberOfLeadingZerosOfRandomLong();
+    }
+    verifyGeometricDistribution(values);
+  }
+
+  @Test
+  void testNumberOfLeadingZerosOfRandomLongConsumesBitsLikeReference() {
+    int numValues = 10000;
+    long seed = 0x7d2b9f6a15c04e83L;
+    int[] expected =
+        numberOfLeadingZerosBitByBit(createRandomLongSupplierWithRunsOfOneBits(seed), numValues);
+    RandomGenerator randomGenerator =
+        RandomGenerator.create(createRandomLongSupplierWithRunsOfOneBits(seed));
+    int[] actual = new int[numValues];
+    for (int i = 0; i < numValues; ++i) {
+      actual[i] = randomGenerator.numberOfLeadingZerosOfRandomLong();
+    }
+    assertThat(actual).isEqualTo(expected);
+    assertThat(actual).contains(Long.SIZE);
+  }
+
+  @Test
+  void testFillWithNumberOfLeadingZerosOfRandomLongs() {
+    int numValues = 100000;
+    RandomGenerator randomGenerator =
+        RandomGenerator.create(new SplittableRandom(0x95e1b7a3d06c2f48L)::nextLong);
+    int[] values = new int[numValues];
+    randomGenerator.fillWithNumberOfLeadingZerosOfRandomLongs(values);
+    verifyGeometricDistribution(values);
+  }
+
+  @Test
+  void testFillWithNumberOfLeadingZerosOfRandomLongsConsistentWithSingleValues() {
+    long seed = 0x1f4e6c8a2b3d5f70L;
+    RandomGenerator randomGenerator1 =
+        RandomGenerator.create(createRandomLongSupplierWithRunsOfOneBits(seed));
+    RandomGenerator randomGenerator2 =
+        RandomGenerator.create(createRandomLongSupplierWithRunsOfOneBits(seed));
+
+    int[] expected = new int[1000];
+    for (int i = 0; i < expected.length; ++i) {
+      expected[i] = randomGenerator1.numberOfLeadingZerosOfRandomLong();
+    }
+    int[] actual = new int[1000];
+    randomGenerator2.fillWithNumberOfLeadingZerosOfRandomLongs(actual, 0, 100);
+    randomGenerator2.fillWithNumberOfLeadingZerosOfRandomLongs(actual, 100, 100);
+    randomGenerator2.fillWithNumberOfLeadingZerosOfRandomLongs(actual, 100, 1000);
+    assertThat(actual).isEqualTo(expected);
+  }
+
+  @Test
+  void testFillWithNumberOfLeadingZerosOfRandomLongsInvalidRange() {
+    RandomGenerator randomGenerator = RandomGenerator.getDefault();
+    int[] values = new int[10];
+    assertThatThrownBy(
+            () -> randomGenerator.fillWithNumberOfLeadingZerosOfRandomLongs(values, -1, 5))
+        .isInstanceOf(IndexOutOfBoundsException.class);
+    assertThatThrownBy(
+            () -> randomGenerator.fillWithNumberOfLeadingZerosOfRandomLongs(values, 6, 5))
+        .isInstanceOf(IndexOutOfBoundsException.class);
+    assertThatThrownBy(
+            () -> randomGenerator.fillWithNumberOfLeadingZerosOfRandomLongs(values, 0, 11))
+        .isInstanceOf(IndexOutOfBoundsException.class);
+  }
+
   @Test
   void testGenerateRandomBitSet() {
     testGenerateRandomBitSet(0x4a5580b958d52182L, 1, 0);
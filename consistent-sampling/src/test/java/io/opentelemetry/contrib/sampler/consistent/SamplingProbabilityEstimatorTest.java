@@ -0,0 +1,124 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.sampler.consistent;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.assertj.core.data.Percentage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class SamplingProbabilityEstimatorTest {
+
+  @Test
+  void testExpApproximation() {
+    SplittableRandom random = new SplittableRandom(0L);
+    for (int i = 0; i < 100000; ++i) {
+      double x = random.nextDouble(-700, 700);
+      assertThat(SamplingProbabilityEstimator.exp(x))
+          .isCloseTo(Math.exp(x), Percentage.withPercentage(1e-5));
+    }
+    assertThat(SamplingProbabilityEstimator.exp(0)).isEqualTo(1.);
+    assertThat(SamplingProbabilityEstimator.exp(-10000)).isEqualTo(0.);
+  }
+
+  @ParameterizedTest
+  @ValueSource(doubles = {-Double.MIN_VALUE, -1e-300, -1e-17, -1e-16, Double.MIN_VALUE, 1e-17})
+  void testExpApproximationCloseToZero(double x) {
+    assertThat(SamplingProbabilityEstimator.exp(x))
+        .isCloseTo(Math.exp(x), Percentage.withPercentage(1e-5));
+  }
+
+  @Test
+  void testConstantRate() {
+    SamplingProbabilityEstimator estimator = new SamplingProbabilityEstimator(100, 1, 0L);
+    double samplingProbability = 0;
+    long nanoTime = 0;
+    for (int i = 0; i < 100000; ++i) {
+      nanoTime += TimeUnit.MICROSECONDS.toNanos(100);
+      samplingProbability = estimator.estimate(nanoTime, 1.);
+    }
+    assertThat(estimator.getLastNanoTime()).isEqualTo(nanoTime);
+    // 10000 spans per second, 100 spans per second desired
+    assertThat(samplingProbability).isCloseTo(0.01, Percentage.withPercentage(1));
+  }
+
+  @Test
+  void testWeightedRate() {
+    SamplingProbabilityEstimator estimator = new SamplingProbabilityEstimator(100, 1, 0L);
+    double samplingProbability = 0;
+    long nanoTime = 0;
+    for (int i = 0; i < 100000; ++i) {
+      nanoTime += TimeUnit.MICROSECONDS.toNanos(100);
+      samplingProbability = estimator.estimate(nanoTime, 0.5);
+    }
+    // only half of the 10000 spans per second are counted
+    assertThat(samplingProbability).isCloseTo(0.02, Percentage.withPercentage(1));
+  }
+
+  @Test
+  void testZeroWeight() {
+    SamplingProbabilityEstimator estimator = new SamplingProbabilityEstimator(100, 1, 0L);
+    assertThat(estimator.estimate(TimeUnit.MILLISECONDS.toNanos(1), 0.))
+        .isEqualTo(Double.POSITIVE_INFINITY);
+    SamplingProbabilityEstimator estimatorWithoutSmoothing =
+        new SamplingProbabilityEstimator(100, 0, 0L);
+    assertThat(estimatorWithoutSmoothing.estimate(TimeUnit.MILLISECONDS.toNanos(1), 0.))
+        .isEqualTo(Double.POSITIVE_INFINITY);
+  }
+
+  @Test
+  void testConstantRateAfterLongPause() {
+    SamplingProbabilityEstimator estimator = new SamplingProbabilityEstimator(100, 1, 0L);
+    double samplingProbability = 0;
+    long nanoTime = 0;
+    for (int i = 0; i < 200000; ++i) {
+      // the pause forces moving the reference time forward
+      nanoTime += i == 50000 ? TimeUnit.SECONDS.toNanos(100) : TimeUnit.MICROSECONDS.toNanos(100);
+      samplingProbability = estimator.estimate(nanoTime, 1.);
+    }
+    assertThat(estimator.getLastNanoTime()).isEqualTo(nanoTime);
+    assertThat(samplingProbability).isCloseTo(0.01, Percentage.withPercentage(1));
+  }
+
+  @Test
+  void testConstantRateWithConcurrentSpans() throws InterruptedException {
+    SamplingProbabilityEstimator estimator = new SamplingProbabilityEstimator(100, 1, 0L, 2);
+    int numberOfThreads = 8;
+    int spansPerThread = 50000;
+    long nanosBetweenSpans = TimeUnit.MICROSECONDS.toNanos(100) / numberOfThreads;
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < numberOfThreads; ++t) {
+      int threadIndex = t;
+      Thread thread =
+          new Thread(
+              () -> {
+                for (int i = 1; i <= spansPerThread; ++i) {
+                  long nanoTime = (i * numberOfThreads + threadIndex) * nanosBetweenSpans;
+                  estimator.estimate(nanoTime, 1.);
+                }
+              });
+      thread.start();
+      threads.add(thread);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    // a span after the merge interval merges the spans recorded after the last merge
+    double samplingProbability =
+        estimator.estimate(
+            (spansPerThread + 1) * numberOfThreads * nanosBetweenSpans
+                + TimeUnit.MILLISECONDS.toNanos(20),
+            1.);
+    // 80000 spans per second, 100 spans per second desired
+    assertThat(samplingProbability).isCloseTo(0.00125, Percentage.withPercentage(5));
+  }
+}
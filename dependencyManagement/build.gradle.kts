@@ -24,6 +24,7 @@ val DEPENDENCY_BOMS = listOf(
 
 val autoServiceVersion = "1.0.1"
 val autoValueVersion = "1.10.1"
+val jmhVersion = "1.36"
 val errorProneVersion = "2.18.0"
 val prometheusVersion = "0.16.0"
 val mockitoVersion = "5.1.1"
@@ -42,6 +43,8 @@ val CORE_DEPENDENCIES = listOf(
   "io.prometheus:simpleclient_httpserver:${prometheusVersion}",
   "org.mockito:mockito-core:${mockitoVersion}",
   "org.mockito:mockito-junit-jupiter:${mockitoVersion}",
+  "org.openjdk.jmh:jmh-core:${jmhVersion}",
+  "org.openjdk.jmh:jmh-generator-bytecode:${jmhVersion}",
   "org.slf4j:slf4j-api:${slf4jVersion}",
   "org.slf4j:slf4j-simple:${slf4jVersion}",
   "org.slf4j:log4j-over-slf4j:${slf4jVersion}",
@@ -0,0 +1,127 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.sampler;
+
+import static io.opentelemetry.semconv.trace.attributes.SemanticAttributes.HTTP_TARGET;
+import static io.opentelemetry.semconv.trace.attributes.SemanticAttributes.HTTP_URL;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.TraceId;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RuleBasedRoutingSamplerBenchmark {
+
+  private static final String TRACE_ID = TraceId.fromLongs(1, 2);
+
+  private static final String[] HEALTH_CHECKS = {
+    "/health",
+    "/healthz",
+    "/healthcheck",
+    "/ready",
+    "/readyz",
+    "/live",
+    "/livez",
+    "/ping",
+    "/status",
+    "/metrics"
+  };
+  private static final String[] STATIC_ASSETS = {
+    "js", "css", "map", "png", "jpg", "gif", "svg", "ico", "woff", "woff2"
+  };
+
+  /** The span being sampled. */
+  public enum Span {
+    HEALTH_CHECK(
+        "GET /livez",
+        Attributes.of(HTTP_TARGET, "/livez", HTTP_URL, "http://localhost:8080/livez")),
+    STATIC_ASSET(
+        "GET /static/*",
+        Attributes.of(
+            HTTP_TARGET,
+            "/static/js/main.3f9a1c2e.js",
+            HTTP_URL,
+            "https://example.com/static/js/main.3f9a1c2e.js")),
+    API(
+        "GET /api/v1/customers/{id}/orders",
+        Attributes.of(
+            HTTP_TARGET,
+            "/api/v1/customers/42/orders?limit=10",
+            HTTP_URL,
+            "https://example.com/api/v1/customers/42/orders?limit=10"));
+
+    private final String name;
+    private final Attributes attributes;
+
+    Span(String name, Attributes attributes) {
+      this.name = name;
+      this.attributes = attributes;
+    }
+  }
+
+  /** What the health check rules match. */
+  public enum HealthCheckRules {
+    ATTRIBUTES,
+    SPAN_NAME
+  }
+
+  @Param public Span span;
+
+  @Param public HealthCheckRules healthCheckRules;
+
+  private Sampler sampler;
+
+  @Setup
+  public void setup() {
+    RuleBasedRoutingSamplerBuilder builder =
+        RuleBasedRoutingSampler.builder(SpanKind.SERVER, Sampler.alwaysOn());
+    for (String healthCheck : HEALTH_CHECKS) {
+      if (healthCheckRules == HealthCheckRules.SPAN_NAME) {
+        builder.dropSpanName("^GET " + healthCheck + "$");
+      } else {
+        builder.drop(HTTP_TARGET, "^" + healthCheck + "$");
+        builder.drop(HTTP_URL, ".*" + healthCheck + "$");
+      }
+    }
+    for (String staticAsset : STATIC_ASSETS) {
+      builder.drop(HTTP_TARGET, "\\." + staticAsset + "$");
+      builder.drop(HTTP_TARGET, "^/static/" + staticAsset + "/");
+    }
+    sampler = builder.build();
+  }
+
+  @Benchmark
+  public SamplingResult shouldSample() {
+    return sampler.shouldSample(
+        Context.root(),
+        TRACE_ID,
+        span.name,
+        SpanKind.SERVER,
+        span.attributes,
+        Collections.emptyList());
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.sampler;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable trie of literals anchored to the start of a string, which finds the first rule whose
+ * literal is a prefix of, or equal to, a string in a single pass. Literals anchored to the end of a
+ * string are found with a trie of the reversed literals.
+ */
+final class LiteralTrie {
+
+  static final int NO_RULE = Integer.MAX_VALUE;
+
+  private final char[] labels;
+  private final LiteralTrie[] children;
+  // first rule whose literal ends at this node
+  private final int rule;
+  // first rule whose literal ends at this node and that is anchored to both ends
+  private final int exactRule;
+
+  private LiteralTrie(char[] labels, LiteralTrie[] children, int rule, int exactRule) {
+    this.labels = labels;
+    this.children = children;
+    this.rule = rule;
+    this.exactRule = exactRule;
+  }
+
+  /**
+   * Returns the first rule whose literal is a prefix of the given string, or whose literal is equal
+   * to the string up to its end or the given alternative end, or {@link #NO_RULE}.
+   *
+   * @param alternativeEnd another position of the end of the string, or -1
+   */
+  int firstPrefixMatch(String s, int alternativeEnd) {
+    LiteralTrie node = this;
+    int first = NO_RULE;
+    int i = 0;
+    while (true) {
+      first = Math.min(first, node.rule);
+      if (i == s.length() || i == alternativeEnd) {
+        first = Math.min(first, node.exactRule);
+      }
+      if (i == s.length()) {
+        return first;
+      }
+      int childIndex = binarySearch(node.labels, s.charAt(i++));
+      if (childIndex < 0) {
+        return first;
+      }
+      node = node.children[childIndex];
+    }
+  }
+
+  /**
+   * Returns the first rule whose reversed literal is a suffix of the given string up to the given
+   * end, or {@link #NO_RULE}.
+   */
+  int firstSuffixMatch(String s, int end) {
+    LiteralTrie node = this;
+    int first = NO_RULE;
+    int i = end;
+    while (true) {
+      first = Math.min(first, node.rule);
+      if (i == 0) {
+        return first;
+      }
+      int childIndex = binarySearch(node.labels, s.charAt(--i));
+      if (childIndex < 0) {
+        return first;
+      }
+      node = node.children[childIndex];
+    }
+  }
+
+  static int binarySearch(char[] labels, char c) {
+    int low = 0;
+    int high = labels.length - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (labels[mid] < c) {
+        low = mid + 1;
+      } else if (labels[mid] > c) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  static final class Builder {
+
+    private final TreeMap<Character, Builder> children = new TreeMap<>();
+    private int rule = NO_RULE;
+    private int exactRule = NO_RULE;
+
+    /**
+     * Adds a literal of the given rule, keeping the first rule of literals that were already added.
+     *
+     * @param exact whether the literal must be equal to a string rather than a prefix of it
+     */
+    void add(CharSequence literal, int rule, boolean exact) {
+      Builder node = this;
+      for (int i = 0; i < literal.length(); ++i) {
+        node = node.children.computeIfAbsent(literal.charAt(i), unused -> new Builder());
+      }
+      if (exact) {
+        node.exactRule = Math.min(node.exactRule, rule);
+      } else {
+        node.rule = Math.min(node.rule, rule);
+      }
+    }
+
+    boolean isEmpty() {
+      return children.isEmpty() && rule == NO_RULE && exactRule == NO_RULE;
+    }
+
+    LiteralTrie build() {
+      char[] labels = new char[children.size()];
+      LiteralTrie[] builtChildren = new LiteralTrie[children.size()];
+      int i = 0;
+      for (Map.Entry<Character, Builder> entry : children.entrySet()) {
+        labels[i] = entry.getKey();
+        builtChildren[i] = entry.getValue().build();
+        ++i;
+      }
+      return new LiteralTrie(labels, builtChildren, rule, exactRule);
+    }
+  }
+}
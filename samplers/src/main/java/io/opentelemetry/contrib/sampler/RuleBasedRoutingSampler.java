@@ -5,23 +5,31 @@
 
 package io.opentelemetry.contrib.sampler;
 
+import static io.opentelemetry.contrib.sampler.LiteralTrie.NO_RULE;
 import static java.util.Objects.requireNonNull;
 
+import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.api.trace.SpanKind;
 import io.opentelemetry.context.Context;
 import io.opentelemetry.sdk.trace.data.LinkData;
 import io.opentelemetry.sdk.trace.samplers.Sampler;
 import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
 
 /**
  * This sampler accepts a list of {@link SamplingRule}s and tries to match every proposed span
- * against those rules. Every rule describes a span's attribute, a pattern against which to match
- * attribute's value, and a sampler that will make a decision about given span if match was
- * successful.
+ * against those rules. Every rule describes a span's attribute or its name, a pattern against which
+ * to match attribute's value or the name, and a sampler that will make a decision about given span
+ * if match was successful. The first matching rule in the order they were added makes the decision.
  *
- * <p>Matching is performed by {@link java.util.regex.Pattern}.
+ * <p>Matching is performed by {@link java.util.regex.Pattern}. Patterns that only match a literal,
+ * optionally anchored with {@code ^} or {@code $}, are matched together for all rules of an
+ * attribute in a single pass over its value. The span name is matched before any attribute is
+ * looked up, so spans matched by span name rules added first do not cost any attribute lookups.
  *
  * <p>Provided span kind is checked first and if differs from the one given to {@link
  * #builder(SpanKind, Sampler)}, the default fallback sampler will make a decision.
@@ -33,6 +41,10 @@ import java.util.List;
  */
 public final class RuleBasedRoutingSampler implements Sampler {
   private final List<SamplingRule> rules;
+  @Nullable private final RuleMatcher spanNameMatcher;
+  // attribute keys and their matchers, ordered by their first rule
+  private final List<AttributeKey<String>> attributeKeys;
+  private final RuleMatcher[] matchers;
   private final SpanKind kind;
   private final Sampler fallback;
 
@@ -40,6 +52,10 @@ public final class RuleBasedRoutingSampler implements Sampler {
     this.kind = requireNonNull(kind);
     this.fallback = requireNonNull(fallback);
     this.rules = requireNonNull(rules);
+    this.spanNameMatcher = RuleMatcher.compileSpanName(rules);
+    Map<AttributeKey<String>, RuleMatcher> attributeMatchers = RuleMatcher.compileAttributes(rules);
+    this.attributeKeys = new ArrayList<>(attributeMatchers.keySet());
+    this.matchers = attributeMatchers.values().toArray(new RuleMatcher[0]);
   }
 
   public static RuleBasedRoutingSamplerBuilder builder(SpanKind kind, Sampler fallback) {
@@ -59,16 +75,25 @@ public final class RuleBasedRoutingSampler implements Sampler {
     if (kind != spanKind) {
       return fallback.shouldSample(parentContext, traceId, name, spanKind, attributes, parentLinks);
     }
-    for (SamplingRule samplingRule : rules) {
-      String attributeValue = attributes.get(samplingRule.attributeKey);
-      if (attributeValue == null) {
-        continue;
-      }
-      if (samplingRule.pattern.matcher(attributeValue).find()) {
-        return samplingRule.delegate.shouldSample(
-            parentContext, traceId, name, spanKind, attributes, parentLinks);
+    int firstMatch = NO_RULE;
+    // the span name does not need to be looked up, so it is matched first
+    RuleMatcher spanNameMatcher = this.spanNameMatcher;
+    if (spanNameMatcher != null) {
+      firstMatch = spanNameMatcher.firstMatch(name, firstMatch);
+    }
+    // matchers are ordered by their first rule, so later matchers cannot precede a match
+    for (int i = 0; i < matchers.length && matchers[i].firstRule < firstMatch; ++i) {
+      String attributeValue = attributes.get(attributeKeys.get(i));
+      if (attributeValue != null) {
+        firstMatch = matchers[i].firstMatch(attributeValue, firstMatch);
       }
     }
+    if (firstMatch != NO_RULE) {
+      return rules
+          .get(firstMatch)
+          .delegate
+          .shouldSample(parentContext, traceId, name, spanKind, attributes, parentLinks);
+    }
     return fallback.shouldSample(parentContext, traceId, name, spanKind, attributes, parentLinks);
   }
 
@@ -58,6 +58,28 @@ public final class RuleBasedRoutingSamplerBuilder {
     return customize(attributeKey, pattern, Sampler.alwaysOn());
   }
 
+  /** Drop all spans when their name matches the provided pattern. */
+  @CanIgnoreReturnValue
+  public RuleBasedRoutingSamplerBuilder dropSpanName(String pattern) {
+    return customizeSpanName(pattern, Sampler.alwaysOff());
+  }
+
+  /** Use the provided sampler when the name of a span matches the provided pattern. */
+  @CanIgnoreReturnValue
+  public RuleBasedRoutingSamplerBuilder customizeSpanName(String pattern, Sampler sampler) {
+    rules.add(
+        SamplingRule.forSpanName(
+            requireNonNull(pattern, "pattern must not be null"),
+            requireNonNull(sampler, "sampler must not be null")));
+    return this;
+  }
+
+  /** Record and sample all spans when their name matches the provided pattern. */
+  @CanIgnoreReturnValue
+  public RuleBasedRoutingSamplerBuilder recordAndSampleSpanName(String pattern) {
+    return customizeSpanName(pattern, Sampler.alwaysOn());
+  }
+
   /** Build the sampler based on the rules provided. */
   public RuleBasedRoutingSampler build() {
     return new RuleBasedRoutingSampler(rules, kind, defaultDelegate);
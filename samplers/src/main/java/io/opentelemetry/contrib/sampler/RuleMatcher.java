@@ -0,0 +1,255 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.sampler;
+
+import io.opentelemetry.api.common.AttributeKey;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import javax.annotation.Nullable;
+
+/**
+ * Matches an attribute or the name of a span against all {@link SamplingRule}s for it at once.
+ *
+ * <p>Patterns that only match a literal, optionally anchored to the start or the end of the value,
+ * are compiled into tries and an Aho-Corasick automaton, so that the first of them that matches is
+ * found in a single pass over the value. The remaining patterns are evaluated with {@link
+ * Pattern#matcher(CharSequence)} in the order of the rules, but only while they precede the first
+ * match found so far.
+ */
+final class RuleMatcher {
+
+  // position of the first rule for the attribute or span name
+  final int firstRule;
+
+  @Nullable private final LiteralTrie prefixes;
+  @Nullable private final LiteralTrie suffixes;
+  @Nullable private final SubstringAutomaton substrings;
+  private final int[] patternRules;
+  private final Pattern[] patterns;
+
+  private RuleMatcher(
+      int firstRule,
+      @Nullable LiteralTrie prefixes,
+      @Nullable LiteralTrie suffixes,
+      @Nullable SubstringAutomaton substrings,
+      int[] patternRules,
+      Pattern[] patterns) {
+    this.firstRule = firstRule;
+    this.prefixes = prefixes;
+    this.suffixes = suffixes;
+    this.substrings = substrings;
+    this.patternRules = patternRules;
+    this.patterns = patterns;
+  }
+
+  /** Returns a matcher for the span name rules, or {@code null} if there are none. */
+  @Nullable
+  static RuleMatcher compileSpanName(List<SamplingRule> rules) {
+    Builder builder = null;
+    for (int i = 0; i < rules.size(); ++i) {
+      SamplingRule rule = rules.get(i);
+      if (rule.attributeKey == null) {
+        if (builder == null) {
+          builder = new Builder(i);
+        }
+        builder.add(rule.pattern, i);
+      }
+    }
+    return builder != null ? builder.build() : null;
+  }
+
+  /**
+   * Returns a matcher for each attribute of the given rules. The iteration order of the returned
+   * map is the order of the first rules of the attributes.
+   */
+  static Map<AttributeKey<String>, RuleMatcher> compileAttributes(List<SamplingRule> rules) {
+    Map<AttributeKey<String>, Builder> builders = new LinkedHashMap<>();
+    for (int i = 0; i < rules.size(); ++i) {
+      SamplingRule rule = rules.get(i);
+      AttributeKey<String> attributeKey = rule.attributeKey;
+      if (attributeKey != null) {
+        int ruleIndex = i;
+        builders
+            .computeIfAbsent(attributeKey, key -> new Builder(ruleIndex))
+            .add(rule.pattern, ruleIndex);
+      }
+    }
+    Map<AttributeKey<String>, RuleMatcher> matchers = new LinkedHashMap<>();
+    builders.forEach((attributeKey, builder) -> matchers.put(attributeKey, builder.build()));
+    return matchers;
+  }
+
+  /**
+   * Returns the first rule that matches the given value if it precedes the given rule, or the given
+   * rule otherwise.
+   */
+  int firstMatch(String value, int before) {
+    int first = before;
+    if (substrings != null) {
+      first = Math.min(first, substrings.firstMatch(value));
+    }
+    if (prefixes != null || suffixes != null) {
+      int end = dollarEnd(value);
+      if (prefixes != null) {
+        first = Math.min(first, prefixes.firstPrefixMatch(value, end));
+      }
+      if (suffixes != null) {
+        first = Math.min(first, suffixes.firstSuffixMatch(value, value.length()));
+        if (end >= 0) {
+          first = Math.min(first, suffixes.firstSuffixMatch(value, end));
+        }
+      }
+    }
+    for (int i = 0; i < patterns.length && patternRules[i] < first; ++i) {
+      if (patterns[i].matcher(value).find()) {
+        return patternRules[i];
+      }
+    }
+    return first;
+  }
+
+  /**
+   * Returns the position before the final line terminator of the given value at which {@code $}
+   * matches besides the end of the value, or -1 if there is none.
+   */
+  private static int dollarEnd(String value) {
+    int length = value.length();
+    if (length == 0) {
+      return -1;
+    }
+    char last = value.charAt(length - 1);
+    if (last == '\n') {
+      // $ does not match between \r and \n
+      return length >= 2 && value.charAt(length - 2) == '\r' ? length - 2 : length - 1;
+    }
+    if (last == '\r' || last == '\u0085' || last == '\u2028' || last == '\u2029') {
+      return length - 1;
+    }
+    return -1;
+  }
+
+  /** A pattern that only matches a literal, optionally anchored to the start or end of a value. */
+  static final class Literal {
+
+    private static final String METACHARACTERS = "\\^$.|?*+()[]{}";
+
+    final String literal;
+    final boolean anchoredAtStart;
+    final boolean anchoredAtEnd;
+
+    private Literal(String literal, boolean anchoredAtStart, boolean anchoredAtEnd) {
+      this.literal = literal;
+      this.anchoredAtStart = anchoredAtStart;
+      this.anchoredAtEnd = anchoredAtEnd;
+    }
+
+    /**
+     * Returns the literal matched by the given regular expression when it is found in a value, or
+     * {@code null} if it is not a literal. A leading {@code .*} of an unanchored expression and a
+     * trailing {@code .*} are ignored, as they match the empty string.
+     */
+    @Nullable
+    static Literal parse(String regex) {
+      StringBuilder literal = new StringBuilder(regex.length());
+      boolean anchoredAtStart = false;
+      boolean anchoredAtEnd = false;
+      int length = regex.length();
+      int i = 0;
+      while (i < length) {
+        char c = regex.charAt(i);
+        if (c == '\\') {
+          if (i + 1 == length) {
+            return null;
+          }
+          char escaped = regex.charAt(i + 1);
+          if (escaped == 'Q') {
+            int quoteEnd = regex.indexOf("\\E", i + 2);
+            if (quoteEnd < 0) {
+              quoteEnd = length;
+            }
+            literal.append(regex, i + 2, quoteEnd);
+            i = quoteEnd + 2;
+            continue;
+          }
+          if (Character.isLetterOrDigit(escaped)) {
+            // character classes, back references and the like
+            return null;
+          }
+          literal.append(escaped);
+          i += 2;
+        } else if (c == '^' && i == 0) {
+          anchoredAtStart = true;
+          ++i;
+        } else if (c == '$' && i == length - 1) {
+          anchoredAtEnd = true;
+          ++i;
+        } else if (c == '.'
+            && i + 1 < length
+            && regex.charAt(i + 1) == '*'
+            && ((i == 0 && !anchoredAtStart) || i + 2 == length)) {
+          i += 2;
+        } else if (METACHARACTERS.indexOf(c) >= 0) {
+          return null;
+        } else {
+          literal.append(c);
+          ++i;
+        }
+      }
+      for (int j = 0; j < literal.length(); ++j) {
+        if (Character.isSurrogate(literal.charAt(j))) {
+          // matched by code point rather than by character
+          return null;
+        }
+      }
+      return new Literal(literal.toString(), anchoredAtStart, anchoredAtEnd);
+    }
+  }
+
+  private static final class Builder {
+
+    private final int firstRule;
+    private final LiteralTrie.Builder prefixes = new LiteralTrie.Builder();
+    private final LiteralTrie.Builder suffixes = new LiteralTrie.Builder();
+    private final SubstringAutomaton.Builder substrings = new SubstringAutomaton.Builder();
+    private final List<Integer> patternRules = new ArrayList<>();
+    private final List<Pattern> patterns = new ArrayList<>();
+
+    Builder(int firstRule) {
+      this.firstRule = firstRule;
+    }
+
+    void add(Pattern pattern, int rule) {
+      Literal literal = pattern.flags() == 0 ? Literal.parse(pattern.pattern()) : null;
+      if (literal == null) {
+        patternRules.add(rule);
+        patterns.add(pattern);
+      } else if (literal.anchoredAtStart) {
+        prefixes.add(literal.literal, rule, literal.anchoredAtEnd);
+      } else if (literal.anchoredAtEnd) {
+        suffixes.add(new StringBuilder(literal.literal).reverse(), rule, false);
+      } else {
+        substrings.add(literal.literal, rule);
+      }
+    }
+
+    RuleMatcher build() {
+      int[] rules = new int[patternRules.size()];
+      for (int i = 0; i < rules.length; ++i) {
+        rules[i] = patternRules.get(i);
+      }
+      return new RuleMatcher(
+          firstRule,
+          prefixes.isEmpty() ? null : prefixes.build(),
+          suffixes.isEmpty() ? null : suffixes.build(),
+          substrings.isEmpty() ? null : substrings.build(),
+          rules,
+          patterns.toArray(new Pattern[0]));
+    }
+  }
+}
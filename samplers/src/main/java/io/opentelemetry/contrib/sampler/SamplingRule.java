@@ -12,21 +12,25 @@ import java.util.regex.Pattern;
 import javax.annotation.Nullable;
 
 class SamplingRule {
-  final AttributeKey<String> attributeKey;
+  // null for rules that match the span name
+  @Nullable final AttributeKey<String> attributeKey;
   final Sampler delegate;
   final Pattern pattern;
 
-  SamplingRule(AttributeKey<String> attributeKey, String pattern, Sampler delegate) {
+  SamplingRule(@Nullable AttributeKey<String> attributeKey, String pattern, Sampler delegate) {
     this.attributeKey = attributeKey;
     this.pattern = Pattern.compile(pattern);
     this.delegate = delegate;
   }
 
+  static SamplingRule forSpanName(String pattern, Sampler delegate) {
+    return new SamplingRule(null, pattern, delegate);
+  }
+
   @Override
   public String toString() {
     return "SamplingRule{"
-        + "attributeKey="
-        + attributeKey
+        + (attributeKey != null ? "attributeKey=" + attributeKey : "spanName")
         + ", delegate="
         + delegate
         + ", pattern="
@@ -43,7 +47,7 @@ class SamplingRule {
       return false;
     }
     SamplingRule that = (SamplingRule) o;
-    return attributeKey.equals(that.attributeKey) && pattern.equals(that.pattern);
+    return Objects.equals(attributeKey, that.attributeKey) && pattern.equals(that.pattern);
   }
 
   @Override
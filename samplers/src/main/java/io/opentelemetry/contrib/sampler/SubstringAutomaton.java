@@ -0,0 +1,127 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.sampler;
+
+import static io.opentelemetry.contrib.sampler.LiteralTrie.NO_RULE;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+
+/**
+ * An Aho-Corasick automaton of unanchored literals, which finds the first rule whose literal occurs
+ * anywhere in a string in a single pass over the string.
+ */
+final class SubstringAutomaton {
+
+  private final Node root;
+  private final int firstRule;
+
+  private SubstringAutomaton(Node root, int firstRule) {
+    this.root = root;
+    this.firstRule = firstRule;
+  }
+
+  /** Returns the first rule whose literal occurs in the given string, or {@link #NO_RULE}. */
+  int firstMatch(String s) {
+    Node node = root;
+    int first = root.output;
+    for (int i = 0; i < s.length() && first != firstRule; ++i) {
+      char c = s.charAt(i);
+      while (true) {
+        int childIndex = LiteralTrie.binarySearch(node.labels, c);
+        if (childIndex >= 0) {
+          node = node.children[childIndex];
+          break;
+        }
+        if (node == root) {
+          break;
+        }
+        node = node.fail;
+      }
+      first = Math.min(first, node.output);
+    }
+    return first;
+  }
+
+  private static final class Node {
+
+    private final char[] labels;
+    private final Node[] children;
+    // the longest proper suffix of this node that is also a node, set once the trie is complete
+    private Node fail = this;
+    // first rule whose literal ends at this node or any of its suffixes
+    private int output;
+
+    private Node(char[] labels, Node[] children, int rule) {
+      this.labels = labels;
+      this.children = children;
+      this.output = rule;
+    }
+  }
+
+  static final class Builder {
+
+    private final TreeMap<Character, Builder> children = new TreeMap<>();
+    private int rule = NO_RULE;
+
+    /** Adds a literal of the given rule, keeping the first rule of literals already added. */
+    void add(String literal, int rule) {
+      Builder node = this;
+      for (int i = 0; i < literal.length(); ++i) {
+        node = node.children.computeIfAbsent(literal.charAt(i), unused -> new Builder());
+      }
+      node.rule = Math.min(node.rule, rule);
+    }
+
+    boolean isEmpty() {
+      return children.isEmpty() && rule == NO_RULE;
+    }
+
+    SubstringAutomaton build() {
+      Node root = buildNode();
+      int firstRule = root.output;
+      // Nodes are completed in breadth-first order, so that the suffixes of a node are complete
+      // before the node.
+      Queue<Node> queue = new ArrayDeque<>();
+      for (Node child : root.children) {
+        child.fail = root;
+        child.output = Math.min(child.output, root.output);
+        queue.add(child);
+      }
+      while (!queue.isEmpty()) {
+        Node node = queue.remove();
+        firstRule = Math.min(firstRule, node.output);
+        for (int i = 0; i < node.labels.length; ++i) {
+          Node child = node.children[i];
+          Node fail = node.fail;
+          int childIndex;
+          while ((childIndex = LiteralTrie.binarySearch(fail.labels, node.labels[i])) < 0
+              && fail != root) {
+            fail = fail.fail;
+          }
+          child.fail = childIndex >= 0 ? fail.children[childIndex] : root;
+          child.output = Math.min(child.output, child.fail.output);
+          queue.add(child);
+        }
+      }
+      return new SubstringAutomaton(root, firstRule);
+    }
+
+    private Node buildNode() {
+      char[] labels = new char[children.size()];
+      Node[] builtChildren = new Node[children.size()];
+      int i = 0;
+      for (Map.Entry<Character, Builder> entry : children.entrySet()) {
+        labels[i] = entry.getKey();
+        builtChildren[i] = entry.getValue().buildNode();
+        ++i;
+      }
+      return new Node(labels, builtChildren, rule);
+    }
+  }
+}
@@ -12,6 +12,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -94,6 +95,13 @@ class RuleBasedRoutingSamplerTest {
             () ->
                 RuleBasedRoutingSampler.builder(SPAN_KIND, delegate)
                     .recordAndSample(HTTP_URL, null));
+
+    assertThatExceptionOfType(NullPointerException.class)
+        .isThrownBy(() -> RuleBasedRoutingSampler.builder(SPAN_KIND, delegate).dropSpanName(null));
+
+    assertThatExceptionOfType(NullPointerException.class)
+        .isThrownBy(
+            () -> RuleBasedRoutingSampler.builder(SPAN_KIND, delegate).customizeSpanName("", null));
   }
 
   @Test
@@ -168,6 +176,58 @@ class RuleBasedRoutingSamplerTest {
         .isEqualTo(SamplingDecision.DROP);
   }
 
+  @Test
+  public void testDropOnSpanName() {
+    RuleBasedRoutingSampler sampler =
+        addRules(RuleBasedRoutingSampler.builder(SPAN_KIND, delegate))
+            .dropSpanName("^GET /health$")
+            .build();
+    Attributes attributes = Attributes.of(HTTP_TARGET, "/health");
+    assertThat(
+            sampler
+                .shouldSample(
+                    parentContext, traceId, "GET /health", SPAN_KIND, attributes, emptyList())
+                .getDecision())
+        .isEqualTo(SamplingDecision.DROP);
+    assertThat(
+            sampler
+                .shouldSample(
+                    parentContext, traceId, "POST /health", SPAN_KIND, attributes, emptyList())
+                .getDecision())
+        .isEqualTo(SamplingDecision.RECORD_AND_SAMPLE);
+    verify(delegate)
+        .shouldSample(parentContext, traceId, "POST /health", SPAN_KIND, attributes, emptyList());
+  }
+
+  @Test
+  public void testAppliesSpanNameAndAttributeRulesInOrder() {
+    RuleBasedRoutingSampler sampler =
+        RuleBasedRoutingSampler.builder(SPAN_KIND, delegate)
+            .recordAndSample(HTTP_TARGET, "/important")
+            .dropSpanName("^GET ")
+            .recordAndSampleSpanName("^GET /important$")
+            .build();
+    Attributes attributes = Attributes.of(HTTP_TARGET, "/important");
+    assertThat(
+            sampler
+                .shouldSample(
+                    parentContext, traceId, "GET /important", SPAN_KIND, attributes, emptyList())
+                .getDecision())
+        .isEqualTo(SamplingDecision.RECORD_AND_SAMPLE);
+    assertThat(
+            sampler
+                .shouldSample(
+                    parentContext,
+                    traceId,
+                    "GET /important",
+                    SPAN_KIND,
+                    Attributes.empty(),
+                    emptyList())
+                .getDecision())
+        .isEqualTo(SamplingDecision.DROP);
+    verify(delegate, never()).shouldSample(any(), any(), any(), any(), any(), any());
+  }
+
   @Test
   void customSampler() {
     Attributes attributes = Attributes.of(HTTP_TARGET, "/test");
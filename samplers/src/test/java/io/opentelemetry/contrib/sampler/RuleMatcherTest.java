@@ -0,0 +1,202 @@
+/*
+ * Copyright The OpenTelemetry Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.opentelemetry.contrib.sampler;
+
+import static io.opentelemetry.contrib.sampler.LiteralTrie.NO_RULE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class RuleMatcherTest {
+
+  private static final AttributeKey<String> KEY = AttributeKey.stringKey("key");
+
+  private static final String[] PATTERNS = {
+    "",
+    "^",
+    "$",
+    "^$",
+    ".*",
+    "^.*",
+    ".*$",
+    "/health",
+    ".*/health",
+    "/health.*",
+    ".*/health.*",
+    "^/health",
+    "/health$",
+    "^/health$",
+    "^/health.*",
+    "\\.js$",
+    "\\Q.css\\E$",
+    "\\Q?x=\\E",
+    "\\Q?x=",
+    "^/static/",
+    "/api/v1",
+    "/api/v1/users",
+    "i/v",
+    "aab",
+    "ab",
+    "b",
+    "^ab$",
+    "/health|/ready",
+    "[0-9]+",
+    "^/api/v\\d+/",
+    "(?i)/HEALTH",
+    "^.*/health",
+    "/health.*$",
+    "a.b",
+    "\\.*",
+    "\\Q.\\E*"
+  };
+
+  private static final String[] VALUES = {
+    "",
+    "\n",
+    "\r\n",
+    "\r",
+    "/health",
+    "/health\n",
+    "/health\r\n",
+    "/health\n\n",
+    "/health\r",
+    "/health\u2028",
+    "/health\u0085",
+    "/health/x",
+    "x/health",
+    "x\n/health",
+    "/ready",
+    "/static/app.js",
+    "/static/app.js\n",
+    "/static/app.css",
+    "/static/app.cssx",
+    "/api/v1/users",
+    "/api/v12/users",
+    "/api/v1/user",
+    "/a?x=1",
+    "aaab",
+    "ab",
+    "ab\n",
+    "ba",
+    "axb",
+    "..",
+    "/HEALTH"
+  };
+
+  private static <T> T pick(SplittableRandom random, T[] values) {
+    return values[random.nextInt(values.length)];
+  }
+
+  private static int findFirstMatchLinearly(List<SamplingRule> rules, String value) {
+    for (int i = 0; i < rules.size(); ++i) {
+      if (rules.get(i).pattern.matcher(value).find()) {
+        return i;
+      }
+    }
+    return NO_RULE;
+  }
+
+  @Test
+  void sameResultAsPatterns() {
+    SplittableRandom random = new SplittableRandom(0x6a09e667f3bcc908L);
+    for (int k = 0; k < 1000; ++k) {
+      int numberOfRules = random.nextInt(12) + 1;
+      List<SamplingRule> rules = new ArrayList<>();
+      for (int i = 0; i < numberOfRules; ++i) {
+        rules.add(new SamplingRule(KEY, pick(random, PATTERNS), Sampler.alwaysOff()));
+      }
+      Map<AttributeKey<String>, RuleMatcher> matchers = RuleMatcher.compileAttributes(rules);
+      assertThat(matchers).containsOnlyKeys(KEY);
+      for (String value : VALUES) {
+        assertThat(matchers.get(KEY).firstMatch(value, NO_RULE))
+            .as("%s in %s", value, rules)
+            .isEqualTo(findFirstMatchLinearly(rules, value));
+      }
+    }
+  }
+
+  @ParameterizedTest
+  @CsvSource({
+    "/health, /health, false, false",
+    "^/health, /health, true, false",
+    "/health$, /health, false, true",
+    "'.*/health$', /health, false, true",
+    "'/health.*', /health, false, false",
+    "\\Q/a.b\\E, /a.b, false, false",
+    "\\-\\., -., false, false",
+  })
+  void parsesLiterals(
+      String regex, String literal, boolean anchoredAtStart, boolean anchoredAtEnd) {
+    RuleMatcher.Literal parsed = RuleMatcher.Literal.parse(regex);
+    assertThat(parsed).isNotNull();
+    assertThat(parsed.literal).isEqualTo(literal);
+    assertThat(parsed.anchoredAtStart).isEqualTo(anchoredAtStart);
+    assertThat(parsed.anchoredAtEnd).isEqualTo(anchoredAtEnd);
+  }
+
+  @ParameterizedTest
+  @CsvSource({
+    "a*",
+    "a+b",
+    "a|b",
+    "^.*a",
+    "a.*$",
+    "\\d",
+    "\\1",
+    "(?i)a",
+    "[a]",
+    "\\Qa\\E?",
+    "\ud83d\ude00"
+  })
+  void doesNotParseNonLiterals(String regex) {
+    assertThat(RuleMatcher.Literal.parse(regex)).isNull();
+  }
+
+  @Test
+  void ordersMatchersByFirstRule() {
+    AttributeKey<String> other = AttributeKey.stringKey("other");
+    List<SamplingRule> rules = new ArrayList<>();
+    rules.add(new SamplingRule(other, "a", Sampler.alwaysOff()));
+    rules.add(new SamplingRule(KEY, "b", Sampler.alwaysOff()));
+    rules.add(new SamplingRule(other, "c", Sampler.alwaysOff()));
+
+    Map<AttributeKey<String>, RuleMatcher> matchers = RuleMatcher.compileAttributes(rules);
+
+    assertThat(matchers.keySet()).containsExactly(other, KEY);
+    RuleMatcher otherMatcher = matchers.get(other);
+    assertThat(otherMatcher.firstRule).isEqualTo(0);
+    assertThat(otherMatcher.firstMatch("abc", NO_RULE)).isEqualTo(0);
+    assertThat(otherMatcher.firstMatch("bc", NO_RULE)).isEqualTo(2);
+    assertThat(otherMatcher.firstMatch("bc", 1)).isEqualTo(1);
+    assertThat(matchers.get(KEY).firstRule).isEqualTo(1);
+  }
+
+  @Test
+  void compilesSpanNameRulesSeparately() {
+    List<SamplingRule> rules = new ArrayList<>();
+    rules.add(new SamplingRule(KEY, "a", Sampler.alwaysOff()));
+    rules.add(SamplingRule.forSpanName("^GET /health$", Sampler.alwaysOff()));
+    rules.add(SamplingRule.forSpanName("/ready", Sampler.alwaysOff()));
+
+    RuleMatcher spanNameMatcher = RuleMatcher.compileSpanName(rules);
+
+    assertThat(spanNameMatcher).isNotNull();
+    assertThat(spanNameMatcher.firstRule).isEqualTo(1);
+    assertThat(spanNameMatcher.firstMatch("GET /health", NO_RULE)).isEqualTo(1);
+    assertThat(spanNameMatcher.firstMatch("GET /ready", NO_RULE)).isEqualTo(2);
+    assertThat(spanNameMatcher.firstMatch("GET /health/x", NO_RULE)).isEqualTo(NO_RULE);
+    assertThat(RuleMatcher.compileAttributes(rules)).containsOnlyKeys(KEY);
+    assertThat(RuleMatcher.compileSpanName(rules.subList(0, 1))).isNull();
+  }
+}